@@ -0,0 +1,17 @@
+-- Movies database of version 3 (last released one before version 7), one statement per line.
+-- Images are stored as joined full URLs of every size, lists are sorted by row id.
+CREATE TABLE movies (_id INTEGER PRIMARY KEY UNIQUE, title TEXT NOT NULL, release_date TEXT NOT NULL, rating REAL NOT NULL, poster_paths TEXT NOT NULL, backdrop_paths TEXT NOT NULL, synopsis TEXT NOT NULL);
+CREATE TABLE popular_movies (_id INTEGER PRIMARY KEY AUTOINCREMENT, movie_id INTEGER NOT NULL UNIQUE,  FOREIGN KEY (movie_id) REFERENCES movies (_id));
+CREATE TABLE highest_rated_movies (_id INTEGER PRIMARY KEY AUTOINCREMENT, movie_id INTEGER NOT NULL UNIQUE,  FOREIGN KEY (movie_id) REFERENCES movies (_id));
+CREATE TABLE favorite_movies (_id INTEGER PRIMARY KEY AUTOINCREMENT, movie_id INTEGER NOT NULL UNIQUE,  FOREIGN KEY (movie_id) REFERENCES movies (_id));
+INSERT INTO movies VALUES (42562, 'Darkness Small', '2011-08-18', 7.2, 'http://image.tmdb.org/t/p/w92/YuGnUe2GDI19hp4MzUHRpaXf2rp.jpg;http://image.tmdb.org/t/p/w185/YuGnUe2GDI19hp4MzUHRpaXf2rp.jpg', 'http://image.tmdb.org/t/p/w300/dYmt8GVEXyRC6Js7gf9hhuc3VqV.jpg;http://image.tmdb.org/t/p/w780/dYmt8GVEXyRC6Js7gf9hhuc3VqV.jpg', 'A synopsis.');
+INSERT INTO movies VALUES (131316, 'Fight Villain Unexpected Escape Ship', '2014-03-02', 6.1, 'http://image.tmdb.org/t/p/w92/null;http://image.tmdb.org/t/p/w185/null', '', 'Other synopsis.');
+INSERT INTO movies VALUES (359229, 'Golden Harbor', '2016-11-23', 8.0, 'http://image.tmdb.org/t/p/w92/aJ4tnnDE9nXZnbTQlxqUUhmIxYh.jpg', 'http://image.tmdb.org/t/p/w300/null', 'Third synopsis.');
+INSERT INTO movies VALUES (550, 'Old Favorite', '1999-10-15', 8.3, 'http://image.tmdb.org/t/p/w92/adw6Lq9FiC9zjYEpOqfq03ituwp.jpg', 'http://image.tmdb.org/t/p/w300/87hTDiay2N2qWyX4Ds7ybXi9h8I.jpg', 'Favorite synopsis.');
+INSERT INTO popular_movies (_id, movie_id) VALUES (4, 131316);
+INSERT INTO popular_movies (_id, movie_id) VALUES (9, 42562);
+INSERT INTO popular_movies (_id, movie_id) VALUES (12, 359229);
+INSERT INTO highest_rated_movies (_id, movie_id) VALUES (1, 359229);
+INSERT INTO highest_rated_movies (_id, movie_id) VALUES (2, 42562);
+INSERT INTO favorite_movies (_id, movie_id) VALUES (1, 550);
+INSERT INTO favorite_movies (_id, movie_id) VALUES (2, 42562);
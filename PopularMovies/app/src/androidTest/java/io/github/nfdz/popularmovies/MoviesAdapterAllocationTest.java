@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.content.ContextCompat;
+import android.widget.FrameLayout;
+
+import com.squareup.picasso.Picasso;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.nfdz.popularmovies.data.MovieContract;
+import io.github.nfdz.popularmovies.types.MovieGridData;
+import io.github.nfdz.popularmovies.types.MovieGridItem;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * This test counts objects allocated in the main thread while movies grid rows are bound.
+ * Binding a loaded row must not allocate more than setting its precomputed texts and poster
+ * by hand does (Picasso requests allocate on their own and they are not avoidable).
+ */
+@RunWith(AndroidJUnit4.class)
+public class MoviesAdapterAllocationTest {
+
+    private static final int ROWS = 2 * MoviesGridLoader.PAGE_SIZE;
+    private static final int ROUNDS = 5;
+    private static final int WARM_UP_ROUNDS = 2;
+
+    /** Allowed difference with binding by hand, it absorbs the noise of Picasso internals */
+    private static final int MAX_EXTRA_ALLOCATIONS_PER_BIND = 1;
+
+    private Context mContext;
+    private List<MovieGridItem> mItems;
+    private long[] mMovieIds;
+    private Drawable mPosterPlaceholder;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mPosterPlaceholder = ContextCompat.getDrawable(mContext, R.drawable.art_no_poster);
+        File posters = new File(mContext.getCacheDir(), "no_posters");
+        mItems = new ArrayList<>();
+        mMovieIds = new long[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            mMovieIds[i] = i + 1;
+            mItems.add(new MovieGridItem(i + 1,
+                    "Movie Title " + i + " (2017)",
+                    "7." + (i % 10) + "/10",
+                    Uri.fromFile(new File(posters, i + ".jpg"))));
+        }
+    }
+
+    @Test
+    public void bind_allocatesLikeBindingByHand() {
+        final long[] allocations = new long[2];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                MoviesAdapter adapter = new MoviesAdapter(new MoviesAdapter.MoviesAdapterOnClickHandler() {
+                    @Override
+                    public void onClick(long id) {
+                        // nothing to do
+                    }
+                }, mContext);
+                adapter.setData(new MovieGridData(MovieContract.PopularMovieEntry.CONTENT_URI,
+                        MovieContract.PopularMovieEntry.COLUMN_RANK,
+                        mMovieIds,
+                        MoviesGridLoader.PAGE_SIZE,
+                        0,
+                        mItems,
+                        null,
+                        null));
+                MoviesAdapter.MoviesAdapterViewHolder holder =
+                        adapter.onCreateViewHolder(new FrameLayout(mContext), 0);
+
+                for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+                    bindRows(adapter, holder);
+                    bindRowsByHand(holder);
+                }
+                allocations[0] = countAllocations(adapter, holder, false);
+                allocations[1] = countAllocations(adapter, holder, true);
+            }
+        });
+
+        long bindAllocations = allocations[0];
+        long byHandAllocations = allocations[1];
+        assumeTrue("Runtime does not count allocations", byHandAllocations > 0);
+        long binds = ROWS * ROUNDS;
+        assertTrue("Bind allocated " + bindAllocations + " objects in " + binds + " binds, by hand: " +
+                        byHandAllocations,
+                bindAllocations - byHandAllocations <= binds * MAX_EXTRA_ALLOCATIONS_PER_BIND);
+    }
+
+    private long countAllocations(MoviesAdapter adapter,
+                                  MoviesAdapter.MoviesAdapterViewHolder holder,
+                                  boolean byHand) {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < ROUNDS; i++) {
+                if (byHand) {
+                    bindRowsByHand(holder);
+                } else {
+                    bindRows(adapter, holder);
+                }
+            }
+            return Debug.getThreadAllocCount();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    private static void bindRows(MoviesAdapter adapter, MoviesAdapter.MoviesAdapterViewHolder holder) {
+        for (int position = 0; position < ROWS; position++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+    }
+
+    /**
+     * This method does the minimum work of a bind: it sets the texts and requests the poster with a
+     * shared placeholder.
+     */
+    private void bindRowsByHand(MoviesAdapter.MoviesAdapterViewHolder holder) {
+        for (int position = 0; position < ROWS; position++) {
+            MovieGridItem item = mItems.get(position);
+            holder.mTitleTextView.setText(item.getTitleText());
+            holder.mRatingTextView.setText(item.getRatingText());
+            Picasso.with(mContext)
+                    .load(item.getPosterUri())
+                    .placeholder(mPosterPlaceholder)
+                    .into(holder.mPosterImageView);
+        }
+    }
+}
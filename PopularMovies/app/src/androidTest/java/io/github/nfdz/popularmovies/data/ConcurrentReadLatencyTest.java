@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.nfdz.popularmovies.MoviesGridLoader;
+import io.github.nfdz.popularmovies.data.MovieContract.MovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.PopularMovieEntry;
+import io.github.nfdz.popularmovies.utilities.MovieInfoUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * This test reads movies grid pages and movie details while other thread keeps a long
+ * synchronization transaction open. Database is in write-ahead-log mode, so reads must not
+ * wait for the transaction to end.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentReadLatencyTest {
+
+    private static final String DATABASE_NAME = "movies_read_latency_test.db";
+
+    private static final int MOVIES = 1000;
+
+    /** Time that the synchronization transaction is kept open */
+    private static final long WRITE_MILLIS = 3000;
+
+    /** Maximum latency of a read, a read that waits for the transaction would take seconds */
+    private static final long MAX_READ_MILLIS = 250;
+
+    private Context mContext;
+    private MovieDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        // concurrent readers need the connection pool of write-ahead-log mode
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN);
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDbHelper = new MovieDbHelper(mContext, DATABASE_NAME);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < MOVIES; i++) {
+                db.insertOrThrow(MovieEntry.TABLE_NAME, null, buildMovie(i + 1, 0));
+                ContentValues rank = new ContentValues();
+                rank.put(PopularMovieEntry.COLUMN_MOVIE_ID, i + 1);
+                rank.put(PopularMovieEntry.COLUMN_RANK, i);
+                db.insertOrThrow(PopularMovieEntry.TABLE_NAME, null, rank);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (mDbHelper != null) mDbHelper.close();
+        if (mContext != null) mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void reads_doNotWaitForSyncTransaction() throws InterruptedException {
+        final CountDownLatch transactionStarted = new CountDownLatch(1);
+        final AtomicBoolean transactionOpen = new AtomicBoolean();
+        final AtomicReference<Throwable> writeError = new AtomicReference<>();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeLongTransaction(transactionStarted, transactionOpen);
+                } catch (RuntimeException e) {
+                    writeError.set(e);
+                    transactionStarted.countDown();
+                }
+            }
+        }, "sync-writer");
+        writer.start();
+        assertTrue(transactionStarted.await(5, TimeUnit.SECONDS));
+
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        String gridSql = MovieContentProvider.buildQuerySql(
+                MovieContentProvider.buildReferencedTables(PopularMovieEntry.TABLE_NAME,
+                        PopularMovieEntry.COLUMN_MOVIE_ID),
+                MovieInfoUtils.MOVIES_PROJECTION,
+                null,
+                PopularMovieEntry.TABLE_NAME + "." + PopularMovieEntry.COLUMN_RANK + " ASC",
+                MovieContentProvider.buildLimit(MovieContract.buildRangeUri(PopularMovieEntry.CONTENT_URI,
+                        MoviesGridLoader.PAGE_SIZE, MoviesGridLoader.PAGE_SIZE)));
+        String detailSql = MovieContentProvider.buildQuerySql(MovieEntry.TABLE_NAME,
+                MovieInfoUtils.MOVIES_PROJECTION,
+                MovieEntry._ID + " = ? ",
+                null,
+                null);
+
+        long maxGridMillis = 0;
+        long maxDetailMillis = 0;
+        int readsDuringWrite = 0;
+        int movieId = 1;
+        while (transactionOpen.get()) {
+            maxGridMillis = Math.max(maxGridMillis, timeQuery(db, gridSql, null, MoviesGridLoader.PAGE_SIZE));
+            String[] detailArgs = { Integer.toString(movieId) };
+            maxDetailMillis = Math.max(maxDetailMillis, timeQuery(db, detailSql, detailArgs, 1));
+            movieId = movieId % MOVIES + 1;
+            if (transactionOpen.get()) readsDuringWrite++;
+        }
+        writer.join();
+
+        assertNull(writeError.get());
+        assertTrue("No read finished while transaction was open", readsDuringWrite > 0);
+        assertTrue("Grid page read took " + maxGridMillis + " ms", maxGridMillis <= MAX_READ_MILLIS);
+        assertTrue("Detail read took " + maxDetailMillis + " ms", maxDetailMillis <= MAX_READ_MILLIS);
+    }
+
+    /**
+     * This method updates movies, like a synchronization does, in one transaction that is kept
+     * open for WRITE_MILLIS.
+     */
+    private void writeLongTransaction(CountDownLatch transactionStarted, AtomicBoolean transactionOpen) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            transactionOpen.set(true);
+            long endTime = SystemClock.elapsedRealtime() + WRITE_MILLIS;
+            int version = 1;
+            boolean started = false;
+            while (SystemClock.elapsedRealtime() < endTime) {
+                for (int i = 0; i < MOVIES; i++) {
+                    db.update(MovieEntry.TABLE_NAME,
+                            buildMovie(i + 1, version),
+                            MovieEntry._ID + " = " + (i + 1),
+                            null);
+                    if (!started) {
+                        // reads start once the transaction holds the write lock
+                        started = true;
+                        transactionStarted.countDown();
+                    }
+                }
+                version++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            transactionOpen.set(false);
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return time in milliseconds to read every row of given query.
+     */
+    private static long timeQuery(SQLiteDatabase db, String sql, String[] selectionArgs, int expectedRows) {
+        long startTime = SystemClock.elapsedRealtime();
+        Cursor cursor = db.rawQuery(sql, selectionArgs);
+        try {
+            assertEquals(expectedRows, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+        return SystemClock.elapsedRealtime() - startTime;
+    }
+
+    private static ContentValues buildMovie(int movieId, int version) {
+        ContentValues values = new ContentValues();
+        values.put(MovieEntry._ID, movieId);
+        values.put(MovieEntry.COLUMN_TITLE, "Movie " + movieId + " v" + version);
+        values.put(MovieEntry.COLUMN_RELEASE_DATE, "2017-01-01");
+        values.put(MovieEntry.COLUMN_RATING, (movieId % 100) / 10.0);
+        values.put(MovieEntry.COLUMN_POSTER_KEY, "/" + movieId + ".jpg");
+        values.put(MovieEntry.COLUMN_BACKDROP_KEY, "/" + movieId + "_backdrop.jpg");
+        values.put(MovieEntry.COLUMN_SYNOPSIS, "Synopsis of movie " + movieId);
+        return values;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import io.github.nfdz.popularmovies.data.MovieContract.MovieEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of bulk inserts of movies in one transaction, like provider bulk writes do. It
+ * compares SQLiteDatabase.insert (baseline), that builds the SQL of every row, with the reused
+ * compiled statements of InsertStatements, fed with ContentValues and with a RowBatch. The best
+ * time of several runs of every way is reported side by side (tag InsertBenchmarkTest) and
+ * compiled ways must not be slower than the baseline.
+ *
+ * It is an instrumented test instead of a JMH benchmark because it needs Android SQLite, which
+ * is not available in the plain JVM of benchmark module.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InsertBenchmarkTest {
+
+    private static final String TAG = InsertBenchmarkTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "movies_insert_benchmark.db";
+
+    private static final int WARM_UP_RUNS = 1;
+    private static final int RUNS = 5;
+
+    /** Allowed relative time of a compiled way against the baseline, it absorbs device noise */
+    private static final double MAX_RELATIVE_TIME = 1.1;
+
+    private static final int BASELINE = 0;
+    private static final int COMPILED_VALUES = 1;
+    private static final int COMPILED_ROW_BATCH = 2;
+    private static final String[] WAY_NAMES = { "db.insert", "statement+values", "statement+row batch" };
+
+    private Context mContext;
+    private MovieDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDbHelper = new MovieDbHelper(mContext, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (mDbHelper != null) mDbHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void insert1kRows() {
+        benchmark(1000);
+    }
+
+    @Test
+    public void insert10kRows() {
+        benchmark(10000);
+    }
+
+    private void benchmark(int rowCount) {
+        ContentValues[] values = buildMovies(rowCount);
+        RowBatch rows = buildMovieRows(rowCount);
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            for (int way = 0; way < WAY_NAMES.length; way++) timeInserts(way, values, rows);
+        }
+        long[] bestNanos = new long[WAY_NAMES.length];
+        Arrays.fill(bestNanos, Long.MAX_VALUE);
+        for (int i = 0; i < RUNS; i++) {
+            for (int way = 0; way < WAY_NAMES.length; way++) {
+                bestNanos[way] = Math.min(bestNanos[way], timeInserts(way, values, rows));
+            }
+        }
+
+        StringBuilder report = new StringBuilder().append(rowCount).append(" rows:");
+        for (int way = 0; way < WAY_NAMES.length; way++) {
+            report.append(" | ").append(WAY_NAMES[way]).append(' ')
+                    .append(formatThroughput(rowCount, bestNanos[way]))
+                    .append(String.format(Locale.US, " x%.2f", (double) bestNanos[BASELINE] / bestNanos[way]));
+        }
+        Log.i(TAG, report.toString());
+        assertNotSlower(report, bestNanos, COMPILED_VALUES);
+        assertNotSlower(report, bestNanos, COMPILED_ROW_BATCH);
+    }
+
+    private static void assertNotSlower(StringBuilder report, long[] bestNanos, int way) {
+        assertTrue(WAY_NAMES[way] + " is slower than " + WAY_NAMES[BASELINE] + ". " + report,
+                bestNanos[way] <= bestNanos[BASELINE] * MAX_RELATIVE_TIME);
+    }
+
+    /**
+     * This method inserts the movies in an empty movies table in one transaction, in given way.
+     * @return elapsed time in nanoseconds.
+     */
+    private long timeInserts(int way, ContentValues[] values, RowBatch rows) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.delete(MovieEntry.TABLE_NAME, null, null);
+        long startTime = System.nanoTime();
+        InsertStatements inserts = way != BASELINE ? new InsertStatements(db) : null;
+        db.beginTransactionNonExclusive();
+        int rowsInserted = 0;
+        try {
+            if (way == COMPILED_ROW_BATCH) {
+                rowsInserted = inserts.insert(MovieEntry.TABLE_NAME, rows);
+            } else {
+                for (ContentValues row : values) {
+                    long _id = way == COMPILED_VALUES ?
+                            inserts.insert(MovieEntry.TABLE_NAME, row) :
+                            db.insert(MovieEntry.TABLE_NAME, null, row);
+                    if (_id != -1) {
+                        rowsInserted++;
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            if (inserts != null) inserts.close();
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        assertEquals(values.length, rowsInserted);
+        assertEquals(values.length, DatabaseUtils.queryNumEntries(db, MovieEntry.TABLE_NAME));
+        return elapsedNanos;
+    }
+
+    private static String formatThroughput(int rowCount, long nanos) {
+        return String.format(Locale.US, "%.1f ms (%.0f rows/s)", nanos / 1e6, rowCount * 1e9 / nanos);
+    }
+
+    private static RowBatch buildMovieRows(int rowCount) {
+        long[] ids = new long[rowCount];
+        String[] titles = new String[rowCount];
+        String[] releaseDates = new String[rowCount];
+        double[] ratings = new double[rowCount];
+        String[] posterKeys = new String[rowCount];
+        String[] backdropKeys = new String[rowCount];
+        String[] synopses = new String[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            int movieId = i + 1;
+            ids[i] = movieId;
+            titles[i] = "Movie " + movieId;
+            releaseDates[i] = "2017-01-01";
+            ratings[i] = (movieId % 100) / 10.0;
+            posterKeys[i] = "/" + movieId + ".jpg";
+            backdropKeys[i] = "/" + movieId + "_backdrop.jpg";
+            synopses[i] = "Synopsis of movie " + movieId;
+        }
+        return new RowBatch(rowCount)
+                .putLongs(MovieEntry._ID, ids)
+                .putStrings(MovieEntry.COLUMN_TITLE, titles)
+                .putStrings(MovieEntry.COLUMN_RELEASE_DATE, releaseDates)
+                .putDoubles(MovieEntry.COLUMN_RATING, ratings)
+                .putStrings(MovieEntry.COLUMN_POSTER_KEY, posterKeys)
+                .putStrings(MovieEntry.COLUMN_BACKDROP_KEY, backdropKeys)
+                .putStrings(MovieEntry.COLUMN_SYNOPSIS, synopses);
+    }
+
+    private static ContentValues[] buildMovies(int rowCount) {
+        ContentValues[] movies = new ContentValues[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            int movieId = i + 1;
+            ContentValues values = new ContentValues();
+            values.put(MovieEntry._ID, movieId);
+            values.put(MovieEntry.COLUMN_TITLE, "Movie " + movieId);
+            values.put(MovieEntry.COLUMN_RELEASE_DATE, "2017-01-01");
+            values.put(MovieEntry.COLUMN_RATING, (movieId % 100) / 10.0);
+            values.put(MovieEntry.COLUMN_POSTER_KEY, "/" + movieId + ".jpg");
+            values.put(MovieEntry.COLUMN_BACKDROP_KEY, "/" + movieId + "_backdrop.jpg");
+            values.put(MovieEntry.COLUMN_SYNOPSIS, "Synopsis of movie " + movieId);
+            movies[i] = values;
+        }
+        return movies;
+    }
+}
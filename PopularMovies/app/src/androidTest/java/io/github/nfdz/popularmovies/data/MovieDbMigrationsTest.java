@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import io.github.nfdz.popularmovies.data.MovieContract.FavoriteMovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.HighestRatedMovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.MovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.MovieExtrasEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.PopularMovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.ReviewEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.VideoEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the upgrades of the movies database. Old databases are built from the SQL fixtures
+ * of androidTest assets, with the schema and data of their released versions, and they are
+ * opened with the current helper.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieDbMigrationsTest {
+
+    private static final String DATABASE_NAME = "movies_migration_test.db";
+    private static final String CREATED_DATABASE_NAME = "movies_created_test.db";
+    private static final String V3_FIXTURE = "databases/movies_v3.sql";
+    private static final String FIXTURE_COMMENT = "--";
+
+    private static final int CURRENT_VERSION = 7;
+
+    private static final String[] TABLES = {
+            MovieEntry.TABLE_NAME,
+            PopularMovieEntry.TABLE_NAME,
+            HighestRatedMovieEntry.TABLE_NAME,
+            FavoriteMovieEntry.TABLE_NAME,
+            ReviewEntry.TABLE_NAME,
+            VideoEntry.TABLE_NAME,
+            MovieExtrasEntry.TABLE_NAME
+    };
+
+    private Context mContext;
+    private MovieDbHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mContext.deleteDatabase(CREATED_DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (mDbHelper != null) mDbHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mContext.deleteDatabase(CREATED_DATABASE_NAME);
+    }
+
+    @Test
+    public void upgradeFrom3_keepsMoviesWithImageKeys() throws IOException {
+        SQLiteDatabase db = openUpgraded(3);
+
+        assertEquals(CURRENT_VERSION, db.getVersion());
+        Cursor cursor = db.query(MovieEntry.TABLE_NAME,
+                new String[] { MovieEntry._ID, MovieEntry.COLUMN_TITLE, MovieEntry.COLUMN_RATING,
+                        MovieEntry.COLUMN_POSTER_KEY, MovieEntry.COLUMN_BACKDROP_KEY },
+                null,
+                null,
+                null,
+                null,
+                MovieEntry._ID + " ASC");
+        try {
+            assertEquals(4, cursor.getCount());
+            cursor.moveToNext();
+            assertEquals(550, cursor.getInt(0));
+            assertEquals("Old Favorite", cursor.getString(1));
+            assertEquals(8.3, cursor.getDouble(2), 0.0001);
+            assertEquals("/adw6Lq9FiC9zjYEpOqfq03ituwp.jpg", cursor.getString(3));
+            assertEquals("/87hTDiay2N2qWyX4Ds7ybXi9h8I.jpg", cursor.getString(4));
+            cursor.moveToNext();
+            assertEquals(42562, cursor.getInt(0));
+            assertEquals("/YuGnUe2GDI19hp4MzUHRpaXf2rp.jpg", cursor.getString(3));
+            assertEquals("/dYmt8GVEXyRC6Js7gf9hhuc3VqV.jpg", cursor.getString(4));
+            cursor.moveToNext();
+            // "null" paths and empty lists have no key
+            assertEquals(131316, cursor.getInt(0));
+            assertNull(cursor.getString(3));
+            assertNull(cursor.getString(4));
+            cursor.moveToNext();
+            assertEquals(359229, cursor.getInt(0));
+            assertEquals("/aJ4tnnDE9nXZnbTQlxqUUhmIxYh.jpg", cursor.getString(3));
+            assertNull(cursor.getString(4));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void upgradeFrom3_ranksListsByRowId() throws IOException {
+        SQLiteDatabase db = openUpgraded(3);
+
+        assertEquals(Arrays.asList(131316, 42562, 359229), queryRankedIds(db,
+                PopularMovieEntry.TABLE_NAME,
+                PopularMovieEntry.COLUMN_MOVIE_ID,
+                PopularMovieEntry.COLUMN_RANK));
+        assertEquals(Arrays.asList(359229, 42562), queryRankedIds(db,
+                HighestRatedMovieEntry.TABLE_NAME,
+                HighestRatedMovieEntry.COLUMN_MOVIE_ID,
+                HighestRatedMovieEntry.COLUMN_RANK));
+    }
+
+    @Test
+    public void upgradeFrom3_keepsFavorites() throws IOException {
+        SQLiteDatabase db = openUpgraded(3);
+
+        List<Integer> favoriteIds = new ArrayList<>();
+        Cursor cursor = db.query(FavoriteMovieEntry.TABLE_NAME,
+                new String[] { FavoriteMovieEntry.COLUMN_MOVIE_ID },
+                null,
+                null,
+                null,
+                null,
+                FavoriteMovieEntry._ID + " ASC");
+        try {
+            while (cursor.moveToNext()) favoriteIds.add(cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+        assertEquals(Arrays.asList(550, 42562), favoriteIds);
+    }
+
+    @Test
+    public void upgradeFrom3_matchesCreatedSchema() throws IOException {
+        SQLiteDatabase upgradedDb = openUpgraded(3);
+        MovieDbHelper createdHelper = new MovieDbHelper(mContext, CREATED_DATABASE_NAME);
+        try {
+            SQLiteDatabase createdDb = createdHelper.getReadableDatabase();
+            for (String table : TABLES) {
+                assertEquals(table, queryColumns(createdDb, table), queryColumns(upgradedDb, table));
+            }
+            assertEquals(queryIndexes(createdDb), queryIndexes(upgradedDb));
+            assertEquals(0, countRows(upgradedDb, ReviewEntry.TABLE_NAME));
+            assertEquals(0, countRows(upgradedDb, VideoEntry.TABLE_NAME));
+            assertEquals(0, countRows(upgradedDb, MovieExtrasEntry.TABLE_NAME));
+        } finally {
+            createdHelper.close();
+        }
+    }
+
+    @Test
+    public void upgradeFromUnreleasedVersion_recreatesDatabase() throws IOException {
+        // development versions have no migration, their tables are discarded
+        SQLiteDatabase db = openUpgraded(5);
+
+        assertEquals(CURRENT_VERSION, db.getVersion());
+        for (String table : TABLES) {
+            assertEquals(table, 0, countRows(db, table));
+        }
+    }
+
+    /**
+     * This method builds the database of version 3 fixture, sets given version to it and opens
+     * it with the current helper, so it is upgraded.
+     */
+    private SQLiteDatabase openUpgraded(int version) throws IOException {
+        File file = mContext.getDatabasePath(DATABASE_NAME);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase oldDb = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            for (String statement : readFixture(V3_FIXTURE)) oldDb.execSQL(statement);
+            oldDb.setVersion(version);
+        } finally {
+            oldDb.close();
+        }
+        mDbHelper = new MovieDbHelper(mContext, DATABASE_NAME);
+        return mDbHelper.getWritableDatabase();
+    }
+
+    private static List<String> readFixture(String fixture) throws IOException {
+        List<String> statements = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                InstrumentationRegistry.getContext().getAssets().open(fixture), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith(FIXTURE_COMMENT)) statements.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return statements;
+    }
+
+    private static List<Integer> queryRankedIds(SQLiteDatabase db,
+                                                String table,
+                                                String movieIdColumn,
+                                                String rankColumn) {
+        List<Integer> ids = new ArrayList<>();
+        Cursor cursor = db.query(table,
+                new String[] { movieIdColumn, rankColumn },
+                null,
+                null,
+                null,
+                null,
+                rankColumn + " ASC");
+        try {
+            int expectedRank = 0;
+            while (cursor.moveToNext()) {
+                assertEquals(expectedRank++, cursor.getInt(1));
+                ids.add(cursor.getInt(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    /**
+     * @return name, type, not null flag and primary key flag of every column of given table.
+     */
+    private static List<String> queryColumns(SQLiteDatabase db, String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndexOrThrow("name");
+            int typeIndex = cursor.getColumnIndexOrThrow("type");
+            int notNullIndex = cursor.getColumnIndexOrThrow("notnull");
+            int pkIndex = cursor.getColumnIndexOrThrow("pk");
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(nameIndex) + " " + cursor.getString(typeIndex) +
+                        " notnull=" + cursor.getInt(notNullIndex) + " pk=" + cursor.getInt(pkIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+
+    private static Set<String> queryIndexes(SQLiteDatabase db) {
+        Set<String> indexes = new TreeSet<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'", null);
+        try {
+            while (cursor.moveToNext()) indexes.add(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+        return indexes;
+    }
+
+    private static long countRows(SQLiteDatabase db, String table) {
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + table, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -3,6 +3,7 @@
  */
 package io.github.nfdz.popularmovies;
 
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Point;
@@ -33,19 +34,24 @@ import android.widget.TextView;
 
 import com.squareup.picasso.Picasso;
 
-import java.util.Map;
-
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
+import io.github.nfdz.popularmovies.data.MovieContract;
+import io.github.nfdz.popularmovies.data.MovieInfoCache;
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
 import io.github.nfdz.popularmovies.types.MovieInfo;
 import io.github.nfdz.popularmovies.utilities.FavoritesUtils;
+import io.github.nfdz.popularmovies.utilities.ImagesConfigurationCache;
 import io.github.nfdz.popularmovies.utilities.MovieInfoUtils;
 import io.github.nfdz.popularmovies.utilities.TMDBImagesUtils;
+import io.github.nfdz.popularmovies.utilities.TaskScheduler;
 
 public class DetailActivity extends AppCompatActivity
         implements LoaderManager.LoaderCallbacks<Cursor>,
-        BottomNavigationView.OnNavigationItemSelectedListener {
+        BottomNavigationView.OnNavigationItemSelectedListener,
+        FavoritesUtils.FavoriteCallback,
+        ImagesConfigurationCache.ConfigurationCallback {
 
     private static final String TAG = DetailActivity.class.getSimpleName();
 
@@ -57,6 +63,10 @@ public class DetailActivity extends AppCompatActivity
 
     /** MovieInfo object that describes this activity */
     private MovieInfo mMovie;
+    private boolean mIsFavorite;
+    private boolean mFavoriteResolved;
+    private TaskScheduler.Task<Boolean> mResolveFavoriteTask;
+    private TaskScheduler.Task<ImagesConfiguration> mResolveConfigurationTask;
     private Uri mMovieUri;
     private int mBackdropWidth;
     private int mPosterWidth;
@@ -88,6 +98,12 @@ public class DetailActivity extends AppCompatActivity
         Intent intent = getIntent();
         if (intent != null && intent.getData() != null) {
             mMovieUri = intent.getData();
+            // movies shown in the grid are cached, so they are shown at once without waiting
+            // for the query. The loader is started anyway, it observes the movie and shows its
+            // changes
+            int movieId = (int) MovieContract.MovieEntry.extractIdFromUri(mMovieUri);
+            MovieInfo movie = MovieInfoCache.get(movieId);
+            if (movie != null) showMovie(movie);
             getSupportLoaderManager().initLoader(ID_DETAIL_LOADER, null, this);
         } else {
             // If intent has no movie information, finish activity (this situation will never happen)
@@ -134,6 +150,13 @@ public class DetailActivity extends AppCompatActivity
         mNavigation.setOnNavigationItemSelectedListener(null);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        cancelResolveFavorite();
+        cancelResolveConfiguration();
+    }
+
     /**
      * Uses the ShareCompat Intent builder to create intent for sharing. It sets the type
      * of content that is sharing (regular text), the text itself, and returns the created Intent.
@@ -152,8 +175,9 @@ public class DetailActivity extends AppCompatActivity
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
         switch (id) {
             case ID_DETAIL_LOADER:
-                showLoading();
-                return new CursorLoader(this,
+                // cached movie is kept meanwhile it is loaded
+                if (mMovie == null) showLoading();
+                return new MovieDetailLoader(this,
                         mMovieUri,
                         MovieInfoUtils.MOVIES_PROJECTION,
                         null,
@@ -166,39 +190,33 @@ public class DetailActivity extends AppCompatActivity
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        Map<Integer, MovieInfo> movies = MovieInfoUtils.getMoviesFromCursor(data);
-        if (movies.size() < 1) {
+        if (data == null || !data.moveToFirst()) {
             Log.e(TAG, "Given movie data URI has no information.");
             finish();
+            return;
         }
-        Map.Entry<Integer, MovieInfo> entry = movies.entrySet().iterator().next();
-        mMovie = entry.getValue();
+        MovieInfo movie = MovieInfoUtils.getMovieFromCursor(data);
+        MovieInfoCache.put(movie, ((MovieDetailLoader) loader).getCacheVersion());
+        // shown movie (like the cached one) is only shown again if it has changed
+        if (mMovie != null && mMovie.hasSameContent(movie)) return;
+        showMovie(movie);
+    }
+
+    private void showMovie(MovieInfo movie) {
+        mMovie = movie;
 
         // Set movie data in ui views
         mTitle.setText(mMovie.getTitle());
         mReleaseDate.setText(mMovie.getReleaseDate());
         mRating.setText(Double.toString(mMovie.getRating())+"/10");
-        String posterPath = TMDBImagesUtils.resolveImagePath(mMovie.getPosterPaths(), mPosterWidth);
-        Picasso.with(this)
-                .load(posterPath)
-                .placeholder(ContextCompat.getDrawable(this, R.drawable.art_no_poster))
-                .into(mPoster);
-        // If backdrop is not visible, avoid to download and show the image
-        if (mBackdrop.getVisibility() != View.GONE) {
-            String backdropPath = TMDBImagesUtils.resolveImagePath(mMovie.getBackdropPaths(), mBackdropWidth);
-            Picasso.with(this)
-                    .load(backdropPath)
-                    .placeholder(ContextCompat.getDrawable(this, R.drawable.art_no_backdrop))
-                    .into(mBackdrop);
-        }
 
-        // resolve if this movie is favorite to show the correct icon
-        FavoritesUtils.resolveFavorite(this, mMovie.getMovieId(), new FavoritesUtils.ResolveFavoriteCallback() {
-            @Override
-            public void notifyResult(boolean isFavorite) {
-                setFavorite(isFavorite);
-            }
-        });
+        // images configuration is read in background if it is not in memory yet
+        cancelResolveConfiguration();
+        mResolveConfigurationTask = ImagesConfigurationCache.resolveConfiguration(this, this);
+
+        // resolve if this movie is favorite to show the correct icon (button is hidden until then)
+        cancelResolveFavorite();
+        mResolveFavoriteTask = FavoritesUtils.resolveFavorite(this, mMovie.getMovieId(), this);
 
         showDetails();
 
@@ -225,6 +243,34 @@ public class DetailActivity extends AppCompatActivity
         });
     }
 
+    @Override
+    public void onConfigurationResolved(ImagesConfiguration configuration) {
+        mResolveConfigurationTask = null;
+        if (mMovie == null) return;
+        String posterPath = TMDBImagesUtils.resolvePosterUrl(configuration, mMovie.getPosterKey(), mPosterWidth);
+        Picasso.with(this)
+                .load(posterPath)
+                .placeholder(ContextCompat.getDrawable(this, R.drawable.art_no_poster))
+                .into(mPoster);
+        // If backdrop is not visible, avoid to download and show the image
+        if (mBackdrop.getVisibility() != View.GONE) {
+            String backdropPath = TMDBImagesUtils.resolveBackdropUrl(configuration,
+                    mMovie.getBackdropKey(),
+                    mBackdropWidth);
+            Picasso.with(this)
+                    .load(backdropPath)
+                    .placeholder(ContextCompat.getDrawable(this, R.drawable.art_no_backdrop))
+                    .into(mBackdrop);
+        }
+    }
+
+    private void cancelResolveConfiguration() {
+        if (mResolveConfigurationTask != null) {
+            mResolveConfigurationTask.cancel(false);
+            mResolveConfigurationTask = null;
+        }
+    }
+
     private void showDetails() {
         mLayout.setVisibility(View.VISIBLE);
         mLoading.setVisibility(View.GONE);
@@ -237,16 +283,27 @@ public class DetailActivity extends AppCompatActivity
 
     @OnClick(R.id.ib_movie_fav)
     public void toggleFav() {
-        if (mMovie == null) return;
-        FavoritesUtils.toggleFavorite(this, mMovie.getMovieId(),  new FavoritesUtils.ResolveFavoriteCallback() {
-            @Override
-            public void notifyResult(boolean isFavorite) {
-                setFavorite(isFavorite);
-            }
-        });
+        if (mMovie == null || !mFavoriteResolved) return;
+        setFavorite(FavoritesUtils.toggleFavorite(this, mMovie.getMovieId(), mIsFavorite));
+    }
+
+    @Override
+    public void onFavoriteResolved(int movieId, boolean isFavorite) {
+        mResolveFavoriteTask = null;
+        if (mMovie == null || mMovie.getMovieId() != movieId) return;
+        setFavorite(isFavorite);
+    }
+
+    private void cancelResolveFavorite() {
+        if (mResolveFavoriteTask != null) {
+            mResolveFavoriteTask.cancel(false);
+            mResolveFavoriteTask = null;
+        }
     }
 
     private void setFavorite(boolean isFavorite) {
+        mIsFavorite = isFavorite;
+        mFavoriteResolved = true;
         mFavButton.setVisibility(View.VISIBLE);
         if (isFavorite) {
             mFavButton.setImageDrawable(ContextCompat.getDrawable(this, R.drawable.art_favorite_on));
@@ -290,4 +347,32 @@ public class DetailActivity extends AppCompatActivity
         ft.commit();
     }
 
+
+    /**
+     * This cursor loader keeps the version of movies cache before querying, so read movie can
+     * be cached safely.
+     */
+    private static class MovieDetailLoader extends CursorLoader {
+
+        private volatile long mCacheVersion;
+
+        MovieDetailLoader(Context context,
+                          Uri uri,
+                          String[] projection,
+                          String selection,
+                          String[] selectionArgs,
+                          String sortOrder) {
+            super(context, uri, projection, selection, selectionArgs, sortOrder);
+        }
+
+        @Override
+        public Cursor loadInBackground() {
+            mCacheVersion = MovieInfoCache.getVersion();
+            return super.loadInBackground();
+        }
+
+        long getCacheVersion() {
+            return mCacheVersion;
+        }
+    }
 }
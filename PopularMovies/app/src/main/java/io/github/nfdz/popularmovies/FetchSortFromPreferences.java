@@ -4,18 +4,18 @@
 package io.github.nfdz.popularmovies;
 
 import android.content.Context;
-import android.os.AsyncTask;
 import android.util.Log;
 
 import io.github.nfdz.popularmovies.data.PreferencesUtils;
 import io.github.nfdz.popularmovies.sync.MoviesTasks;
 import io.github.nfdz.popularmovies.types.AsyncTaskListener;
+import io.github.nfdz.popularmovies.utilities.TaskScheduler;
 
 /**
- * This async task implementation retrieves sort preference in a background thread and notify
- * result in UI thread using given callback.
+ * This task implementation retrieves sort preference in a background thread and notify
+ * result in UI thread using given callback. It should be submitted to the UI lane.
  */
-public class FetchSortFromPreferences extends AsyncTask<Void, Void, Integer> {
+public class FetchSortFromPreferences extends TaskScheduler.Task<Integer> {
 
     private static final String TAG = MoviesTasks.class.getSimpleName();
 
@@ -33,7 +33,7 @@ public class FetchSortFromPreferences extends AsyncTask<Void, Void, Integer> {
     }
 
     @Override
-    protected Integer doInBackground(Void... v) {
+    protected Integer doInBackground() {
         String sortPref = PreferencesUtils.getPreferredSort(mContext);
         if (sortPref.equals(PreferencesUtils.SORT_BY_HIGHEST_RATED)) {
             return MainActivity.HIGHEST_RATED_FLAG;
@@ -48,7 +48,7 @@ public class FetchSortFromPreferences extends AsyncTask<Void, Void, Integer> {
     }
 
     @Override
-    protected void onPostExecute(Integer result) {
+    protected void onComplete(Integer result) {
         mCallback.onTaskComplete(result);
     }
 }
@@ -7,13 +7,10 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
@@ -33,11 +30,15 @@ import io.github.nfdz.popularmovies.data.MovieContract;
 import io.github.nfdz.popularmovies.data.PreferencesUtils;
 import io.github.nfdz.popularmovies.sync.MoviesSyncUtils;
 import io.github.nfdz.popularmovies.types.AsyncTaskListener;
+import io.github.nfdz.popularmovies.types.MovieGridData;
+import io.github.nfdz.popularmovies.utilities.FavoritesUtils;
+import io.github.nfdz.popularmovies.utilities.ImagesConfigurationCache;
+import io.github.nfdz.popularmovies.utilities.TaskScheduler;
 
 public class MainActivity extends AppCompatActivity
         implements MoviesAdapterOnClickHandler,
         SharedPreferences.OnSharedPreferenceChangeListener,
-        LoaderManager.LoaderCallbacks<Cursor> {
+        LoaderManager.LoaderCallbacks<MovieGridData> {
 
     private static final int ID_MOVIES_LOADER = 82;
 
@@ -51,10 +52,14 @@ public class MainActivity extends AppCompatActivity
     private ProgressBar mLoadingIndicator;
 
     private MoviesAdapter mMoviesAdapter;
+    private PosterPrefetcher mPosterPrefetcher;
 
     private static final String POSITION_KEY = "position";
     private int mPosition = RecyclerView.NO_POSITION;
 
+    /** Page of movies that the user is looking at */
+    private int mCurrentPage;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -76,6 +81,15 @@ public class MainActivity extends AppCompatActivity
         mRecyclerView.setHasFixedSize(true);
         mMoviesAdapter = new MoviesAdapter(this, this);
         mRecyclerView.setAdapter(mMoviesAdapter);
+        mPosterPrefetcher = new PosterPrefetcher(this, mMoviesAdapter);
+        mRecyclerView.addOnScrollListener(mPosterPrefetcher);
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                // it is also invoked when visible items change after a layout, out of it
+                updateVisibleRange();
+            }
+        });
 
         // Uncomment this line to know the network(response time, cache, etc) performance of poster images
         //Picasso.with(getApplicationContext()).setIndicatorsEnabled(true);
@@ -84,6 +98,10 @@ public class MainActivity extends AppCompatActivity
         restartLoader();
 
         MoviesSyncUtils.initialize(this);
+        // load favorite movies in advance, so detail screen resolves them without waiting
+        FavoritesUtils.preload(this);
+        // read images configuration in advance, so detail screen shows images without waiting
+        ImagesConfigurationCache.preload(this);
     }
 
     @Override
@@ -103,7 +121,7 @@ public class MainActivity extends AppCompatActivity
             String highestRated = getString(R.string.sort_by_rated);
             String favorites = getString(R.string.sort_by_favorite);
             final String options[] = new String[] { mostPopular, highestRated, favorites };
-            new FetchSortFromPreferences(this, new AsyncTaskListener<Integer>() {
+            TaskScheduler.submit(TaskScheduler.LANE_UI, new FetchSortFromPreferences(this, new AsyncTaskListener<Integer>() {
                 @Override
                 public void onPreTaskExecution() { /* nothing to do */ }
                 @Override
@@ -117,22 +135,21 @@ public class MainActivity extends AppCompatActivity
                             dialog.cancel();
                             // if sort criteria has changed, saved it and load movies again
                             if (selection != selected) {
-                                new AsyncTask<Void, Void, Void>() {
+                                TaskScheduler.submit(TaskScheduler.LANE_UI, new Runnable() {
                                     @Override
-                                    protected Void doInBackground(Void... v) {
+                                    public void run() {
                                         String sortBy = selection == 2 ? PreferencesUtils.SORT_BY_FAVORITES :
                                                 selection == 1 ? PreferencesUtils.SORT_BY_HIGHEST_RATED :
                                                         PreferencesUtils.SORT_BY_POPULAR;
                                         PreferencesUtils.setPreferredSort(MainActivity.this, sortBy);
-                                        return null;
                                     }
-                                }.execute();
+                                });
                             }
                         }
                     });
                     builder.show();
                 }
-            }).execute();
+            }));
 
 
             return true;
@@ -170,6 +187,7 @@ public class MainActivity extends AppCompatActivity
     @Override
     public void onStop() {
         super.onStop();
+        mPosterPrefetcher.cancelAll();
         PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(this);
     }
 
@@ -190,7 +208,7 @@ public class MainActivity extends AppCompatActivity
      * This method firstly retrieves sort configuration and secondly restart loader with it
      */
     private void restartLoader() {
-        new FetchSortFromPreferences(this, new AsyncTaskListener<Integer>() {
+        TaskScheduler.submit(TaskScheduler.LANE_UI, new FetchSortFromPreferences(this, new AsyncTaskListener<Integer>() {
             @Override
             public void onPreTaskExecution() { /* nothing to do */ }
 
@@ -200,11 +218,11 @@ public class MainActivity extends AppCompatActivity
                 args.putInt(SORT_BY_FLAG_KEY, result);
                 getSupportLoaderManager().restartLoader(ID_MOVIES_LOADER, args, MainActivity.this);
             }
-        }).execute();
+        }));
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, Bundle args) {
+    public Loader<MovieGridData> onCreateLoader(int loaderId, Bundle args) {
         switch (loaderId) {
 
             case ID_MOVIES_LOADER:
@@ -214,11 +232,11 @@ public class MainActivity extends AppCompatActivity
                 if (flag == MOST_POPULAR_FLAG) {
                     queryUri = MovieContract.PopularMovieEntry.CONTENT_URI;
                     sortOrder = MovieContract.PopularMovieEntry.TABLE_NAME + "." +
-                            MovieContract.PopularMovieEntry._ID + " ASC";
+                            MovieContract.PopularMovieEntry.COLUMN_RANK + " ASC";
                 } else if (flag == HIGHEST_RATED_FLAG) {
                     queryUri = MovieContract.HighestRatedMovieEntry.CONTENT_URI;
                     sortOrder = MovieContract.HighestRatedMovieEntry.TABLE_NAME + "." +
-                            MovieContract.HighestRatedMovieEntry._ID + " ASC";
+                            MovieContract.HighestRatedMovieEntry.COLUMN_RANK + " ASC";
                 } else if (flag == FAVORITES_FLAG) {
                     // in this case show latest inserted movies first
                     queryUri = MovieContract.FavoriteMovieEntry.CONTENT_URI;
@@ -227,12 +245,11 @@ public class MainActivity extends AppCompatActivity
                 } else {
                     throw new IllegalArgumentException("Unknown sort by flag: " + flag);
                 }
-                return new CursorLoader(MainActivity.this,
-                        queryUri,
-                        MoviesAdapter.PROJECTION,
-                        null,
-                        null,
-                        sortOrder);
+                MoviesGridLoader loader = new MoviesGridLoader(MainActivity.this, queryUri, sortOrder);
+                // load saved position page firstly
+                mCurrentPage = mPosition != RecyclerView.NO_POSITION ? mPosition / MoviesGridLoader.PAGE_SIZE : 0;
+                loader.setCurrentPage(mCurrentPage);
+                return loader;
 
             default:
                 throw new RuntimeException("Loader Not Implemented: " + loaderId);
@@ -240,18 +257,52 @@ public class MainActivity extends AppCompatActivity
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        mMoviesAdapter.setCursor(data);
-        if (mPosition == RecyclerView.NO_POSITION) mPosition = 0;
-        mRecyclerView.smoothScrollToPosition(mPosition);
-        mPosition = RecyclerView.NO_POSITION; // use only once time
-        if (data != null && data.getCount() != 0) showMoviesView();
+    public void onLoadFinished(Loader<MovieGridData> loader, MovieGridData data) {
+        boolean isUpdate = mMoviesAdapter.isShowing(data);
+        mMoviesAdapter.setData(data);
+        // load visible pages of an updated list that are not in loaded window (a new list is
+        // scrolled below, so its visible pages are loaded when it is scrolled)
+        if (isUpdate) updateVisibleRange();
+        // updates of the same list keep scroll position, a new list is shown from the top
+        // (or from saved position)
+        if (mPosition != RecyclerView.NO_POSITION || !isUpdate) {
+            if (mPosition == RecyclerView.NO_POSITION) mPosition = 0;
+            mRecyclerView.smoothScrollToPosition(mPosition);
+            mPosition = RecyclerView.NO_POSITION; // use only once time
+        }
+        if (data != null && !data.isEmpty()) showMoviesView();
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<MovieGridData> loader) {
         showLoading();
-        mMoviesAdapter.setCursor(null);
+        mMoviesAdapter.setData(null);
+    }
+
+    /**
+     * This method tells movies adapter and loader the range of movies that the user is looking
+     * at, so missing pages are loaded. It must not be called while the grid is computing a
+     * layout.
+     */
+    private void updateVisibleRange() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) mRecyclerView.getLayoutManager();
+        int firstPosition = layoutManager.findFirstVisibleItemPosition();
+        if (firstPosition == RecyclerView.NO_POSITION) return;
+        updateCurrentPage(firstPosition);
+        mMoviesAdapter.setVisibleRange(firstPosition, layoutManager.findLastVisibleItemPosition());
+    }
+
+    /**
+     * This method tells movies loader the page that the user is looking at, so data reloaded
+     * after a change is loaded around it.
+     * @param position first visible position.
+     */
+    private void updateCurrentPage(int position) {
+        int page = position / MoviesGridLoader.PAGE_SIZE;
+        if (page == mCurrentPage) return;
+        mCurrentPage = page;
+        Loader<MovieGridData> loader = getSupportLoaderManager().getLoader(ID_MOVIES_LOADER);
+        if (loader instanceof MoviesGridLoader) ((MoviesGridLoader) loader).setCurrentPage(page);
     }
 
     @Override
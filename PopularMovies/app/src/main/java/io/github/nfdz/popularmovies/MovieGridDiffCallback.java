@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies;
+
+import android.support.v7.util.DiffUtil;
+
+import java.util.List;
+
+import io.github.nfdz.popularmovies.types.MovieGridItem;
+
+/**
+ * This DiffUtil callback compares two movies grids. Items are identified by movie identifier.
+ */
+public class MovieGridDiffCallback extends DiffUtil.Callback {
+
+    private final List<MovieGridItem> mOldItems;
+    private final List<MovieGridItem> mNewItems;
+
+    public MovieGridDiffCallback(List<MovieGridItem> oldItems, List<MovieGridItem> newItems) {
+        mOldItems = oldItems;
+        mNewItems = newItems;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldItems.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewItems.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldItems.get(oldItemPosition).getMovieId() == mNewItems.get(newItemPosition).getMovieId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        return mOldItems.get(oldItemPosition).hasSameContent(mNewItems.get(newItemPosition));
+    }
+}
@@ -14,28 +14,23 @@ import android.support.v4.content.Loader;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.OrientationHelper;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import java.net.URL;
 import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import io.github.nfdz.popularmovies.types.MovieInfo;
 import io.github.nfdz.popularmovies.types.MovieReview;
-import io.github.nfdz.popularmovies.utilities.TMDbException;
-import io.github.nfdz.popularmovies.utilities.TMDbJsonUtils;
-import io.github.nfdz.popularmovies.utilities.TMDbNetworkUtils;
+import io.github.nfdz.popularmovies.utilities.MovieExtrasUtils;
 
 
 public class MovieReviewsFragment extends Fragment implements LoaderManager.LoaderCallbacks<MovieReview[]> {
 
-    private static final String TAG = MovieReviewsFragment.class.getSimpleName();
     private static final String ARG_MOVIE = "movie";
     private static final int ID_REVIEWS_LOADER = 884;
 
@@ -119,15 +114,10 @@ public class MovieReviewsFragment extends Fragment implements LoaderManager.Load
 
                     @Override
                     public MovieReview[] loadInBackground() {
-                        try {
-                            URL reviewsURL = TMDbNetworkUtils.buildMovieReviewsURL(mMovieInfo.getMovieId());
-                            String reviewsJsonStr = TMDbNetworkUtils.getResponseFromHttpUrl(reviewsURL);
-                            List<MovieReview> reviews = TMDbJsonUtils.getReviewsFromJson(reviewsJsonStr);
-                            return reviews.toArray(new MovieReview[]{});
-                        } catch (TMDbException e) {
-                            Log.d(TAG, "Error retrieving movie videos. ", e);
-                            return null;
-                        }
+                        // stored reviews are used while they are fresh
+                        List<MovieReview> reviews = MovieExtrasUtils.getReviews(getContext(),
+                                mMovieInfo.getMovieId());
+                        return reviews != null ? reviews.toArray(new MovieReview[reviews.size()]) : null;
                     }
 
                     @Override
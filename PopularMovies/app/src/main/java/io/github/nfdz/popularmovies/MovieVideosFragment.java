@@ -14,14 +14,12 @@ import android.support.v4.content.Loader;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.OrientationHelper;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -29,13 +27,10 @@ import java.util.Map;
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import io.github.nfdz.popularmovies.types.MovieInfo;
-import io.github.nfdz.popularmovies.utilities.TMDbException;
-import io.github.nfdz.popularmovies.utilities.TMDbJsonUtils;
-import io.github.nfdz.popularmovies.utilities.TMDbNetworkUtils;
+import io.github.nfdz.popularmovies.utilities.MovieExtrasUtils;
 
 public class MovieVideosFragment extends Fragment implements LoaderManager.LoaderCallbacks<Map<String, String>> {
 
-    private static final String TAG = MovieVideosFragment.class.getSimpleName();
     private static final String ARG_MOVIE = "movie";
     private static final int ID_VIDEOS_LOADER = 412;
 
@@ -116,15 +111,8 @@ public class MovieVideosFragment extends Fragment implements LoaderManager.Loade
 
                     @Override
                     public Map<String, String> loadInBackground() {
-                        try {
-                            URL videosURL = TMDbNetworkUtils.buildMovieVideosURL(mMovieInfo.getMovieId());
-                            String videosJsonStr = TMDbNetworkUtils.getResponseFromHttpUrl(videosURL);
-                            Map<String, String> videosMap = TMDbJsonUtils.getVideosFromJson(videosJsonStr);
-                            return videosMap;
-                        } catch (TMDbException e) {
-                            Log.d(TAG, "Error retrieving movie videos. ", e);
-                            return null;
-                        }
+                        // stored videos are used while they are fresh
+                        return MovieExtrasUtils.getVideos(getContext(), mMovieInfo.getMovieId());
                     }
 
                     @Override
@@ -4,7 +4,7 @@
 package io.github.nfdz.popularmovies;
 
 import android.content.Context;
-import android.database.Cursor;
+import android.graphics.drawable.Drawable;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
@@ -15,36 +15,23 @@ import android.widget.TextView;
 
 import com.squareup.picasso.Picasso;
 
-import io.github.nfdz.popularmovies.data.MovieContract;
-import io.github.nfdz.popularmovies.utilities.MovieInfoUtils;
-import io.github.nfdz.popularmovies.utilities.TMDBImagesUtils;
+import io.github.nfdz.popularmovies.types.MovieGridData;
+import io.github.nfdz.popularmovies.types.MovieGridItem;
 
 /**
  * This class a recycler view adapter and manage the creation and binding of movie ui items.
+ * Movies are loaded by pages, items which page is not loaded yet are shown with placeholders.
  */
 public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MoviesAdapterViewHolder> {
 
-    public static final String[] PROJECTION = {
-            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry._ID,
-            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_TITLE,
-            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_RELEASE_DATE,
-            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_RATING,
-            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_POSTER_PATHS
-    };
-
-    public static final int INDEX_MOVIE_ID = 0;
-    public static final int INDEX_MOVIE_TITLE = 1;
-    public static final int INDEX_MOVIE_RELEASE_DATE = 2;
-    public static final int INDEX_MOVIE_RATING = 3;
-    public static final int INDEX_MOVIE_POSTER_PATHS = 4;
-
-
-    /** This cursor has got the movies to show, it could be null */
-    private Cursor mCursor;
+    /** Loaded pages of movies to show, they are decoded in background */
+    private final MoviesGridPager mPager;
 
     private final Context mContext;
     private final MoviesAdapterOnClickHandler mClickHandler;
-    private final int mPosterWidth;
+
+    /** Placeholder shown meanwhile Picasso is loading a poster (shared by every item) */
+    private final Drawable mPosterPlaceholder;
 
     /**
      * The interface that receives onClick messages.
@@ -61,7 +48,34 @@ public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MoviesAdap
     public MoviesAdapter(MoviesAdapterOnClickHandler clickHandler, Context context) {
         mContext = context;
         mClickHandler = clickHandler;
-        mPosterWidth = mContext.getResources().getDimensionPixelSize(R.dimen.movie_item_poster_width);
+        mPosterPlaceholder = ContextCompat.getDrawable(mContext, R.drawable.art_no_poster);
+        mPager = new MoviesGridPager(context, new MoviesGridPager.Listener() {
+            @Override
+            public void onDataSetChanged() {
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(position, count, payload);
+            }
+        });
+        setHasStableIds(true);
     }
 
     @Override
@@ -75,48 +89,63 @@ public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MoviesAdap
 
     @Override
     public void onBindViewHolder(MoviesAdapterViewHolder holder, int position) {
-        mCursor.moveToPosition(position);
-        holder.mTitleTextView.setText(mCursor.getString(INDEX_MOVIE_TITLE) +
-                " (" + getYear(mCursor.getString(INDEX_MOVIE_RELEASE_DATE)) + ")");
-        holder.mRatingTextView.setText(Double.toString(mCursor.getDouble(INDEX_MOVIE_RATING))+"/10");
-        String mergedPosterPaths = mCursor.getString(INDEX_MOVIE_POSTER_PATHS);
-        String[] posterPaths = MovieInfoUtils.splitPaths(mergedPosterPaths);
-        String posterPath = TMDBImagesUtils.resolveImagePath(posterPaths, mPosterWidth);
-        // add no poster art meanwhile Picasso is loading the poster
+        // binding only reads loaded items, pages are loaded when the grid is scrolled (see
+        // setVisibleRange) and item is bound again when its page is loaded
+        MovieGridItem item = mPager.peekItem(position);
+        holder.mTitleTextView.setText(item != null ? item.getTitleText() : null);
+        holder.mRatingTextView.setText(item != null ? item.getRatingText() : null);
         Picasso.with(mContext)
-                .load(posterPath)
-                .placeholder(ContextCompat.getDrawable(mContext, R.drawable.art_no_poster))
+                .load(item != null ? item.getPosterUri() : null)
+                .placeholder(mPosterPlaceholder)
                 .into(holder.mPosterImageView);
     }
 
     @Override
     public int getItemCount() {
-        return mCursor != null ? mCursor.getCount() : 0;
+        return mPager.getCount();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        // movie of every position is known before its page is loaded, so ids never change
+        return mPager.getMovieId(position);
     }
 
     /**
-     * This methods update data cursor with the given one and refresh the view.
-     * It closes the old cursor if it is not the same that the given one.
+     * This methods update movies with the given ones and refresh the view. If given data
+     * is an update of shown movies, only changed items are refreshed.
      *
-     * @param cursor
+     * @param data movies to show, it could be null.
      */
-    public void setCursor(Cursor cursor) {
-        if (mCursor != cursor) {
-            Cursor oldCursor = mCursor;
-            mCursor = cursor;
-            if (oldCursor != null) oldCursor.close();
-        }
-        notifyDataSetChanged();
+    public void setData(MovieGridData data) {
+        mPager.setData(data);
+    }
+
+    /**
+     * This method sets the range of positions that the user is looking at, so their pages are
+     * loaded and far pages are released. It must be called from a scroll listener, not while
+     * the grid is computing a layout.
+     * @param firstPosition first visible position.
+     * @param lastPosition last visible position.
+     */
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        mPager.setVisibleRange(firstPosition, lastPosition);
+    }
+
+    /**
+     * @param position
+     * @return item in given position or null if it is not loaded yet (it does not load it).
+     */
+    public MovieGridItem peekItem(int position) {
+        return mPager.peekItem(position);
     }
 
     /**
-     * Release date is like YYYY-MM. It has to extract the first four chars.
-     * @param realeaseDate
-     * @return year
+     * @param data
+     * @return true if given data is an update of shown movies list.
      */
-    private String getYear(String realeaseDate) {
-        if (realeaseDate.length() < 4) return realeaseDate;
-        return realeaseDate.substring(0, 4);
+    public boolean isShowing(MovieGridData data) {
+        return mPager.isSameList(data);
     }
 
     /**
@@ -144,9 +173,10 @@ public class MoviesAdapter extends RecyclerView.Adapter<MoviesAdapter.MoviesAdap
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            long id = mCursor.getLong(INDEX_MOVIE_ID);
-            mClickHandler.onClick(id);
+            if (adapterPosition == RecyclerView.NO_POSITION) return;
+            MovieGridItem item = mPager.peekItem(adapterPosition);
+            if (item == null) return;
+            mClickHandler.onClick(item.getMovieId());
         }
     }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+import android.support.v4.util.LongSparseArray;
+import android.support.v7.util.DiffUtil;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.nfdz.popularmovies.data.MovieContract;
+import io.github.nfdz.popularmovies.data.MovieInfoCache;
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
+import io.github.nfdz.popularmovies.types.MovieGridData;
+import io.github.nfdz.popularmovies.types.MovieGridItem;
+import io.github.nfdz.popularmovies.types.MovieInfo;
+import io.github.nfdz.popularmovies.utilities.ImagesConfigurationCache;
+import io.github.nfdz.popularmovies.utilities.MovieInfoUtils;
+import io.github.nfdz.popularmovies.utilities.TMDBImagesUtils;
+
+/**
+ * This loader queries a movies list and decodes its rows into grid items in a background
+ * thread, so the grid binds ready to show items. Long lists are loaded by pages, it only loads
+ * the identifiers of every movie (a cheap query of one column) and a window of pages around
+ * the page that the user is looking at (the rest are loaded on demand by MoviesGridPager).
+ * Pages are loaded by the identifiers of their movies, so the movie of a position never
+ * changes until the list is loaded again. Like CursorLoader, it observes the list and
+ * loads it again when data changes. If the whole list fits in the window, reloaded data
+ * contains its differences with the previous one (computed in background too), so the grid
+ * only updates items that have changed.
+ */
+public class MoviesGridLoader extends AsyncTaskLoader<MovieGridData> {
+
+    /** Number of movies of every page */
+    public static final int PAGE_SIZE = 40;
+
+    /** Maximum distance of a loaded page to the current one, so at most 5 pages are in memory */
+    public static final int MAX_PAGE_DISTANCE = 2;
+
+    private static final String[] ID_PROJECTION = {
+            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry._ID
+    };
+    private static final String RATING_SCALE = "/10";
+
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private final Uri mUri;
+    private final String mSortOrder;
+    private final int mPosterWidth;
+
+    private boolean mObserverRegistered;
+    private MovieGridData mData;
+
+    /** Last delivered data, background loads compute differences against it */
+    private volatile MovieGridData mDeliveredData;
+
+    /** Page that the user is looking at, window is loaded around it */
+    private volatile int mCurrentPage;
+
+    /**
+     * @param context
+     * @param uri movies list URI.
+     * @param sortOrder sort order of the list.
+     */
+    public MoviesGridLoader(Context context, Uri uri, String sortOrder) {
+        super(context);
+        mUri = uri;
+        mSortOrder = sortOrder;
+        mPosterWidth = getPosterWidth(context);
+    }
+
+    /**
+     * This method sets the page that the user is looking at, next loads will load the window
+     * of pages around it.
+     * @param page
+     */
+    public void setCurrentPage(int page) {
+        mCurrentPage = page;
+    }
+
+    @Override
+    public MovieGridData loadInBackground() {
+        long[] movieIds = queryMovieIds();
+        int count = movieIds.length;
+        int windowPages = 2 * MAX_PAGE_DISTANCE + 1;
+        int lastPage = count > 0 ? (count - 1) / PAGE_SIZE : 0;
+        int firstPage = Math.max(0, Math.min(mCurrentPage - MAX_PAGE_DISTANCE, lastPage - windowPages + 1));
+        List<MovieGridItem> items = queryItems(getContext(),
+                movieIds,
+                mPosterWidth,
+                firstPage * PAGE_SIZE,
+                windowPages * PAGE_SIZE);
+        // if the window could not be queried, its pages are loaded on demand
+        if (items == null) items = Collections.emptyList();
+        MovieGridData data = new MovieGridData(mUri, mSortOrder, movieIds, PAGE_SIZE, firstPage, items, null, null);
+
+        // differences are only computed between whole lists
+        MovieGridData previousData = mDeliveredData;
+        if (previousData == null || !previousData.isComplete() || !data.isComplete()) return data;
+        List<MovieGridItem> previousItems = previousData.getWindowItems();
+        boolean detectMoves = true;
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new MovieGridDiffCallback(previousItems, items),
+                detectMoves);
+        return new MovieGridData(mUri, mSortOrder, movieIds, PAGE_SIZE, firstPage, items, previousItems, diff);
+    }
+
+    private long[] queryMovieIds() {
+        Cursor cursor = getContext().getContentResolver().query(mUri,
+                ID_PROJECTION,
+                null,
+                null,
+                mSortOrder);
+        if (cursor == null) return new long[0];
+        try {
+            long[] movieIds = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                movieIds[i] = cursor.getLong(0);
+            }
+            return movieIds;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @param context
+     * @return width in pixels of a poster in movies grid.
+     */
+    public static int getPosterWidth(Context context) {
+        return context.getResources().getDimensionPixelSize(R.dimen.movie_item_poster_width);
+    }
+
+    /**
+     * This method queries the movies of a range of given identifiers and decodes them into grid
+     * items in the same order. Movies that do not exist anymore (the list has changed and it
+     * will be loaded again) are decoded into items without content. Warning, it queries the
+     * provider in calling thread.
+     * @param context
+     * @param movieIds identifiers of every movie of the list in order.
+     * @param posterWidth width in pixels of posters.
+     * @param offset position of the first movie.
+     * @param limit maximum number of movies.
+     * @return grid items of the range (empty if it is out of the list), or null if the
+     * provider could not be queried.
+     */
+    public static List<MovieGridItem> queryItems(Context context,
+                                                 long[] movieIds,
+                                                 int posterWidth,
+                                                 int offset,
+                                                 int limit) {
+        int end = Math.min(movieIds.length, offset + limit);
+        if (offset >= end) return Collections.emptyList();
+        StringBuilder selection = new StringBuilder()
+                .append(MovieContract.MovieEntry.TABLE_NAME).append('.')
+                .append(MovieContract.MovieEntry._ID).append(" IN (");
+        String[] selectionArgs = new String[end - offset];
+        for (int i = offset; i < end; i++) {
+            selection.append(i > offset ? ",?" : "?");
+            selectionArgs[i - offset] = Long.toString(movieIds[i]);
+        }
+        selection.append(')');
+
+        // whole movies are read to cache them, detail screen will not need to query them again
+        long cacheVersion = MovieInfoCache.getVersion();
+        Cursor cursor = context.getContentResolver().query(MovieContract.MovieEntry.CONTENT_URI,
+                MovieInfoUtils.MOVIES_PROJECTION,
+                selection.toString(),
+                selectionArgs,
+                null);
+        if (cursor == null) return null;
+        LongSparseArray<MovieInfo> movies = new LongSparseArray<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                MovieInfo movie = MovieInfoUtils.getMovieFromCursor(cursor);
+                MovieInfoCache.put(movie, cacheVersion);
+                movies.put(movie.getMovieId(), movie);
+            }
+        } finally {
+            cursor.close();
+        }
+        ImagesConfiguration config = ImagesConfigurationCache.getCachedConfiguration(context);
+        List<MovieGridItem> items = new ArrayList<>(end - offset);
+        for (int i = offset; i < end; i++) {
+            MovieInfo movie = movies.get(movieIds[i]);
+            items.add(movie != null ? buildItem(movie, config, posterWidth) :
+                    new MovieGridItem(movieIds[i], null, null, null));
+        }
+        return items;
+    }
+
+    private static MovieGridItem buildItem(MovieInfo movie, ImagesConfiguration config, int posterWidth) {
+        String title = movie.getTitle() + " (" + getYear(movie.getReleaseDate()) + ")";
+        String rating = Double.toString(movie.getRating()) + RATING_SCALE;
+        String posterUrl = TMDBImagesUtils.resolvePosterUrl(config, movie.getPosterKey(), posterWidth);
+        Uri posterUri = TextUtils.isEmpty(posterUrl) ? null : Uri.parse(posterUrl);
+        return new MovieGridItem(movie.getMovieId(), title, rating, posterUri);
+    }
+
+    /**
+     * Release date is like YYYY-MM. It has to extract the first four chars.
+     * @param realeaseDate
+     * @return year
+     */
+    private static String getYear(String realeaseDate) {
+        if (realeaseDate.length() < 4) return realeaseDate;
+        return realeaseDate.substring(0, 4);
+    }
+
+    @Override
+    public void deliverResult(MovieGridData data) {
+        if (isReset()) return;
+        mData = data;
+        if (isStarted()) {
+            mDeliveredData = data;
+            super.deliverResult(data);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserverRegistered) {
+            getContext().getContentResolver().registerContentObserver(mUri, true, mObserver);
+            mObserverRegistered = true;
+        }
+        if (mData != null) deliverResult(mData);
+        if (takeContentChanged() || mData == null) forceLoad();
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        mData = null;
+        mDeliveredData = null;
+        if (mObserverRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserverRegistered = false;
+        }
+    }
+}
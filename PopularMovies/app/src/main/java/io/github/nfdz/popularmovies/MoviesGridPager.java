@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies;
+
+import android.content.Context;
+import android.support.v7.util.ListUpdateCallback;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.util.List;
+
+import io.github.nfdz.popularmovies.types.MovieGridData;
+import io.github.nfdz.popularmovies.types.MovieGridItem;
+import io.github.nfdz.popularmovies.utilities.TaskScheduler;
+
+/**
+ * This class keeps the loaded pages of a movies grid and loads missing ones on demand when the
+ * user scrolls to them (see setVisibleRange). Only pages near the one that the user is looking
+ * at are kept in memory, further pages are released. Reading items never changes pages, so
+ * they can be read while the grid is binding. It must be used only from the main thread.
+ */
+public class MoviesGridPager {
+
+    private static final String TAG = MoviesGridPager.class.getSimpleName();
+    private static final String ERROR_LOAD_PAGE = "There was an error loading movies page: ";
+
+    /** Times that a failed page is loaded again automatically, later it is loaded when scrolled */
+    private static final int MAX_PAGE_RETRIES = 2;
+
+    /**
+     * The interface that receives changes of grid items.
+     */
+    public interface Listener extends ListUpdateCallback {
+        void onDataSetChanged();
+    }
+
+    private final Context mContext;
+    private final Listener mListener;
+    private final int mPosterWidth;
+
+    /** Loaded pages by page number */
+    private final SparseArray<List<MovieGridItem>> mPages = new SparseArray<>();
+
+    /** Tasks of pages that are being loaded by page number */
+    private final SparseArray<LoadPageTask> mLoadingPages = new SparseArray<>();
+
+    /** Number of failed loads by page number */
+    private final SparseIntArray mPageFailures = new SparseIntArray();
+
+    private MovieGridData mData;
+
+    /** It changes with every data, so pages loaded for previous data are discarded */
+    private int mGeneration;
+
+    private int mCurrentPage;
+
+    /**
+     * @param context
+     * @param listener receiver of grid changes.
+     */
+    public MoviesGridPager(Context context, Listener listener) {
+        mContext = context.getApplicationContext();
+        mListener = listener;
+        mPosterWidth = MoviesGridLoader.getPosterWidth(context);
+    }
+
+    /**
+     * @return number of movies of the list (loaded or not).
+     */
+    public int getCount() {
+        return mData != null ? mData.getCount() : 0;
+    }
+
+    /**
+     * @param data
+     * @return true if given data is from the same list that is shown.
+     */
+    public boolean isSameList(MovieGridData data) {
+        return mData != null && data != null && mData.isSameList(data);
+    }
+
+    /**
+     * This method sets the range of positions that the user is looking at. It releases pages
+     * that are too far from it, loads visible pages that are not loaded and prefetches the next
+     * page (or the previous one) when the range is close to it. Listener is notified when pages
+     * are ready. It must not be called while the grid is computing a layout (call it from a
+     * scroll listener).
+     * @param firstPosition first visible position.
+     * @param lastPosition last visible position.
+     */
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        if (mData == null || firstPosition < 0 || lastPosition < firstPosition) return;
+        int pageSize = MoviesGridLoader.PAGE_SIZE;
+        int firstPage = firstPosition / pageSize;
+        int lastPage = lastPosition / pageSize;
+        moveToPage(firstPage);
+        for (int page = firstPage; page <= lastPage; page++) {
+            requestPage(page);
+        }
+
+        int prefetchThreshold = pageSize / 4;
+        if (lastPosition % pageSize >= pageSize - prefetchThreshold) requestPage(lastPage + 1);
+        if (firstPosition % pageSize < prefetchThreshold) requestPage(firstPage - 1);
+    }
+
+    /**
+     * This method returns the item in given position only if it is loaded. It does not load
+     * anything.
+     * @param position
+     * @return item or null if it is not loaded.
+     */
+    public MovieGridItem peekItem(int position) {
+        return getLoadedItem(mPages, position);
+    }
+
+    /**
+     * @param position
+     * @return identifier of the movie in given position, even if it is not loaded, so it never
+     * changes until new data is set.
+     */
+    public long getMovieId(int position) {
+        return mData.getMovieId(position);
+    }
+
+    /**
+     * This methods update the list with given data and notifies the listener. If given data
+     * contains its differences with shown movies, only changed items are notified. If it is
+     * an update of shown list, only loaded items that have changed are notified.
+     * @param data movies to show, it could be null.
+     */
+    public void setData(MovieGridData data) {
+        mGeneration++;
+        MovieGridData oldData = mData;
+        SparseArray<List<MovieGridItem>> oldPages = mPages.clone();
+        mData = data;
+        mPages.clear();
+        mPageFailures.clear();
+        cancelLoadingPages();
+
+        if (data == null) {
+            mListener.onDataSetChanged();
+            return;
+        }
+
+        List<MovieGridItem> items = data.getWindowItems();
+        int pageSize = data.getPageSize();
+        for (int start = 0, page = data.getFirstPage(); start < items.size(); start += pageSize, page++) {
+            mPages.put(page, items.subList(start, Math.min(start + pageSize, items.size())));
+        }
+
+        if (oldData == null || !oldData.isSameList(data)) {
+            mCurrentPage = data.getFirstPage();
+            mListener.onDataSetChanged();
+        } else if (data.getDiff() != null && data.getPreviousItems() == oldData.getWindowItems()) {
+            data.getDiff().dispatchUpdatesTo(mListener);
+        } else {
+            dispatchPageChanges(oldData, oldPages);
+        }
+    }
+
+    /**
+     * This method notifies items that have changed between given data and shown one. An item
+     * has changed if its movie is another one or if it is loaded in only one of them or with
+     * other content. Items that are not loaded in both of them keep their placeholder.
+     */
+    private void dispatchPageChanges(MovieGridData oldData, SparseArray<List<MovieGridItem>> oldPages) {
+        int oldCount = oldData.getCount();
+        int count = mData.getCount();
+        int commonCount = Math.min(oldCount, count);
+        int rangeStart = -1;
+        for (int position = 0; position < commonCount; position++) {
+            MovieGridItem oldItem = getLoadedItem(oldPages, position);
+            MovieGridItem item = getLoadedItem(mPages, position);
+            boolean changed = oldData.getMovieId(position) != mData.getMovieId(position) ||
+                    (oldItem == null ? item != null : item == null || !oldItem.hasSameContent(item));
+            if (changed && rangeStart == -1) {
+                rangeStart = position;
+            } else if (!changed && rangeStart != -1) {
+                mListener.onChanged(rangeStart, position - rangeStart, null);
+                rangeStart = -1;
+            }
+        }
+        if (rangeStart != -1) mListener.onChanged(rangeStart, commonCount - rangeStart, null);
+
+        if (count > oldCount) {
+            mListener.onInserted(oldCount, count - oldCount);
+        } else if (count < oldCount) {
+            mListener.onRemoved(count, oldCount - count);
+        }
+    }
+
+    private static MovieGridItem getLoadedItem(SparseArray<List<MovieGridItem>> pages, int position) {
+        int pageSize = MoviesGridLoader.PAGE_SIZE;
+        List<MovieGridItem> page = pages.get(position / pageSize);
+        int offsetInPage = position % pageSize;
+        return page != null && offsetInPage < page.size() ? page.get(offsetInPage) : null;
+    }
+
+    /**
+     * This method sets the page that the user is looking at and releases pages that are too
+     * far from it.
+     */
+    private void moveToPage(int page) {
+        if (page == mCurrentPage) return;
+        mCurrentPage = page;
+        for (int i = mPages.size() - 1; i >= 0; i--) {
+            if (!isNearPage(mPages.keyAt(i))) mPages.removeAt(i);
+        }
+        for (int i = mLoadingPages.size() - 1; i >= 0; i--) {
+            if (!isNearPage(mLoadingPages.keyAt(i))) {
+                mLoadingPages.valueAt(i).cancel(false);
+                mLoadingPages.removeAt(i);
+            }
+        }
+    }
+
+    private void cancelLoadingPages() {
+        for (int i = 0; i < mLoadingPages.size(); i++) {
+            mLoadingPages.valueAt(i).cancel(false);
+        }
+        mLoadingPages.clear();
+    }
+
+    private boolean isNearPage(int page) {
+        return Math.abs(page - mCurrentPage) <= MoviesGridLoader.MAX_PAGE_DISTANCE;
+    }
+
+    private void requestPage(int page) {
+        if (mData == null || page < 0 || page * mData.getPageSize() >= mData.getCount()) return;
+        if (mPages.get(page) != null || mLoadingPages.get(page) != null) return;
+        LoadPageTask task = new LoadPageTask(mData, page, mGeneration);
+        mLoadingPages.put(page, task);
+        TaskScheduler.submit(TaskScheduler.LANE_UI, task);
+    }
+
+    private void onPageLoaded(int page, int generation, List<MovieGridItem> items) {
+        // data has changed meanwhile page was loaded
+        if (generation != mGeneration) return;
+        if (items == null) {
+            // provider could not be queried
+            onPageFailed(page, generation);
+            return;
+        }
+        mLoadingPages.delete(page);
+        mPageFailures.delete(page);
+        if (!isNearPage(page)) return;
+        mPages.put(page, items);
+        int start = page * mData.getPageSize();
+        int count = Math.min(items.size(), mData.getCount() - start);
+        if (count > 0) mListener.onChanged(start, count, null);
+    }
+
+    /**
+     * This method requests a failed page again, its items keep their placeholders meanwhile.
+     * Pages that fail several times are not requested automatically anymore, they are requested
+     * again when the user scrolls to them.
+     */
+    private void onPageFailed(int page, int generation) {
+        if (generation != mGeneration) return;
+        mLoadingPages.delete(page);
+        int failures = mPageFailures.get(page) + 1;
+        mPageFailures.put(page, failures);
+        if (failures > MAX_PAGE_RETRIES || !isNearPage(page)) return;
+        requestPage(page);
+    }
+
+    /**
+     * This task loads a page of movies grid in background. Its result is null if the provider
+     * could not be queried, an empty page is a valid result (the list has shrunk).
+     */
+    private class LoadPageTask extends TaskScheduler.Task<List<MovieGridItem>> {
+
+        private final MovieGridData mPageData;
+        private final int mPage;
+        private final int mPageGeneration;
+
+        LoadPageTask(MovieGridData data, int page, int generation) {
+            mPageData = data;
+            mPage = page;
+            mPageGeneration = generation;
+        }
+
+        @Override
+        protected List<MovieGridItem> doInBackground() {
+            int pageSize = mPageData.getPageSize();
+            return MoviesGridLoader.queryItems(mContext,
+                    mPageData.getMovieIds(),
+                    mPosterWidth,
+                    mPage * pageSize,
+                    pageSize);
+        }
+
+        @Override
+        protected void onComplete(List<MovieGridItem> items) {
+            onPageLoaded(mPage, mPageGeneration, items);
+        }
+
+        @Override
+        protected void onFailure(Throwable error) {
+            Log.e(TAG, ERROR_LOAD_PAGE + mPage, error);
+            onPageFailed(mPage, mPageGeneration);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+
+import com.squareup.picasso.Picasso;
+
+import io.github.nfdz.popularmovies.types.MovieGridItem;
+
+/**
+ * This scroll listener warms Picasso cache with the posters of the next rows of movies grid in
+ * scroll direction, so they are ready when their cells are bound. Posters are requested with
+ * the same URI that cells use (already resolved to grid size by TMDBImagesUtils), so cells hit
+ * the cache. Requests of rows that are not ahead anymore are cancelled. While the grid is
+ * flung very fast it does not prefetch anything, rows would be passed before being used.
+ */
+public class PosterPrefetcher extends RecyclerView.OnScrollListener {
+
+    /** Number of rows prefetched ahead of visible ones */
+    private static final int PREFETCH_ROWS = 3;
+
+    /** Scroll velocity (in dp per second) above which prefetching stops */
+    private static final int MAX_PREFETCH_VELOCITY_DP = 6000;
+
+    private static final int MILLIS_PER_SECOND = 1000;
+
+    private final Picasso mPicasso;
+    private final MoviesAdapter mAdapter;
+    private final float mMaxVelocity;
+
+    /** Tags of prefetch requests by grid position */
+    private final SparseArray<Object> mRequests = new SparseArray<>();
+
+    private long mLastScrollMillis;
+
+    /**
+     * @param context
+     * @param adapter adapter of movies grid.
+     */
+    public PosterPrefetcher(Context context, MoviesAdapter adapter) {
+        mPicasso = Picasso.with(context);
+        mAdapter = adapter;
+        mMaxVelocity = MAX_PREFETCH_VELOCITY_DP * context.getResources().getDisplayMetrics().density;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0) return;
+        long now = SystemClock.uptimeMillis();
+        long elapsedMillis = now - mLastScrollMillis;
+        mLastScrollMillis = now;
+        if (elapsedMillis > 0 && Math.abs(dy) * MILLIS_PER_SECOND / (float) elapsedMillis > mMaxVelocity) {
+            // too fast, back off until scroll slows down
+            cancelAll();
+            return;
+        }
+        prefetch(recyclerView, dy > 0);
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) mLastScrollMillis = 0;
+    }
+
+    /**
+     * This method cancels every pending prefetch request. It has to be invoked when grid
+     * is not shown anymore.
+     */
+    public void cancelAll() {
+        for (int i = 0; i < mRequests.size(); i++) {
+            mPicasso.cancelTag(mRequests.valueAt(i));
+        }
+        mRequests.clear();
+    }
+
+    private void prefetch(RecyclerView recyclerView, boolean forward) {
+        GridLayoutManager layoutManager = (GridLayoutManager) recyclerView.getLayoutManager();
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (firstVisible == RecyclerView.NO_POSITION) return;
+
+        int prefetchCount = PREFETCH_ROWS * layoutManager.getSpanCount();
+        int start = forward ? lastVisible + 1 : Math.max(0, firstVisible - prefetchCount);
+        int end = forward ? Math.min(mAdapter.getItemCount(), start + prefetchCount) : firstVisible;
+
+        // cancel requests of rows that have been passed or are behind the scroll direction
+        for (int i = mRequests.size() - 1; i >= 0; i--) {
+            int position = mRequests.keyAt(i);
+            if (position < start || position >= end) {
+                mPicasso.cancelTag(mRequests.valueAt(i));
+                mRequests.removeAt(i);
+            }
+        }
+
+        for (int position = start; position < end; position++) {
+            if (mRequests.get(position) != null) continue;
+            // posters of rows that are not loaded yet are prefetched when they are
+            MovieGridItem item = mAdapter.peekItem(position);
+            Uri posterUri = item != null ? item.getPosterUri() : null;
+            if (posterUri == null) continue;
+            Object tag = new Object();
+            mRequests.put(position, tag);
+            mPicasso.load(posterUri)
+                    .tag(tag)
+                    .fetch();
+        }
+    }
+}
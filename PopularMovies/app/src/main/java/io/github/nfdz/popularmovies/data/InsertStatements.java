@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class inserts rows with compiled statements that are reused for every row of the same
+ * table and columns, so SQL is built and prepared only once for a whole bulk write instead of
+ * once per row (like SQLiteDatabase.insert does). Statements have to be closed when the bulk
+ * write ends. It is not thread safe.
+ *
+ * Consecutive rows of the same table and columns (like the rows of a bulk insert) reuse the
+ * statement of the previous row without looking it up again.
+ */
+class InsertStatements {
+
+    private static final String TAG = InsertStatements.class.getSimpleName();
+
+    private final SQLiteDatabase mDb;
+
+    /** Compiled statements by table and sorted columns */
+    private final Map<String, SQLiteStatement> mStatements = new HashMap<>();
+
+    /** Statement of the previous inserted values, with its table and sorted columns */
+    private SQLiteStatement mLastStatement;
+    private String mLastTableName;
+    private String[] mLastColumns;
+    private final Set<String> mLastColumnSet = new HashSet<>();
+
+    InsertStatements(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * This method inserts given values in given table.
+     * @param tableName
+     * @param values
+     * @return row id of inserted row or -1 if it could not be inserted (like SQLiteDatabase).
+     */
+    long insert(String tableName, ContentValues values) {
+        if (values.size() == 0) return mDb.insert(tableName, null, values);
+        if (!hasLastColumns(tableName, values)) {
+            String[] columns = values.keySet().toArray(new String[values.size()]);
+            // values of the same columns could be iterated in different order
+            Arrays.sort(columns);
+            mLastStatement = getStatement(tableName, columns);
+            mLastTableName = tableName;
+            mLastColumns = columns;
+            mLastColumnSet.clear();
+            mLastColumnSet.addAll(Arrays.asList(columns));
+        }
+        String[] columns = mLastColumns;
+        for (int i = 0; i < columns.length; i++) {
+            DatabaseUtils.bindObjectToProgram(mLastStatement, i + 1, values.get(columns[i]));
+        }
+        return executeInsert(tableName, mLastStatement);
+    }
+
+    /**
+     * This method inserts every row of given batch in given table with the same statement.
+     * @param tableName
+     * @param rows
+     * @return number of inserted rows, rows that could not be inserted are not counted.
+     */
+    int insert(String tableName, RowBatch rows) {
+        SQLiteStatement statement = getStatement(tableName, rows.getColumns());
+        int rowsInserted = 0;
+        for (int row = 0; row < rows.getRowCount(); row++) {
+            rows.bindRow(statement, row);
+            if (executeInsert(tableName, statement) != -1) {
+                rowsInserted++;
+            }
+        }
+        return rowsInserted;
+    }
+
+    /**
+     * This method releases every compiled statement.
+     */
+    void close() {
+        for (SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+        mLastStatement = null;
+        mLastTableName = null;
+        mLastColumns = null;
+        mLastColumnSet.clear();
+    }
+
+    /**
+     * @return true if given values are of the same table and columns than the previous ones.
+     */
+    private boolean hasLastColumns(String tableName, ContentValues values) {
+        return mLastStatement != null &&
+                tableName.equals(mLastTableName) &&
+                values.size() == mLastColumns.length &&
+                mLastColumnSet.containsAll(values.keySet());
+    }
+
+    private SQLiteStatement getStatement(String tableName, String[] columns) {
+        StringBuilder key = new StringBuilder(tableName);
+        for (String column : columns) key.append(',').append(column);
+        String statementKey = key.toString();
+        SQLiteStatement statement = mStatements.get(statementKey);
+        if (statement == null) {
+            statement = mDb.compileStatement(buildInsertSql(tableName, columns));
+            mStatements.put(statementKey, statement);
+        }
+        return statement;
+    }
+
+    private static String buildInsertSql(String tableName, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append(',');
+            sql.append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ",?" : "?");
+        }
+        return sql.append(')').toString();
+    }
+
+    private static long executeInsert(String tableName, SQLiteStatement statement) {
+        try {
+            return statement.executeInsert();
+        } catch (SQLException e) {
+            Log.e(TAG, "Error inserting a row in: " + tableName, e);
+            return -1;
+        } finally {
+            statement.clearBindings();
+        }
+    }
+}
@@ -4,15 +4,24 @@
 package io.github.nfdz.popularmovies.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+
 /**
  * Content provider implementation. This content provider manages all movies data defined in
  * movie data contract.
@@ -24,11 +33,26 @@ public class MovieContentProvider extends ContentProvider {
     public static final int CODE_POPULAR_MOVIES = 200;
     public static final int CODE_HIGHEST_RATED_MOVIES = 300;
     public static final int CODE_FAVORITE_MOVIES = 400;
+    public static final int CODE_REVIEWS = 500;
+    public static final int CODE_REVIEWS_WITH_MOVIE_ID = 501;
+    public static final int CODE_VIDEOS = 600;
+    public static final int CODE_VIDEOS_WITH_MOVIE_ID = 601;
+    public static final int CODE_MOVIE_EXTRAS = 700;
+    public static final int CODE_MOVIE_EXTRAS_WITH_MOVIE_ID = 701;
+
+    /** Movie reference column of reviews, videos and extras tables */
+    static final String COLUMN_EXTRAS_MOVIE_ID = "movie_id";
 
     private static final UriMatcher sUriMatcher = buildUriMatcher();
 
     private MovieDbHelper mOpenHelper;
 
+    /** Flag to know if calling thread is applying a batch, notifications are sent at the end */
+    private final ThreadLocal<Boolean> mApplyingBatch = new ThreadLocal<>();
+
+    /** Compiled insert statements reused by every insert of the batch applied in the thread */
+    private final ThreadLocal<InsertStatements> mBatchInserts = new ThreadLocal<>();
+
     public static UriMatcher buildUriMatcher() {
 
         final UriMatcher matcher = new UriMatcher(UriMatcher.NO_MATCH);
@@ -42,6 +66,12 @@ public class MovieContentProvider extends ContentProvider {
                 MovieContract.PATH_HIGHEST_RATED_MOVIES, CODE_HIGHEST_RATED_MOVIES);
         matcher.addURI(authority, MovieContract.PATH_MOVIES + "/" +
                 MovieContract.PATH_FAVORITE_MOVIES, CODE_FAVORITE_MOVIES);
+        matcher.addURI(authority, MovieContract.PATH_REVIEWS, CODE_REVIEWS);
+        matcher.addURI(authority, MovieContract.PATH_REVIEWS + "/#", CODE_REVIEWS_WITH_MOVIE_ID);
+        matcher.addURI(authority, MovieContract.PATH_VIDEOS, CODE_VIDEOS);
+        matcher.addURI(authority, MovieContract.PATH_VIDEOS + "/#", CODE_VIDEOS_WITH_MOVIE_ID);
+        matcher.addURI(authority, MovieContract.PATH_MOVIE_EXTRAS, CODE_MOVIE_EXTRAS);
+        matcher.addURI(authority, MovieContract.PATH_MOVIE_EXTRAS + "/#", CODE_MOVIE_EXTRAS_WITH_MOVIE_ID);
 
         return matcher;
     }
@@ -52,29 +82,112 @@ public class MovieContentProvider extends ContentProvider {
         return true;
     }
 
+    /**
+     * This method applies all given operations in one database transaction. Change notifications
+     * of every operation are merged in only one notification sent when transaction ends.
+     */
+    @NonNull
     @Override
-    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        InsertStatements inserts = new InsertStatements(db);
+        mApplyingBatch.set(true);
+        mBatchInserts.set(inserts);
+        db.beginTransactionNonExclusive();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mApplyingBatch.set(false);
+            mBatchInserts.remove();
+            inserts.close();
+        }
+        // movies read during the transaction could be stale, invalidate them when it ends
+        for (ContentProviderOperation operation : operations) {
+            int match = sUriMatcher.match(operation.getUri());
+            if (match == CODE_MOVIES || match == CODE_MOVIES_WITH_ID) {
+                MovieInfoCache.invalidateAll();
+                break;
+            }
+        }
+        Set<Uri> changedUris = new LinkedHashSet<>();
+        for (ContentProviderOperation operation : operations) {
+            changedUris.add(getNotificationRoot(operation.getUri()));
+        }
+        for (Uri changedUri : changedUris) {
+            notifyChange(changedUri);
+        }
+        return results;
+    }
+
+    /**
+     * @param uri
+     * @return directory URI that contains given URI, its notification reaches every
+     * descendant URI.
+     */
+    private static Uri getNotificationRoot(Uri uri) {
         switch (sUriMatcher.match(uri)) {
-            case CODE_MOVIES:
-                return bulkInsertInTable(MovieContract.MovieEntry.TABLE_NAME, uri, values);
-            case CODE_POPULAR_MOVIES:
-                return bulkInsertInTable(MovieContract.PopularMovieEntry.TABLE_NAME, uri, values);
-            case CODE_HIGHEST_RATED_MOVIES:
-                return bulkInsertInTable(MovieContract.HighestRatedMovieEntry.TABLE_NAME, uri, values);
-            case CODE_FAVORITE_MOVIES:
-                return bulkInsertInTable(MovieContract.FavoriteMovieEntry.TABLE_NAME, uri, values);
+            case CODE_REVIEWS:
+            case CODE_REVIEWS_WITH_MOVIE_ID:
+                return MovieContract.ReviewEntry.CONTENT_URI;
+            case CODE_VIDEOS:
+            case CODE_VIDEOS_WITH_MOVIE_ID:
+                return MovieContract.VideoEntry.CONTENT_URI;
+            case CODE_MOVIE_EXTRAS:
+            case CODE_MOVIE_EXTRAS_WITH_MOVIE_ID:
+                return MovieContract.MovieExtrasEntry.CONTENT_URI;
+            default:
+                // all movies data URIs are descendants of movies URI
+                return MovieContract.MovieEntry.CONTENT_URI;
+        }
+    }
+
+    /**
+     * @param match
+     * @return name of the table of a movie extras URI code, or null if it is not one of them.
+     */
+    private static String getMovieExtrasTable(int match) {
+        switch (match) {
+            case CODE_REVIEWS:
+            case CODE_REVIEWS_WITH_MOVIE_ID:
+                return MovieContract.ReviewEntry.TABLE_NAME;
+            case CODE_VIDEOS:
+            case CODE_VIDEOS_WITH_MOVIE_ID:
+                return MovieContract.VideoEntry.TABLE_NAME;
+            case CODE_MOVIE_EXTRAS:
+            case CODE_MOVIE_EXTRAS_WITH_MOVIE_ID:
+                return MovieContract.MovieExtrasEntry.TABLE_NAME;
             default:
-                return super.bulkInsert(uri, values);
+                return null;
         }
     }
 
-    private int bulkInsertInTable(String tableName, Uri uri, ContentValues[] values) {
+    private static boolean isMovieIdUri(int match) {
+        return match == CODE_REVIEWS_WITH_MOVIE_ID ||
+                match == CODE_VIDEOS_WITH_MOVIE_ID ||
+                match == CODE_MOVIE_EXTRAS_WITH_MOVIE_ID;
+    }
+
+    private void notifyChange(Uri uri) {
+        if (!Boolean.TRUE.equals(mApplyingBatch.get())) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        String tableName = getBulkInsertTable(uri);
+        if (tableName == null) return super.bulkInsert(uri, values);
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        db.beginTransaction();
+        InsertStatements inserts = new InsertStatements(db);
+        db.beginTransactionNonExclusive();
         int rowsInserted = 0;
         try {
             for (ContentValues value : values) {
-                long _id = db.insert(tableName, null, value);
+                long _id = inserts.insert(tableName, value);
                 if (_id != -1) {
                     rowsInserted++;
                 }
@@ -82,13 +195,107 @@ public class MovieContentProvider extends ContentProvider {
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            inserts.close();
         }
-        if (rowsInserted > 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+        onBulkInserted(tableName, uri, rowsInserted);
+        return rowsInserted;
+    }
+
+    /**
+     * This method implements METHOD_BULK_INSERT_ROWS, it inserts a compact batch of rows in
+     * the same way that bulkInsert does.
+     */
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        if (!MovieContract.METHOD_BULK_INSERT_ROWS.equals(method)) return super.call(method, arg, extras);
+        Uri uri = Uri.parse(arg);
+        String tableName = getBulkInsertTable(uri);
+        if (tableName == null) throw new UnsupportedOperationException("Unknown uri: " + uri);
+        int rowsInserted = insertRows(tableName, RowBatch.fromBundle(extras), false);
+        onBulkInserted(tableName, uri, rowsInserted);
+        Bundle result = new Bundle();
+        result.putInt(MovieContract.KEY_ROWS_INSERTED, rowsInserted);
+        return result;
+    }
+
+    /**
+     * This method inserts every row of given batch in given table in one transaction. Inside a
+     * batch of operations it reuses the compiled statements and the transaction of the batch.
+     * @param tableName
+     * @param rows
+     * @param allRows true if the transaction has to fail when any row is not inserted.
+     * @return number of inserted rows.
+     */
+    private int insertRows(String tableName, RowBatch rows, boolean allRows) {
+        InsertStatements batchInserts = mBatchInserts.get();
+        if (batchInserts != null) {
+            return checkRowsInserted(tableName, rows, batchInserts.insert(tableName, rows), allRows);
+        }
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        InsertStatements inserts = new InsertStatements(db);
+        db.beginTransactionNonExclusive();
+        try {
+            int rowsInserted = checkRowsInserted(tableName, rows, inserts.insert(tableName, rows), allRows);
+            db.setTransactionSuccessful();
+            return rowsInserted;
+        } finally {
+            db.endTransaction();
+            inserts.close();
+        }
+    }
+
+    private static int checkRowsInserted(String tableName, RowBatch rows, int rowsInserted, boolean allRows) {
+        if (allRows && rowsInserted != rows.getRowCount()) {
+            throw new android.database.SQLException("Can not insert " +
+                    (rows.getRowCount() - rowsInserted) + " rows in: " + tableName);
         }
         return rowsInserted;
     }
 
+    /**
+     * This method inserts the compact batch of rows of given values (see
+     * RowBatch.buildInsertOperation). Like a single insert, it fails if any row is not inserted.
+     */
+    private Uri insertRowBatch(Uri uri, ContentValues contentValues) {
+        String tableName = getBulkInsertTable(uri);
+        if (tableName == null) throw new UnsupportedOperationException("Unknown uri: " + uri);
+        int rowsInserted = insertRows(tableName, RowBatch.fromValues(contentValues), true);
+        Uri directoryUri = uri.buildUpon().clearQuery().build();
+        onBulkInserted(tableName, directoryUri, rowsInserted);
+        return directoryUri;
+    }
+
+    /**
+     * @param uri
+     * @return table of given directory URI that supports bulk inserts or null if it does not.
+     */
+    private static String getBulkInsertTable(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case CODE_MOVIES:
+                return MovieContract.MovieEntry.TABLE_NAME;
+            case CODE_POPULAR_MOVIES:
+                return MovieContract.PopularMovieEntry.TABLE_NAME;
+            case CODE_HIGHEST_RATED_MOVIES:
+                return MovieContract.HighestRatedMovieEntry.TABLE_NAME;
+            case CODE_FAVORITE_MOVIES:
+                return MovieContract.FavoriteMovieEntry.TABLE_NAME;
+            case CODE_REVIEWS:
+                return MovieContract.ReviewEntry.TABLE_NAME;
+            case CODE_VIDEOS:
+                return MovieContract.VideoEntry.TABLE_NAME;
+            default:
+                return null;
+        }
+    }
+
+    private void onBulkInserted(String tableName, Uri uri, int rowsInserted) {
+        if (rowsInserted > 0) {
+            if (MovieContract.MovieEntry.TABLE_NAME.equals(tableName)) MovieInfoCache.invalidateAll();
+            notifyChange(uri);
+        }
+    }
+
     @Nullable
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection,
@@ -96,27 +303,23 @@ public class MovieContentProvider extends ContentProvider {
         Cursor cursor;
         switch (sUriMatcher.match(uri)) {
             case CODE_MOVIES:
-                cursor = mOpenHelper.getReadableDatabase().query(
-                        MovieContract.MovieEntry.TABLE_NAME,
+                cursor = queryTables(MovieContract.MovieEntry.TABLE_NAME,
                         projection,
                         selection,
                         selectionArgs,
-                        null,
-                        null,
-                        sortOrder);
+                        sortOrder,
+                        buildLimit(uri));
                 break;
             case CODE_MOVIES_WITH_ID:
                 String idString = uri.getLastPathSegment();
                 selection = MovieContract.MovieEntry._ID + " = ? ";
                 selectionArgs = new String[]{idString};
-                cursor = mOpenHelper.getReadableDatabase().query(
-                        MovieContract.MovieEntry.TABLE_NAME,
+                cursor = queryTables(MovieContract.MovieEntry.TABLE_NAME,
                         projection,
                         selection,
                         selectionArgs,
-                        null,
-                        null,
-                        sortOrder);
+                        sortOrder,
+                        null);
                 break;
             case CODE_POPULAR_MOVIES:
                 cursor = queryMoviesFromReferencedTable(MovieContract.PopularMovieEntry.TABLE_NAME,
@@ -124,7 +327,8 @@ public class MovieContentProvider extends ContentProvider {
                         projection,
                         selection,
                         selectionArgs,
-                        sortOrder);
+                        sortOrder,
+                        buildLimit(uri));
                 break;
             case CODE_HIGHEST_RATED_MOVIES:
                 cursor = queryMoviesFromReferencedTable(MovieContract.HighestRatedMovieEntry.TABLE_NAME,
@@ -132,7 +336,8 @@ public class MovieContentProvider extends ContentProvider {
                         projection,
                         selection,
                         selectionArgs,
-                        sortOrder);
+                        sortOrder,
+                        buildLimit(uri));
                 break;
             case CODE_FAVORITE_MOVIES:
                 cursor = queryMoviesFromReferencedTable(MovieContract.FavoriteMovieEntry.TABLE_NAME,
@@ -140,7 +345,26 @@ public class MovieContentProvider extends ContentProvider {
                         projection,
                         selection,
                         selectionArgs,
-                        sortOrder);
+                        sortOrder,
+                        buildLimit(uri));
+                break;
+            case CODE_REVIEWS:
+            case CODE_REVIEWS_WITH_MOVIE_ID:
+            case CODE_VIDEOS:
+            case CODE_VIDEOS_WITH_MOVIE_ID:
+            case CODE_MOVIE_EXTRAS:
+            case CODE_MOVIE_EXTRAS_WITH_MOVIE_ID:
+                int match = sUriMatcher.match(uri);
+                if (isMovieIdUri(match)) {
+                    selection = COLUMN_EXTRAS_MOVIE_ID + " = ? ";
+                    selectionArgs = new String[]{ uri.getLastPathSegment() };
+                }
+                cursor = queryTables(getMovieExtrasTable(match),
+                        projection,
+                        selection,
+                        selectionArgs,
+                        sortOrder,
+                        null);
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -155,20 +379,73 @@ public class MovieContentProvider extends ContentProvider {
                                                   String[] projection,
                                                   String selection,
                                                   String[] selectionArgs,
-                                                  String sortOrder) {
-        SQLiteQueryBuilder sqLiteQueryBuilder = new SQLiteQueryBuilder();
+                                                  String sortOrder,
+                                                  String limit) {
+        return queryTables(buildReferencedTables(tableName, column),
+                projection,
+                selection,
+                selectionArgs,
+                sortOrder,
+                limit);
+    }
 
-        sqLiteQueryBuilder.setTables(tableName + " INNER JOIN " + MovieContract.MovieEntry.TABLE_NAME +
+    /**
+     * @param tableName
+     * @param column column of given table that references movies table.
+     * @return tables clause that joins given table with movies table.
+     */
+    static String buildReferencedTables(String tableName, String column) {
+        return tableName + " INNER JOIN " + MovieContract.MovieEntry.TABLE_NAME +
                 " ON " + tableName + "." + column + " = " + MovieContract.MovieEntry.TABLE_NAME +
-                "." + MovieContract.MovieEntry._ID
-        );
-        return sqLiteQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+                "." + MovieContract.MovieEntry._ID;
+    }
+
+    /**
+     * This method builds the SQL of a query of given tables.
+     */
+    static String buildQuerySql(String tables,
+                                String[] projection,
+                                String selection,
+                                String sortOrder,
+                                String limit) {
+        return SQLiteQueryBuilder.buildQueryString(false,
+                tables,
                 projection,
                 selection,
-                selectionArgs,
                 null,
                 null,
-                sortOrder);
+                sortOrder,
+                limit);
+    }
+
+    private Cursor queryTables(String tables,
+                               String[] projection,
+                               String selection,
+                               String[] selectionArgs,
+                               String sortOrder,
+                               String limit) {
+        String sql = buildQuerySql(tables, projection, selection, sortOrder, limit);
+        return mOpenHelper.getReadableDatabase().rawQuery(sql, selectionArgs);
+    }
+
+    /**
+     * This method builds the SQL limit clause of given URI range parameters.
+     * @param uri
+     * @return limit clause or null if URI has no limit.
+     */
+    static String buildLimit(Uri uri) {
+        String limit = uri.getQueryParameter(MovieContract.QUERY_PARAM_LIMIT);
+        if (limit == null) return null;
+        String offset = uri.getQueryParameter(MovieContract.QUERY_PARAM_OFFSET);
+        try {
+            // parse values to avoid any kind of SQL injection
+            int limitValue = Integer.parseInt(limit);
+            int offsetValue = offset != null ? Integer.parseInt(offset) : 0;
+            if (limitValue < 0 || offsetValue < 0) throw new NumberFormatException();
+            return offsetValue + "," + limitValue;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid range in uri: " + uri);
+        }
     }
 
     @Override
@@ -203,12 +480,29 @@ public class MovieContentProvider extends ContentProvider {
                         selection,
                         selectionArgs);
                 break;
+            case CODE_REVIEWS:
+            case CODE_REVIEWS_WITH_MOVIE_ID:
+            case CODE_VIDEOS:
+            case CODE_VIDEOS_WITH_MOVIE_ID:
+            case CODE_MOVIE_EXTRAS:
+            case CODE_MOVIE_EXTRAS_WITH_MOVIE_ID:
+                int match = sUriMatcher.match(uri);
+                if (isMovieIdUri(match)) {
+                    selection = COLUMN_EXTRAS_MOVIE_ID + " = ? ";
+                    selectionArgs = new String[]{ uri.getLastPathSegment() };
+                }
+                numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
+                        getMovieExtrasTable(match),
+                        selection,
+                        selectionArgs);
+                break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
         if (numRowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            if (sUriMatcher.match(uri) == CODE_MOVIES) MovieInfoCache.invalidateAll();
+            notifyChange(uri);
         }
 
         return numRowsDeleted;
@@ -224,6 +518,7 @@ public class MovieContentProvider extends ContentProvider {
     @Nullable
     @Override
     public Uri insert(@NonNull Uri uri, @Nullable ContentValues contentValues) {
+        if (MovieContract.isRowBatchUri(uri)) return insertRowBatch(uri, contentValues);
         String tableName;
         Uri returnUri;
         long id;
@@ -244,11 +539,24 @@ public class MovieContentProvider extends ContentProvider {
                 id = insertInTable(MovieContract.FavoriteMovieEntry.TABLE_NAME, contentValues);
                 returnUri = MovieContract.FavoriteMovieEntry.CONTENT_URI;
                 break;
+            case CODE_REVIEWS:
+                id = insertInTable(MovieContract.ReviewEntry.TABLE_NAME, contentValues);
+                returnUri = MovieContract.ReviewEntry.CONTENT_URI;
+                break;
+            case CODE_VIDEOS:
+                id = insertInTable(MovieContract.VideoEntry.TABLE_NAME, contentValues);
+                returnUri = MovieContract.VideoEntry.CONTENT_URI;
+                break;
+            case CODE_MOVIE_EXTRAS:
+                id = upsertMovieExtras(contentValues);
+                returnUri = MovieContract.MovieExtrasEntry.CONTENT_URI;
+                break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (id != -1) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            if (sUriMatcher.match(uri) == CODE_MOVIES) MovieInfoCache.invalidate((int) id);
+            notifyChange(uri);
         } else {
             throw new android.database.SQLException("Can not insert a row in: " + uri);
         }
@@ -256,12 +564,104 @@ public class MovieContentProvider extends ContentProvider {
     }
 
     private long insertInTable(String tableName, ContentValues contentValues) {
+        // inserts of a batch reuse its compiled statements
+        InsertStatements batchInserts = mBatchInserts.get();
+        if (batchInserts != null) return batchInserts.insert(tableName, contentValues);
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         return db.insert(tableName, null, contentValues);
     }
 
+    /**
+     * This method updates the extras row of the movie of given values, or inserts it if there
+     * is no one yet. Columns that are not in given values keep their stored value.
+     */
+    private long upsertMovieExtras(ContentValues contentValues) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        String movieId = contentValues.getAsString(MovieContract.MovieExtrasEntry.COLUMN_MOVIE_ID);
+        if (movieId == null) return -1;
+        db.beginTransactionNonExclusive();
+        try {
+            long id;
+            int numRowsUpdated = db.update(MovieContract.MovieExtrasEntry.TABLE_NAME,
+                    contentValues,
+                    MovieContract.MovieExtrasEntry.COLUMN_MOVIE_ID + " = ? ",
+                    new String[]{ movieId });
+            if (numRowsUpdated > 0) {
+                id = Long.parseLong(movieId);
+            } else {
+                id = db.insert(MovieContract.MovieExtrasEntry.TABLE_NAME, null, contentValues);
+            }
+            db.setTransactionSuccessful();
+            return id;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     @Override
-    public int update(@NonNull Uri uri, @Nullable ContentValues contentValues, @Nullable String s, @Nullable String[] strings) {
-        throw new UnsupportedOperationException("Update is not implemented in PopularMovies");
+    public int update(@NonNull Uri uri,
+                      @Nullable ContentValues contentValues,
+                      @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        String tableName;
+        switch (sUriMatcher.match(uri)) {
+            case CODE_MOVIES:
+                tableName = MovieContract.MovieEntry.TABLE_NAME;
+                break;
+            case CODE_MOVIES_WITH_ID:
+                tableName = MovieContract.MovieEntry.TABLE_NAME;
+                selection = MovieContract.MovieEntry._ID + " = ? ";
+                selectionArgs = new String[]{ uri.getLastPathSegment() };
+                break;
+            case CODE_POPULAR_MOVIES:
+                tableName = MovieContract.PopularMovieEntry.TABLE_NAME;
+                break;
+            case CODE_HIGHEST_RATED_MOVIES:
+                tableName = MovieContract.HighestRatedMovieEntry.TABLE_NAME;
+                break;
+            case CODE_FAVORITE_MOVIES:
+                tableName = MovieContract.FavoriteMovieEntry.TABLE_NAME;
+                break;
+            case CODE_REVIEWS:
+            case CODE_REVIEWS_WITH_MOVIE_ID:
+            case CODE_VIDEOS:
+            case CODE_VIDEOS_WITH_MOVIE_ID:
+            case CODE_MOVIE_EXTRAS:
+            case CODE_MOVIE_EXTRAS_WITH_MOVIE_ID:
+                int match = sUriMatcher.match(uri);
+                tableName = getMovieExtrasTable(match);
+                if (isMovieIdUri(match)) {
+                    selection = COLUMN_EXTRAS_MOVIE_ID + " = ? ";
+                    selectionArgs = new String[]{ uri.getLastPathSegment() };
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        int numRowsUpdated = mOpenHelper.getWritableDatabase().update(tableName,
+                contentValues,
+                selection,
+                selectionArgs);
+
+        if (numRowsUpdated != 0) {
+            invalidateUpdatedMovies(uri);
+            notifyChange(uri);
+        }
+
+        return numRowsUpdated;
+    }
+
+    private static void invalidateUpdatedMovies(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case CODE_MOVIES:
+                MovieInfoCache.invalidateAll();
+                break;
+            case CODE_MOVIES_WITH_ID:
+                MovieInfoCache.invalidate(Integer.parseInt(uri.getLastPathSegment()));
+                break;
+            default:
+                // list tables do not contain movies data
+        }
     }
 }
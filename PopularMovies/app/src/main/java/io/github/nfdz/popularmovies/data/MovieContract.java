@@ -29,6 +29,71 @@ public class MovieContract {
     /** This is the path for the "favorite" directory */
     public static final String PATH_FAVORITE_MOVIES = "favorite";
 
+    /** This is the path for the "reviews" directory */
+    public static final String PATH_REVIEWS = "reviews";
+
+    /** This is the path for the "videos" directory */
+    public static final String PATH_VIDEOS = "videos";
+
+    /** This is the path for the "extras" directory */
+    public static final String PATH_MOVIE_EXTRAS = "extras";
+
+    /** Query parameter with the maximum number of rows to return (it needs a sort order) */
+    public static final String QUERY_PARAM_LIMIT = "limit";
+
+    /** Query parameter with the number of rows to skip (it needs a limit) */
+    public static final String QUERY_PARAM_OFFSET = "offset";
+
+    /**
+     * Query parameter of the insert URIs whose values are a compact batch of rows (see
+     * RowBatch). It lets a batch of operations insert many rows with only one operation.
+     */
+    public static final String QUERY_PARAM_ROW_BATCH = "row_batch";
+
+    /**
+     * Provider call method that inserts a compact batch of rows (see RowBatch) in the directory
+     * URI given as argument.
+     */
+    public static final String METHOD_BULK_INSERT_ROWS = "bulk_insert_rows";
+
+    /** Key of the number of inserted rows in the result of METHOD_BULK_INSERT_ROWS */
+    public static final String KEY_ROWS_INSERTED = "rows_inserted";
+
+    /**
+     * This method builds the URI of a range of rows of given directory URI. It is useful to
+     * query long lists page by page.
+     * @param uri directory URI.
+     * @param offset number of rows to skip.
+     * @param limit maximum number of rows.
+     * @return URI of the range.
+     */
+    public static Uri buildRangeUri(Uri uri, int offset, int limit) {
+        return uri.buildUpon()
+                .appendQueryParameter(QUERY_PARAM_OFFSET, Integer.toString(offset))
+                .appendQueryParameter(QUERY_PARAM_LIMIT, Integer.toString(limit))
+                .build();
+    }
+
+    /**
+     * This method builds the URI that inserts a compact batch of rows (see RowBatch) in given
+     * directory URI.
+     * @param uri directory URI.
+     * @return URI of the row batch insert.
+     */
+    public static Uri buildRowBatchUri(Uri uri) {
+        return uri.buildUpon()
+                .appendQueryParameter(QUERY_PARAM_ROW_BATCH, Boolean.TRUE.toString())
+                .build();
+    }
+
+    /**
+     * @param uri
+     * @return true if given URI inserts a compact batch of rows (see QUERY_PARAM_ROW_BATCH).
+     */
+    public static boolean isRowBatchUri(Uri uri) {
+        return uri.getBooleanQueryParameter(QUERY_PARAM_ROW_BATCH, false);
+    }
+
     /**
      * MovieEntry is an inner class that defines the contents of the movies table.
      */
@@ -53,26 +118,36 @@ public class MovieContract {
         public static final String COLUMN_SYNOPSIS = "synopsis";
 
         /**
-         * Movie poster paths. Stored as string.
-         * This is string contains a list of concatenated paths.
+         * Movie poster resource key (like "/abc.jpg"). Stored as string, it could be null.
+         * Image URLs are built with it and images configuration.
          * */
-        public static final String COLUMN_POSTER_PATHS = "poster_paths";
+        public static final String COLUMN_POSTER_KEY = "poster_key";
 
         /**
-         * Movie backdrop paths. Stored as string.
-         * This is string contains a list of concatenated paths.
+         * Movie backdrop resource key (like "/abc.jpg"). Stored as string, it could be null.
+         * Image URLs are built with it and images configuration.
          * */
-        public static final String COLUMN_BACKDROP_PATHS = "backdrop_paths";
+        public static final String COLUMN_BACKDROP_KEY = "backdrop_key";
 
         public static final String SQL_CREATE_TABLE = "CREATE TABLE "  + TABLE_NAME + " (" +
                 _ID                   + " INTEGER PRIMARY KEY UNIQUE, " +
                 COLUMN_TITLE          + " TEXT NOT NULL, " +
                 COLUMN_RELEASE_DATE   + " TEXT NOT NULL, " +
                 COLUMN_RATING         + " REAL NOT NULL, " +
-                COLUMN_POSTER_PATHS   + " TEXT NOT NULL, " +
-                COLUMN_BACKDROP_PATHS + " TEXT NOT NULL, " +
+                COLUMN_POSTER_KEY     + " TEXT, " +
+                COLUMN_BACKDROP_KEY   + " TEXT, " +
                 COLUMN_SYNOPSIS       + " TEXT NOT NULL);";
 
+        /** Index to sort movies by rating locally */
+        public static final String SQL_CREATE_RATING_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                TABLE_NAME + "_" + COLUMN_RATING + "_index ON " + TABLE_NAME +
+                " (" + COLUMN_RATING + ");";
+
+        /** Index to sort movies by release date locally */
+        public static final String SQL_CREATE_RELEASE_DATE_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                TABLE_NAME + "_" + COLUMN_RELEASE_DATE + "_index ON " + TABLE_NAME +
+                " (" + COLUMN_RELEASE_DATE + ");";
+
         public static Uri buildUriWithId(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
@@ -95,11 +170,23 @@ public class MovieContract {
 
         public static final String COLUMN_MOVIE_ID = "movie_id";
 
+        /** Position of the movie in popular list (zero based). Stored as integer. */
+        public static final String COLUMN_RANK = "movie_rank";
+
         public static final String SQL_CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" +
                 _ID                   + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 COLUMN_MOVIE_ID       + " INTEGER NOT NULL UNIQUE, " +
+                COLUMN_RANK           + " INTEGER NOT NULL, " +
                 " FOREIGN KEY (" + COLUMN_MOVIE_ID + ") REFERENCES " +
                 MovieEntry.TABLE_NAME + " (" + MovieEntry._ID + "));";
+
+        /**
+         * Covering index of the list sorted by rank, it contains the movie id too, so the list
+         * is read in order and joined with movies table without reading this table.
+         */
+        public static final String SQL_CREATE_RANK_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                TABLE_NAME + "_" + COLUMN_RANK + "_index ON " + TABLE_NAME +
+                " (" + COLUMN_RANK + ", " + COLUMN_MOVIE_ID + ");";
     }
 
     /**
@@ -116,11 +203,23 @@ public class MovieContract {
 
         public static final String COLUMN_MOVIE_ID = "movie_id";
 
+        /** Position of the movie in highest rated list (zero based). Stored as integer. */
+        public static final String COLUMN_RANK = "movie_rank";
+
         public static final String SQL_CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" +
                 _ID                   + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 COLUMN_MOVIE_ID       + " INTEGER NOT NULL UNIQUE, " +
+                COLUMN_RANK           + " INTEGER NOT NULL, " +
                 " FOREIGN KEY (" + COLUMN_MOVIE_ID + ") REFERENCES " +
                 MovieEntry.TABLE_NAME + " (" + MovieEntry._ID + "));";
+
+        /**
+         * Covering index of the list sorted by rank, it contains the movie id too, so the list
+         * is read in order and joined with movies table without reading this table.
+         */
+        public static final String SQL_CREATE_RANK_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                TABLE_NAME + "_" + COLUMN_RANK + "_index ON " + TABLE_NAME +
+                " (" + COLUMN_RANK + ", " + COLUMN_MOVIE_ID + ");";
     }
 
     /**
@@ -142,4 +241,138 @@ public class MovieContract {
                 " FOREIGN KEY (" + COLUMN_MOVIE_ID + ") REFERENCES " +
                 MovieEntry.TABLE_NAME + " (" + MovieEntry._ID + "));";
     }
-}
\ No newline at end of file
+
+    /**
+     * ReviewEntry is an inner class that defines the contents of the movie reviews table.
+     */
+    public static final class ReviewEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_REVIEWS)
+                .build();
+
+        public static final String TABLE_NAME = "reviews";
+
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+
+        /** Position of the review in movie reviews (zero based). Stored as integer. */
+        public static final String COLUMN_POSITION = "position";
+
+        /** Review author. Stored as string. */
+        public static final String COLUMN_AUTHOR = "author";
+
+        /** Review content. Stored as string. */
+        public static final String COLUMN_CONTENT = "content";
+
+        /** Review web page URL. Stored as string. */
+        public static final String COLUMN_URL = "url";
+
+        public static final String SQL_CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" +
+                _ID                   + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_MOVIE_ID       + " INTEGER NOT NULL, " +
+                COLUMN_POSITION       + " INTEGER NOT NULL, " +
+                COLUMN_AUTHOR         + " TEXT NOT NULL, " +
+                COLUMN_CONTENT        + " TEXT NOT NULL, " +
+                COLUMN_URL            + " TEXT NOT NULL, " +
+                " FOREIGN KEY (" + COLUMN_MOVIE_ID + ") REFERENCES " +
+                MovieEntry.TABLE_NAME + " (" + MovieEntry._ID + "));";
+
+        /** Index to read the reviews of a movie sorted by position */
+        public static final String SQL_CREATE_MOVIE_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                TABLE_NAME + "_" + COLUMN_MOVIE_ID + "_index ON " + TABLE_NAME +
+                " (" + COLUMN_MOVIE_ID + ", " + COLUMN_POSITION + ");";
+
+        /**
+         * @param movieId
+         * @return URI of the reviews of given movie.
+         */
+        public static Uri buildUriWithMovieId(long movieId) {
+            return ContentUris.withAppendedId(CONTENT_URI, movieId);
+        }
+    }
+
+    /**
+     * VideoEntry is an inner class that defines the contents of the movie videos table.
+     */
+    public static final class VideoEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_VIDEOS)
+                .build();
+
+        public static final String TABLE_NAME = "videos";
+
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+
+        /** Position of the video in movie videos (zero based). Stored as integer. */
+        public static final String COLUMN_POSITION = "position";
+
+        /** Video name. Stored as string. */
+        public static final String COLUMN_NAME = "name";
+
+        /** Video web page URL. Stored as string. */
+        public static final String COLUMN_URL = "url";
+
+        public static final String SQL_CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" +
+                _ID                   + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_MOVIE_ID       + " INTEGER NOT NULL, " +
+                COLUMN_POSITION       + " INTEGER NOT NULL, " +
+                COLUMN_NAME           + " TEXT NOT NULL, " +
+                COLUMN_URL            + " TEXT NOT NULL, " +
+                " FOREIGN KEY (" + COLUMN_MOVIE_ID + ") REFERENCES " +
+                MovieEntry.TABLE_NAME + " (" + MovieEntry._ID + "));";
+
+        /** Index to read the videos of a movie sorted by position */
+        public static final String SQL_CREATE_MOVIE_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                TABLE_NAME + "_" + COLUMN_MOVIE_ID + "_index ON " + TABLE_NAME +
+                " (" + COLUMN_MOVIE_ID + ", " + COLUMN_POSITION + ");";
+
+        /**
+         * @param movieId
+         * @return URI of the videos of given movie.
+         */
+        public static Uri buildUriWithMovieId(long movieId) {
+            return ContentUris.withAppendedId(CONTENT_URI, movieId);
+        }
+    }
+
+    /**
+     * MovieExtrasEntry is an inner class that defines the contents of the movie extras table.
+     * It contains when reviews and videos of every movie were stored, so it is possible to know
+     * if they are fresh (a movie without reviews and a movie which reviews have never been
+     * retrieved look the same in reviews table). Inserting a row of a movie that already has
+     * one updates it.
+     */
+    public static final class MovieExtrasEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_MOVIE_EXTRAS)
+                .build();
+
+        public static final String TABLE_NAME = "movie_extras";
+
+        public static final String COLUMN_MOVIE_ID = "movie_id";
+
+        /** Time when reviews were stored in UNIX time millis. Stored as integer, it could be null. */
+        public static final String COLUMN_REVIEWS_TIME = "reviews_time";
+
+        /** Time when videos were stored in UNIX time millis. Stored as integer, it could be null. */
+        public static final String COLUMN_VIDEOS_TIME = "videos_time";
+
+        public static final String SQL_CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" +
+                _ID                   + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COLUMN_MOVIE_ID       + " INTEGER NOT NULL UNIQUE, " +
+                COLUMN_REVIEWS_TIME   + " INTEGER, " +
+                COLUMN_VIDEOS_TIME    + " INTEGER, " +
+                " FOREIGN KEY (" + COLUMN_MOVIE_ID + ") REFERENCES " +
+                MovieEntry.TABLE_NAME + " (" + MovieEntry._ID + "));";
+
+        /**
+         * @param movieId
+         * @return URI of the extras row of given movie.
+         */
+        public static Uri buildUriWithMovieId(long movieId) {
+            return ContentUris.withAppendedId(CONTENT_URI, movieId);
+        }
+    }
+}
@@ -3,26 +3,73 @@
  */
 package io.github.nfdz.popularmovies.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 import io.github.nfdz.popularmovies.data.MovieContract.FavoriteMovieEntry;
 import io.github.nfdz.popularmovies.data.MovieContract.HighestRatedMovieEntry;
 import io.github.nfdz.popularmovies.data.MovieContract.MovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.MovieExtrasEntry;
 import io.github.nfdz.popularmovies.data.MovieContract.PopularMovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.ReviewEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.VideoEntry;
 
 /**
  * This database helper implementation manage mainly the creation and upgrading of the
  * sqlite database related with movie data contract.
+ *
+ * Database is opened in write-ahead-log mode, so readers (like the grid and detail loaders)
+ * are not blocked while a synchronization writes in a long transaction. Writers have to use
+ * non exclusive transactions.
  */
 public class MovieDbHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "movies.db";
-    private static final int VERSION = 3;
+    private static final int VERSION = 7;
+
+    /**
+     * Number of WAL pages that trigger an automatic checkpoint. It is bigger than the default
+     * (1000 pages), so a whole synchronization is usually checkpointed once after it.
+     */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 2000;
+
+    /** Size that WAL file is truncated to after checkpoints, so it does not keep growing */
+    private static final long JOURNAL_SIZE_LIMIT_BYTES = 1024 * 1024;
 
     public MovieDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * @param context
+     * @param name file name of the database, tests use their own files.
+     */
+    MovieDbHelper(Context context, String name) {
+        super(context, name, null, VERSION);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabledCompat();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void setWriteAheadLoggingEnabledCompat() {
+        // it also lets the framework open a pool of connections for concurrent readers
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+        }
+        // these pragmas return the new value, so they are executed as queries
+        DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES, null);
+        DatabaseUtils.longForQuery(db, "PRAGMA journal_size_limit=" + JOURNAL_SIZE_LIMIT_BYTES, null);
     }
 
 
@@ -32,16 +79,40 @@ public class MovieDbHelper extends SQLiteOpenHelper {
         db.execSQL(PopularMovieEntry.SQL_CREATE_TABLE);
         db.execSQL(HighestRatedMovieEntry.SQL_CREATE_TABLE);
         db.execSQL(FavoriteMovieEntry.SQL_CREATE_TABLE);
+        db.execSQL(ReviewEntry.SQL_CREATE_TABLE);
+        db.execSQL(VideoEntry.SQL_CREATE_TABLE);
+        db.execSQL(MovieExtrasEntry.SQL_CREATE_TABLE);
+        createIndexes(db);
+    }
+
+    /**
+     * This method creates the indexes of the queries of the provider. Lists are read through
+     * covering indexes sorted by rank and joined with movies by their primary key. Favorites
+     * are sorted by their primary key and movie ids of lists have implicit unique indexes.
+     */
+    static void createIndexes(SQLiteDatabase db) {
+        db.execSQL(MovieEntry.SQL_CREATE_RATING_INDEX);
+        db.execSQL(MovieEntry.SQL_CREATE_RELEASE_DATE_INDEX);
+        db.execSQL(PopularMovieEntry.SQL_CREATE_RANK_INDEX);
+        db.execSQL(HighestRatedMovieEntry.SQL_CREATE_RANK_INDEX);
+        db.execSQL(ReviewEntry.SQL_CREATE_MOVIE_INDEX);
+        db.execSQL(VideoEntry.SQL_CREATE_MOVIE_INDEX);
     }
 
     /**
-     * This method discards the old table of data and calls onCreate to recreate a new one.
+     * This method upgrades existing tables keeping their data (see MovieDbMigrations). If there
+     * is no migration from old version, it discards the old tables and calls onCreate to
+     * recreate new ones.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (MovieDbMigrations.migrate(db, oldVersion, newVersion)) return;
         db.execSQL("DROP TABLE IF EXISTS " + PopularMovieEntry.TABLE_NAME);
         db.execSQL("DROP TABLE IF EXISTS " + HighestRatedMovieEntry.TABLE_NAME);
         db.execSQL("DROP TABLE IF EXISTS " + FavoriteMovieEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + ReviewEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + VideoEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + MovieExtrasEntry.TABLE_NAME);
         db.execSQL("DROP TABLE IF EXISTS " + MovieEntry.TABLE_NAME);
         onCreate(db);
     }
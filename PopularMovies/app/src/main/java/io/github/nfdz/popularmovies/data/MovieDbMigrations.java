@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+import android.util.Log;
+
+import io.github.nfdz.popularmovies.data.MovieContract.HighestRatedMovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.MovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.MovieExtrasEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.PopularMovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.ReviewEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.VideoEntry;
+
+/**
+ * This class upgrades the movies database from every released version, keeping stored data
+ * (favorites included) so an upgrade does not need a full synchronization. Every step
+ * transforms existing tables in place with ALTER statements or, when SQLite can not alter
+ * them, with copy-and-swap (create new table, copy rows, drop old one and rename new one).
+ *
+ * There is one step per released version only. Versions 4, 5 and 6 were development versions
+ * that were never released, so they do not have their own steps: version 3 is upgraded to
+ * version 7 at once and development databases are recreated.
+ *
+ * Steps that create tables use contract statements while those tables have not changed since.
+ * If a table changes, the step that created it has to keep a copy of its old statement.
+ */
+class MovieDbMigrations {
+
+    private static final String TAG = MovieDbMigrations.class.getSimpleName();
+
+    /** Oldest version that can be upgraded without losing data */
+    static final int MIN_MIGRATABLE_VERSION = 3;
+
+    /** Suffix of tables that are being built by copy-and-swap */
+    private static final String NEW_TABLE_SUFFIX = "_new";
+
+    /** Columns of version 3 movies table with joined full URLs of every image size */
+    private static final String V3_COLUMN_POSTER_PATHS = "poster_paths";
+    private static final String V3_COLUMN_BACKDROP_PATHS = "backdrop_paths";
+    private static final String V3_PATHS_SEPARATOR = ";";
+
+    /**
+     * This method upgrades given database from given version to given version.
+     * Warning, it has to be executed inside a transaction (like onUpgrade).
+     * @param db
+     * @param oldVersion
+     * @param newVersion
+     * @return true if it was upgraded, false if there is no migration from given version.
+     */
+    static boolean migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < MIN_MIGRATABLE_VERSION) return false;
+        long startTime = System.currentTimeMillis();
+        int version = oldVersion;
+        while (version < newVersion) {
+            switch (version) {
+                case 3:
+                    migrate3To7(db);
+                    version = 7;
+                    break;
+                default:
+                    return false;
+            }
+        }
+        Log.d(TAG, "Database upgraded from version " + oldVersion + " to " + newVersion + " in " +
+                (System.currentTimeMillis() - startTime) + " ms.");
+        return true;
+    }
+
+    /**
+     * Version 7 adds:
+     * - The rank of the movies in popular and highest rated lists.
+     * - Image resource keys instead of lists of full URLs in movies table.
+     * - Reviews, videos and their freshness times.
+     * - The indexes of provider queries.
+     */
+    private static void migrate3To7(SQLiteDatabase db) {
+        addRankColumn(db, PopularMovieEntry.TABLE_NAME, PopularMovieEntry.COLUMN_RANK);
+        addRankColumn(db, HighestRatedMovieEntry.TABLE_NAME, HighestRatedMovieEntry.COLUMN_RANK);
+        swapMoviesTableWithImageKeys(db);
+        db.execSQL(ReviewEntry.SQL_CREATE_TABLE);
+        db.execSQL(VideoEntry.SQL_CREATE_TABLE);
+        db.execSQL(MovieExtrasEntry.SQL_CREATE_TABLE);
+        MovieDbHelper.createIndexes(db);
+    }
+
+    /**
+     * Lists were sorted by row id, so it is the rank of existing rows.
+     */
+    private static void addRankColumn(SQLiteDatabase db, String tableName, String rankColumn) {
+        db.execSQL("ALTER TABLE " + tableName + " ADD COLUMN " + rankColumn +
+                " INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("UPDATE " + tableName + " SET " + rankColumn + " = (SELECT COUNT(*) FROM " +
+                tableName + " AS previous WHERE previous._id < " + tableName + "._id)");
+    }
+
+    /**
+     * Columns can not be dropped, so the table is copied and swapped, and keys are extracted
+     * from the first URL of every list.
+     */
+    private static void swapMoviesTableWithImageKeys(SQLiteDatabase db) {
+        String newTable = MovieEntry.TABLE_NAME + NEW_TABLE_SUFFIX;
+        db.execSQL("CREATE TABLE " + newTable + " (" +
+                MovieEntry._ID                  + " INTEGER PRIMARY KEY UNIQUE, " +
+                MovieEntry.COLUMN_TITLE         + " TEXT NOT NULL, " +
+                MovieEntry.COLUMN_RELEASE_DATE  + " TEXT NOT NULL, " +
+                MovieEntry.COLUMN_RATING        + " REAL NOT NULL, " +
+                MovieEntry.COLUMN_POSTER_KEY    + " TEXT, " +
+                MovieEntry.COLUMN_BACKDROP_KEY  + " TEXT, " +
+                MovieEntry.COLUMN_SYNOPSIS      + " TEXT NOT NULL);");
+
+        String columns = MovieEntry._ID + ", " +
+                MovieEntry.COLUMN_TITLE + ", " +
+                MovieEntry.COLUMN_RELEASE_DATE + ", " +
+                MovieEntry.COLUMN_RATING + ", " +
+                MovieEntry.COLUMN_SYNOPSIS;
+        // copy every column that has not changed at once
+        db.execSQL("INSERT INTO " + newTable + " (" + columns + ") SELECT " + columns +
+                " FROM " + MovieEntry.TABLE_NAME);
+
+        SQLiteStatement updateKeys = db.compileStatement("UPDATE " + newTable + " SET " +
+                MovieEntry.COLUMN_POSTER_KEY + " = ?, " +
+                MovieEntry.COLUMN_BACKDROP_KEY + " = ? WHERE " +
+                MovieEntry._ID + " = ?");
+        String[] projection = { MovieEntry._ID, V3_COLUMN_POSTER_PATHS, V3_COLUMN_BACKDROP_PATHS };
+        Cursor cursor = db.query(MovieEntry.TABLE_NAME, projection, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                bindKey(updateKeys, 1, extractImageKey(cursor.getString(1)));
+                bindKey(updateKeys, 2, extractImageKey(cursor.getString(2)));
+                updateKeys.bindLong(3, cursor.getLong(0));
+                updateKeys.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            updateKeys.close();
+        }
+
+        db.execSQL("DROP TABLE " + MovieEntry.TABLE_NAME);
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + MovieEntry.TABLE_NAME);
+    }
+
+    private static void bindKey(SQLiteStatement statement, int index, String key) {
+        if (key == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, key);
+        }
+    }
+
+    /**
+     * @param mergedPaths joined URLs like "http://image.tmdb.org/t/p/w92/abc.jpg;...".
+     * @return image resource key like "/abc.jpg" or null if there is not any.
+     */
+    private static String extractImageKey(String mergedPaths) {
+        if (TextUtils.isEmpty(mergedPaths)) return null;
+        String path = mergedPaths.split(V3_PATHS_SEPARATOR)[0];
+        int keyStart = path.lastIndexOf('/');
+        if (keyStart == -1 || keyStart == path.length() - 1) return null;
+        String key = path.substring(keyStart);
+        return key.equals("/null") ? null : key;
+    }
+}
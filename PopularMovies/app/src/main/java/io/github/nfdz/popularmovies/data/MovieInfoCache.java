@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.data;
+
+import android.util.LruCache;
+
+import io.github.nfdz.popularmovies.types.MovieInfo;
+
+/**
+ * This class is a process-wide cache of the movies read from the provider, so screens that
+ * show a movie which has been already read do not need to query it again. Movie content
+ * provider invalidates movies when their rows change.
+ *
+ * Readers have to get the version of the cache before querying the provider, and put read
+ * movies with it. If any movie has been invalidated meanwhile, they are not cached because
+ * they could have been read before the change.
+ */
+public class MovieInfoCache {
+
+    private static final int MAX_MOVIES = 200;
+
+    private static final LruCache<Integer, MovieInfo> sMovies = new LruCache<>(MAX_MOVIES);
+
+    private static long sVersion;
+
+    /**
+     * @return current version of the cache, it changes with every invalidation.
+     */
+    synchronized public static long getVersion() {
+        return sVersion;
+    }
+
+    /**
+     * @param movieId
+     * @return cached movie or null if it is not cached.
+     */
+    public static MovieInfo get(int movieId) {
+        return sMovies.get(movieId);
+    }
+
+    /**
+     * This method caches given movie only if cache has not been invalidated since given
+     * version.
+     * @param movie
+     * @param version version of the cache before movie was read.
+     */
+    synchronized public static void put(MovieInfo movie, long version) {
+        if (version == sVersion) sMovies.put(movie.getMovieId(), movie);
+    }
+
+    /**
+     * This method removes given movie from the cache.
+     * @param movieId
+     */
+    synchronized public static void invalidate(int movieId) {
+        sVersion++;
+        sMovies.remove(movieId);
+    }
+
+    /**
+     * This method removes every movie from the cache.
+     */
+    synchronized public static void invalidateAll() {
+        sVersion++;
+        sMovies.evictAll();
+    }
+
+    /**
+     * @return number of times that a requested movie was cached.
+     */
+    public static int getHitCount() {
+        return sMovies.hitCount();
+    }
+
+    /**
+     * @return number of times that a requested movie was not cached.
+     */
+    public static int getMissCount() {
+        return sMovies.missCount();
+    }
+}
@@ -7,6 +7,10 @@ package io.github.nfdz.popularmovies.data;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
+import android.text.TextUtils;
+
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
+import io.github.nfdz.popularmovies.utilities.TMDbHttpClient;
 
 /**
  * This class helps to retrieve and store preferences from application default shared preferences.
@@ -23,6 +27,33 @@ public class PreferencesUtils {
     // last sync time key
     public static final String LAST_SYNC_TIME_KEY = "last_sync_time";
 
+    // number of pages of every movies list to synchronize
+    public static final String SYNC_PAGES_KEY = "sync_pages";
+    public static final int SYNC_PAGES_DEFAULT = 3;
+    public static final int SYNC_PAGES_MAX = 20;
+
+    // number of top movies of every list which reviews and videos are prefetched when
+    // synchronizing (0 disables it), favorite movies are always prefetched if it is enabled
+    public static final String PREFETCH_EXTRAS_MOVIES_KEY = "prefetch_extras_movies";
+    public static final int PREFETCH_EXTRAS_MOVIES_DEFAULT = 10;
+    public static final int PREFETCH_EXTRAS_MOVIES_MAX = 100;
+
+    // posters of new movies are downloaded to image cache after synchronization
+    public static final String WARM_POSTER_CACHE_KEY = "warm_poster_cache";
+    public static final boolean WARM_POSTER_CACHE_DEFAULT = true;
+
+    // images configuration keys
+    public static final String IMAGES_BASE_URL_KEY = "images_base_url";
+    public static final String IMAGES_POSTER_SIZES_KEY = "images_poster_sizes";
+    public static final String IMAGES_BACKDROP_SIZES_KEY = "images_backdrop_sizes";
+    public static final String IMAGES_CONFIG_TIME_KEY = "images_config_time";
+    private static final String SIZES_SEPARATOR = ",";
+
+    // HTTP validators are stored in their own preferences file (keys are request URLs)
+    private static final String HTTP_VALIDATORS_PREFERENCES = "http_validators";
+    private static final String ETAG_KEY_PREFIX = "etag:";
+    private static final String LAST_MODIFIED_KEY_PREFIX = "last_modified:";
+
     /**
      * This method retrieves stored sort preference, if there is nothing, it will return default value.
      * @param context
@@ -45,6 +76,80 @@ public class PreferencesUtils {
         editor.apply();
     }
 
+    /**
+     * This method retrieves how many pages of every movies list have to be synchronized, if
+     * there is nothing stored, it will return default value.
+     * @param context
+     * @return number of pages (between 1 and SYNC_PAGES_MAX).
+     */
+    public static int getSyncPages(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        int pages = sp.getInt(SYNC_PAGES_KEY, SYNC_PAGES_DEFAULT);
+        return Math.max(1, Math.min(pages, SYNC_PAGES_MAX));
+    }
+
+    /**
+     * This method stores how many pages of every movies list have to be synchronized.
+     * @param context
+     * @param pages
+     */
+    public static void setSyncPages(Context context, int pages) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putInt(SYNC_PAGES_KEY, pages);
+        editor.apply();
+    }
+
+    /**
+     * This method retrieves how many top movies of every list have to get their reviews and
+     * videos prefetched when synchronizing, if there is nothing stored, it will return default
+     * value.
+     * @param context
+     * @return number of movies (between 0 and PREFETCH_EXTRAS_MOVIES_MAX), 0 if it is disabled.
+     */
+    public static int getPrefetchExtrasMovies(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        int movies = sp.getInt(PREFETCH_EXTRAS_MOVIES_KEY, PREFETCH_EXTRAS_MOVIES_DEFAULT);
+        return Math.max(0, Math.min(movies, PREFETCH_EXTRAS_MOVIES_MAX));
+    }
+
+    /**
+     * This method stores how many top movies of every list have to get their reviews and
+     * videos prefetched when synchronizing.
+     * @param context
+     * @param movies number of movies, 0 to disable it.
+     */
+    public static void setPrefetchExtrasMovies(Context context, int movies) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putInt(PREFETCH_EXTRAS_MOVIES_KEY, movies);
+        editor.apply();
+    }
+
+    /**
+     * This method retrieves if posters of new movies have to be downloaded to image cache
+     * after synchronization, if there is nothing stored, it will return default value.
+     * @param context
+     * @return
+     */
+    public static boolean isPosterCacheWarmingEnabled(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getBoolean(WARM_POSTER_CACHE_KEY, WARM_POSTER_CACHE_DEFAULT);
+    }
+
+    /**
+     * This method stores if posters of new movies have to be downloaded to image cache after
+     * synchronization.
+     * @param context
+     * @param enabled
+     */
+    public static void setPosterCacheWarmingEnabled(Context context, boolean enabled) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putBoolean(WARM_POSTER_CACHE_KEY, enabled);
+        editor.apply();
+    }
+
     /**
      * This method returns last synchronization time stored in preferences. If there
      * is no value, it will return 0 millis (it is the oldest possible time in UNIX time).
@@ -78,4 +183,89 @@ public class PreferencesUtils {
         editor.putLong(LAST_SYNC_TIME_KEY, syncTime);
         editor.apply();
     }
+
+    /**
+     * This method retrieves stored images configuration.
+     * @param context
+     * @return images configuration or null if there is nothing stored.
+     */
+    public static ImagesConfiguration getImagesConfiguration(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        String baseUrl = sp.getString(IMAGES_BASE_URL_KEY, null);
+        String posterSizes = sp.getString(IMAGES_POSTER_SIZES_KEY, null);
+        String backdropSizes = sp.getString(IMAGES_BACKDROP_SIZES_KEY, null);
+        if (TextUtils.isEmpty(baseUrl) || TextUtils.isEmpty(posterSizes) || TextUtils.isEmpty(backdropSizes)) {
+            return null;
+        }
+        return new ImagesConfiguration(baseUrl,
+                TextUtils.split(posterSizes, SIZES_SEPARATOR),
+                TextUtils.split(backdropSizes, SIZES_SEPARATOR));
+    }
+
+    /**
+     * This method returns the time when stored images configuration was fetched. If there
+     * is no value, it will return 0 millis.
+     * @param context
+     * @return UNIX time millis
+     */
+    public static long getImagesConfigurationTimeInMillis(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(IMAGES_CONFIG_TIME_KEY, 0);
+    }
+
+    /**
+     * This method stores given images configuration and the time when it was fetched.
+     * @param context
+     * @param configuration
+     * @param fetchTime Time when configuration was fetched in UNIX time.
+     */
+    public static void setImagesConfiguration(Context context,
+                                              ImagesConfiguration configuration,
+                                              long fetchTime) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putString(IMAGES_BASE_URL_KEY, configuration.getBaseUrl());
+        editor.putString(IMAGES_POSTER_SIZES_KEY,
+                TextUtils.join(SIZES_SEPARATOR, configuration.getPosterSizes()));
+        editor.putString(IMAGES_BACKDROP_SIZES_KEY,
+                TextUtils.join(SIZES_SEPARATOR, configuration.getBackdropSizes()));
+        editor.putLong(IMAGES_CONFIG_TIME_KEY, fetchTime);
+        editor.apply();
+    }
+
+    /**
+     * This method retrieves stored HTTP validators of the last stored response of given URL.
+     * @param context
+     * @param url
+     * @return validators or null if there is nothing stored.
+     */
+    public static TMDbHttpClient.Validators getHttpValidators(Context context, String url) {
+        SharedPreferences sp = context.getSharedPreferences(HTTP_VALIDATORS_PREFERENCES, Context.MODE_PRIVATE);
+        TMDbHttpClient.Validators validators = new TMDbHttpClient.Validators(
+                sp.getString(ETAG_KEY_PREFIX + url, null),
+                sp.getString(LAST_MODIFIED_KEY_PREFIX + url, null));
+        return validators.isEmpty() ? null : validators;
+    }
+
+    /**
+     * This method stores given HTTP validators of the last stored response of given URL.
+     * @param context
+     * @param url
+     * @param validators
+     */
+    public static void setHttpValidators(Context context, String url, TMDbHttpClient.Validators validators) {
+        SharedPreferences sp = context.getSharedPreferences(HTTP_VALIDATORS_PREFERENCES, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = sp.edit();
+        if (validators == null || validators.getETag() == null) {
+            editor.remove(ETAG_KEY_PREFIX + url);
+        } else {
+            editor.putString(ETAG_KEY_PREFIX + url, validators.getETag());
+        }
+        if (validators == null || validators.getLastModified() == null) {
+            editor.remove(LAST_MODIFIED_KEY_PREFIX + url);
+        } else {
+            editor.putString(LAST_MODIFIED_KEY_PREFIX + url, validators.getLastModified());
+        }
+        editor.apply();
+    }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Parcel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a compact batch of rows to insert in bulk. Values are stored by column in
+ * primitive arrays (long, double or String values), so they are not boxed in a ContentValues
+ * object per row. Every column array must have a value for every row, null String values are
+ * inserted as NULL.
+ *
+ * A batch is inserted on its own with insert method, or with only one operation of a batch of
+ * operations (see buildInsertOperation), so it is applied in the transaction of the batch.
+ *
+ * Usage example:
+ * RowBatch rows = new RowBatch(ids.length)
+ *         .putLongs(MovieContract.PopularMovieEntry.COLUMN_MOVIE_ID, ids)
+ *         .putLongs(MovieContract.PopularMovieEntry.COLUMN_RANK, ranks);
+ * int inserted = rows.insert(contentResolver, MovieContract.PopularMovieEntry.CONTENT_URI);
+ * // or
+ * operations.add(rows.buildInsertOperation(MovieContract.PopularMovieEntry.CONTENT_URI));
+ */
+public class RowBatch {
+
+    private static final String KEY_ROW_COUNT = "row_count";
+    private static final String KEY_COLUMNS = "columns";
+    private static final String KEY_VALUES_PREFIX = "values_";
+
+    /** Key of the marshalled batch in the values of an insert operation */
+    private static final String KEY_MARSHALLED_BATCH = "row_batch";
+
+    private final int mRowCount;
+    private final List<String> mColumns = new ArrayList<>();
+    private final List<Object> mValues = new ArrayList<>();
+    private String[] mColumnsArray;
+
+    /**
+     * @param rowCount number of rows of the batch.
+     */
+    public RowBatch(int rowCount) {
+        mRowCount = rowCount;
+    }
+
+    public RowBatch putLongs(String column, long[] values) {
+        return putValues(column, values, values.length);
+    }
+
+    public RowBatch putDoubles(String column, double[] values) {
+        return putValues(column, values, values.length);
+    }
+
+    public RowBatch putStrings(String column, String[] values) {
+        return putValues(column, values, values.length);
+    }
+
+    private RowBatch putValues(String column, Object values, int length) {
+        if (length != mRowCount) {
+            throw new IllegalArgumentException("Column " + column + " has " + length +
+                    " values, expected: " + mRowCount);
+        }
+        mColumns.add(column);
+        mValues.add(values);
+        mColumnsArray = null;
+        return this;
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * This method inserts the rows of this batch in given directory URI of the movies content
+     * provider in one transaction.
+     * @param resolver
+     * @param uri
+     * @return number of inserted rows.
+     */
+    public int insert(ContentResolver resolver, Uri uri) {
+        Bundle result = resolver.call(uri, MovieContract.METHOD_BULK_INSERT_ROWS, uri.toString(), toBundle());
+        return result != null ? result.getInt(MovieContract.KEY_ROWS_INSERTED) : 0;
+    }
+
+    /**
+     * This method builds an operation that inserts the rows of this batch in given directory
+     * URI of the movies content provider. Every row must be inserted, otherwise the operation
+     * fails like a single insert does.
+     * @param uri
+     * @return insert operation.
+     */
+    public ContentProviderOperation buildInsertOperation(Uri uri) {
+        return ContentProviderOperation.newInsert(MovieContract.buildRowBatchUri(uri))
+                .withValue(KEY_MARSHALLED_BATCH, marshall())
+                .build();
+    }
+
+    String[] getColumns() {
+        if (mColumnsArray == null) mColumnsArray = mColumns.toArray(new String[mColumns.size()]);
+        return mColumnsArray;
+    }
+
+    /**
+     * This method binds the values of given row to given statement, in column order.
+     */
+    void bindRow(SQLiteStatement statement, int row) {
+        for (int i = 0; i < mValues.size(); i++) {
+            Object values = mValues.get(i);
+            int index = i + 1;
+            if (values instanceof long[]) {
+                statement.bindLong(index, ((long[]) values)[row]);
+            } else if (values instanceof double[]) {
+                statement.bindDouble(index, ((double[]) values)[row]);
+            } else {
+                String value = ((String[]) values)[row];
+                if (value == null) {
+                    statement.bindNull(index);
+                } else {
+                    statement.bindString(index, value);
+                }
+            }
+        }
+    }
+
+    Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putInt(KEY_ROW_COUNT, mRowCount);
+        bundle.putStringArray(KEY_COLUMNS, getColumns());
+        for (int i = 0; i < mValues.size(); i++) {
+            Object values = mValues.get(i);
+            String key = KEY_VALUES_PREFIX + i;
+            if (values instanceof long[]) {
+                bundle.putLongArray(key, (long[]) values);
+            } else if (values instanceof double[]) {
+                bundle.putDoubleArray(key, (double[]) values);
+            } else {
+                bundle.putStringArray(key, (String[]) values);
+            }
+        }
+        return bundle;
+    }
+
+    /**
+     * @param values values of an operation built with buildInsertOperation.
+     * @return row batch of given values.
+     */
+    static RowBatch fromValues(ContentValues values) {
+        byte[] data = values != null ? values.getAsByteArray(KEY_MARSHALLED_BATCH) : null;
+        if (data == null) throw new IllegalArgumentException("Values do not contain a row batch");
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            return fromBundle(parcel.readBundle(RowBatch.class.getClassLoader()));
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private byte[] marshall() {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeBundle(toBundle());
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    static RowBatch fromBundle(Bundle bundle) {
+        String[] columns = bundle != null ? bundle.getStringArray(KEY_COLUMNS) : null;
+        if (columns == null) throw new IllegalArgumentException("Bundle does not contain a row batch");
+        RowBatch rows = new RowBatch(bundle.getInt(KEY_ROW_COUNT));
+        for (int i = 0; i < columns.length; i++) {
+            Object values = bundle.get(KEY_VALUES_PREFIX + i);
+            if (values instanceof long[]) {
+                rows.putLongs(columns[i], (long[]) values);
+            } else if (values instanceof double[]) {
+                rows.putDoubles(columns[i], (double[]) values);
+            } else if (values instanceof String[]) {
+                rows.putStrings(columns[i], (String[]) values);
+            } else {
+                throw new IllegalArgumentException("Invalid values of column: " + columns[i]);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.sync;
+
+import android.content.ContentProviderOperation;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import io.github.nfdz.popularmovies.data.MovieContract;
+import io.github.nfdz.popularmovies.types.MovieReview;
+import io.github.nfdz.popularmovies.utilities.MovieExtrasUtils;
+import io.github.nfdz.popularmovies.utilities.TMDbException;
+import io.github.nfdz.popularmovies.utilities.TaskScheduler;
+
+/**
+ * This class prefetches reviews and videos of top movies of every list and of favorite movies,
+ * so their detail screens are shown with them already stored. Only stale ones are downloaded,
+ * concurrently in the network lane of TaskScheduler, and they are stored in batches of several movies.
+ */
+class MovieExtrasPrefetch {
+
+    private static final String TAG = MovieExtrasPrefetch.class.getSimpleName();
+
+    private static final String ERROR_FETCH_EXTRAS = "There was an error prefetching movie extras.";
+    private static final String ERROR_INTERRUPTED = "Movie extras prefetching was interrupted.";
+
+    /** Number of movies whose extras are stored in every provider batch */
+    private static final int MOVIES_PER_BATCH = 10;
+
+    private final Context mContext;
+
+    /**
+     * @param context
+     */
+    MovieExtrasPrefetch(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * This method downloads stale extras of top movies and favorite movies and stores them.
+     * Warning, it blocks calling thread until everything is stored.
+     * @param topMovies number of top movies of every list.
+     */
+    void prefetch(int topMovies) {
+        Set<Integer> movieIds = new LinkedHashSet<>();
+        addTopMovieIds(MovieContract.PopularMovieEntry.CONTENT_URI,
+                MovieContract.PopularMovieEntry.TABLE_NAME + "." +
+                        MovieContract.PopularMovieEntry.COLUMN_RANK + " ASC",
+                topMovies,
+                movieIds);
+        addTopMovieIds(MovieContract.HighestRatedMovieEntry.CONTENT_URI,
+                MovieContract.HighestRatedMovieEntry.TABLE_NAME + "." +
+                        MovieContract.HighestRatedMovieEntry.COLUMN_RANK + " ASC",
+                topMovies,
+                movieIds);
+        addFavoriteMovieIds(movieIds);
+
+        List<Future<FetchedExtras>> futures = new ArrayList<>();
+        SparseIntArray staleExtras = MovieExtrasUtils.queryStaleExtras(mContext, movieIds);
+        // keep the order of movie identifiers, top movies are downloaded first
+        for (int movieId : movieIds) {
+            int staleFlags = staleExtras.get(movieId);
+            if (staleFlags == 0) continue;
+            futures.add(TaskScheduler.submit(TaskScheduler.LANE_NETWORK,
+                    new FetchExtrasTask(movieId,
+                            (staleFlags & MovieExtrasUtils.STALE_REVIEWS) != 0,
+                            (staleFlags & MovieExtrasUtils.STALE_VIDEOS) != 0)));
+        }
+
+        int storedMovies = 0;
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        int batchedMovies = 0;
+        try {
+            for (Future<FetchedExtras> future : futures) {
+                try {
+                    future.get().addOperations(operations);
+                    batchedMovies++;
+                } catch (ExecutionException e) {
+                    Log.d(TAG, ERROR_FETCH_EXTRAS, e.getCause());
+                }
+                if (batchedMovies == MOVIES_PER_BATCH) {
+                    if (MovieExtrasUtils.applyOperations(mContext, operations)) storedMovies += batchedMovies;
+                    operations = new ArrayList<>();
+                    batchedMovies = 0;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.d(TAG, ERROR_INTERRUPTED, e);
+        } finally {
+            for (Future<FetchedExtras> future : futures) future.cancel(true);
+        }
+        if (batchedMovies > 0 && MovieExtrasUtils.applyOperations(mContext, operations)) {
+            storedMovies += batchedMovies;
+        }
+        Log.d(TAG, "Movie extras prefetched: " + storedMovies + "/" + futures.size() +
+                " (" + movieIds.size() + " movies checked).");
+    }
+
+    private void addTopMovieIds(Uri listUri, String sortOrder, int topMovies, Set<Integer> movieIds) {
+        String[] projection = { MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry._ID };
+        int idColumn = 0;
+        Cursor cursor = mContext.getContentResolver().query(MovieContract.buildRangeUri(listUri, 0, topMovies),
+                projection,
+                null,
+                null,
+                sortOrder);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                movieIds.add(cursor.getInt(idColumn));
+            }
+            cursor.close();
+        }
+    }
+
+    private void addFavoriteMovieIds(Set<Integer> movieIds) {
+        String[] projection = { MovieContract.FavoriteMovieEntry.TABLE_NAME + "." +
+                MovieContract.FavoriteMovieEntry.COLUMN_MOVIE_ID };
+        int idColumn = 0;
+        Cursor cursor = mContext.getContentResolver().query(MovieContract.FavoriteMovieEntry.CONTENT_URI,
+                projection,
+                null,
+                null,
+                null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                movieIds.add(cursor.getInt(idColumn));
+            }
+            cursor.close();
+        }
+    }
+
+    /**
+     * This class contains downloaded extras of a movie, stale ones only.
+     */
+    private static class FetchedExtras {
+
+        private final int mMovieId;
+        private final List<MovieReview> mReviews;
+        private final Map<String, String> mVideos;
+
+        FetchedExtras(int movieId, List<MovieReview> reviews, Map<String, String> videos) {
+            mMovieId = movieId;
+            mReviews = reviews;
+            mVideos = videos;
+        }
+
+        void addOperations(List<ContentProviderOperation> operations) {
+            if (mReviews != null) MovieExtrasUtils.addReviewsOperations(mMovieId, mReviews, operations);
+            if (mVideos != null) MovieExtrasUtils.addVideosOperations(mMovieId, mVideos, operations);
+        }
+    }
+
+    /**
+     * This task downloads stale extras of a movie.
+     */
+    private static class FetchExtrasTask implements Callable<FetchedExtras> {
+
+        private final int mMovieId;
+        private final boolean mFetchReviews;
+        private final boolean mFetchVideos;
+
+        FetchExtrasTask(int movieId, boolean fetchReviews, boolean fetchVideos) {
+            mMovieId = movieId;
+            mFetchReviews = fetchReviews;
+            mFetchVideos = fetchVideos;
+        }
+
+        @Override
+        public FetchedExtras call() throws TMDbException {
+            List<MovieReview> reviews = mFetchReviews ? MovieExtrasUtils.downloadReviews(mMovieId) : null;
+            Map<String, String> videos = mFetchVideos ? MovieExtrasUtils.downloadVideos(mMovieId) : null;
+            return new FetchedExtras(mMovieId, reviews, videos);
+        }
+    }
+}
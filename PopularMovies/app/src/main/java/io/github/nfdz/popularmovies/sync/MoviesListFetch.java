@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import io.github.nfdz.popularmovies.data.PreferencesUtils;
+import io.github.nfdz.popularmovies.types.MovieInfo;
+import io.github.nfdz.popularmovies.utilities.TMDbException;
+import io.github.nfdz.popularmovies.utilities.TMDbHttpClient;
+import io.github.nfdz.popularmovies.utilities.TMDbJsonUtils;
+import io.github.nfdz.popularmovies.utilities.TMDbNetworkUtils;
+import io.github.nfdz.popularmovies.utilities.TaskScheduler;
+
+/**
+ * This class downloads the first pages of a movies list concurrently and merges them in page
+ * order. If it is conditional, pages are revalidated with the validators of the last
+ * synchronized response, and the list is reported as not modified when no page has changed.
+ */
+class MoviesListFetch {
+
+    private static final String TAG = MoviesListFetch.class.getSimpleName();
+
+    private static final String ERROR_FETCH_PAGE = "There was an error retrieving movies page. Criteria: ";
+    private static final String ERROR_INTERRUPTED = "Movies data retrieval was interrupted.";
+
+    private final Context mContext;
+    private final int mCriteria;
+    private final int mPages;
+    private final boolean mConditional;
+
+    private final List<URL> mUrls = new ArrayList<>();
+    private final List<Future<TMDbHttpClient.Response<List<MovieInfo>>>> mFutures = new ArrayList<>();
+    private final List<TMDbHttpClient.Validators> mJoinedValidators = new ArrayList<>();
+
+    /**
+     * @param context
+     * @param criteria list criteria flag.
+     * @param pages number of pages to download.
+     * @param conditional true to revalidate last synchronized responses.
+     */
+    MoviesListFetch(Context context,
+                    int criteria,
+                    int pages,
+                    boolean conditional) {
+        mContext = context;
+        mCriteria = criteria;
+        mPages = pages;
+        mConditional = conditional;
+    }
+
+    /**
+     * This method starts downloading every page in the network lane of TaskScheduler.
+     * @throws TMDbException if URLs could not be built.
+     */
+    void submit() throws TMDbException {
+        for (int page = 1; page <= mPages; page++) {
+            URL url = TMDbNetworkUtils.buildMoviesURL(mCriteria, page);
+            TMDbHttpClient.Validators validators = mConditional ?
+                    PreferencesUtils.getHttpValidators(mContext, url.toString()) : null;
+            mUrls.add(url);
+            mFutures.add(TaskScheduler.submit(TaskScheduler.LANE_NETWORK,
+                    new FetchMoviesPageTask(url, validators)));
+        }
+    }
+
+    /**
+     * This method waits for page downloads and merges them in page order. If any page but the
+     * first one fails, the list is truncated just before it so ranks are always contiguous.
+     * @return merged movies, or null if no page has been modified.
+     * @throws TMDbException if first page could not be fetched.
+     */
+    List<MovieInfo> join() throws TMDbException {
+        try {
+            List<TMDbHttpClient.Response<List<MovieInfo>>> responses = joinResponses();
+            boolean modified = false;
+            for (TMDbHttpClient.Response<List<MovieInfo>> response : responses) {
+                if (!response.isNotModified()) modified = true;
+            }
+            for (TMDbHttpClient.Response<List<MovieInfo>> response : responses) {
+                mJoinedValidators.add(response.getValidators());
+            }
+            if (!modified) return null;
+
+            // some pages have changed, not modified ones have to be downloaded again to merge them
+            List<Future<TMDbHttpClient.Response<List<MovieInfo>>>> refetches = new ArrayList<>();
+            for (int i = 0; i < responses.size(); i++) {
+                refetches.add(responses.get(i).isNotModified() ?
+                        TaskScheduler.submit(TaskScheduler.LANE_NETWORK,
+                                new FetchMoviesPageTask(mUrls.get(i), null)) : null);
+            }
+            List<MovieInfo> movies = new ArrayList<>();
+            for (int i = 0; i < responses.size(); i++) {
+                TMDbHttpClient.Response<List<MovieInfo>> response = responses.get(i);
+                Future<TMDbHttpClient.Response<List<MovieInfo>>> refetch = refetches.get(i);
+                if (refetch != null) {
+                    try {
+                        response = refetch.get();
+                        mJoinedValidators.set(i, response.getValidators());
+                    } catch (ExecutionException e) {
+                        if (i == 0) throw unwrapException(e);
+                        Log.d(TAG, ERROR_FETCH_PAGE + mCriteria + ". Page: " + (i + 1), e.getCause());
+                        truncateJoinedValidators(i);
+                        cancel(refetches);
+                        break;
+                    }
+                }
+                movies.addAll(response.getBody());
+            }
+            return movies;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TMDbException(ERROR_INTERRUPTED, e);
+        } finally {
+            cancel(mFutures);
+        }
+    }
+
+    private List<TMDbHttpClient.Response<List<MovieInfo>>> joinResponses()
+            throws InterruptedException, TMDbException {
+        List<TMDbHttpClient.Response<List<MovieInfo>>> responses = new ArrayList<>();
+        for (int i = 0; i < mFutures.size(); i++) {
+            try {
+                responses.add(mFutures.get(i).get());
+            } catch (ExecutionException e) {
+                if (i == 0) throw unwrapException(e);
+                Log.d(TAG, ERROR_FETCH_PAGE + mCriteria + ". Page: " + (i + 1), e.getCause());
+                break;
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * This method stores validators of joined pages, so next synchronization can revalidate
+     * them. Validators of pages that were not joined are removed because their data is not
+     * stored. It has to be invoked only when joined data has been stored successfully.
+     */
+    void commitValidators() {
+        for (int i = 0; i < mUrls.size(); i++) {
+            TMDbHttpClient.Validators validators = i < mJoinedValidators.size() ?
+                    mJoinedValidators.get(i) : null;
+            PreferencesUtils.setHttpValidators(mContext, mUrls.get(i).toString(), validators);
+        }
+    }
+
+    private void truncateJoinedValidators(int size) {
+        while (mJoinedValidators.size() > size) {
+            mJoinedValidators.remove(mJoinedValidators.size() - 1);
+        }
+    }
+
+    private static void cancel(List<Future<TMDbHttpClient.Response<List<MovieInfo>>>> futures) {
+        for (Future<TMDbHttpClient.Response<List<MovieInfo>>> future : futures) {
+            if (future != null) future.cancel(true);
+        }
+    }
+
+    private static TMDbException unwrapException(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof TMDbException) return (TMDbException) cause;
+        return new TMDbException(ERROR_FETCH_PAGE, cause);
+    }
+
+    /**
+     * This task downloads and parses one page of a movies list.
+     */
+    private class FetchMoviesPageTask implements Callable<TMDbHttpClient.Response<List<MovieInfo>>> {
+
+        private final URL mUrl;
+        private final TMDbHttpClient.Validators mValidators;
+
+        FetchMoviesPageTask(URL url, TMDbHttpClient.Validators validators) {
+            mUrl = url;
+            mValidators = validators;
+        }
+
+        @Override
+        public TMDbHttpClient.Response<List<MovieInfo>> call() throws TMDbException {
+            return TMDbNetworkUtils.processResponseFromHttpUrl(mUrl,
+                    mValidators,
+                    new TMDbNetworkUtils.ResponseStreamHandler<List<MovieInfo>>() {
+                        @Override
+                        public List<MovieInfo> handleResponse(InputStream in, Charset charset)
+                                throws TMDbException {
+                            return TMDbJsonUtils.getMoviesFromStream(in, charset);
+                        }
+                    });
+        }
+    }
+}
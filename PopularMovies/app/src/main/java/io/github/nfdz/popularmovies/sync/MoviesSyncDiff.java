@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.sync;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.nfdz.popularmovies.data.MovieContract;
+import io.github.nfdz.popularmovies.data.RowBatch;
+import io.github.nfdz.popularmovies.types.MovieInfo;
+import io.github.nfdz.popularmovies.utilities.MovieInfoUtils;
+
+/**
+ * This class compares fetched movie lists with stored data and builds the minimum set of
+ * provider operations needed to update local data. Movies and list rows that have not changed
+ * are not written at all. New movies and new list rows are inserted with one compact row batch
+ * operation per table (see RowBatch), instead of one operation with boxed values per row.
+ */
+class MoviesSyncDiff {
+
+    /**
+     * This class counts every kind of change computed by the diff. It also keeps inserted
+     * movies, they are new for the user.
+     */
+    static class Report {
+        final List<MovieInfo> insertedMovies = new ArrayList<>();
+        int moviesInserted;
+        int moviesUpdated;
+        int moviesDeleted;
+        int moviesUnchanged;
+        int ranksInserted;
+        int ranksDeleted;
+        int ranksMoved;
+        int ranksUnchanged;
+
+        boolean hasChanges() {
+            return moviesInserted + moviesUpdated + moviesDeleted +
+                    ranksInserted + ranksDeleted + ranksMoved > 0;
+        }
+
+        @Override
+        public String toString() {
+            return "movies(inserted=" + moviesInserted +
+                    ", updated=" + moviesUpdated +
+                    ", deleted=" + moviesDeleted +
+                    ", unchanged=" + moviesUnchanged +
+                    "), ranks(inserted=" + ranksInserted +
+                    ", deleted=" + ranksDeleted +
+                    ", moved=" + ranksMoved +
+                    ", unchanged=" + ranksUnchanged + ")";
+        }
+    }
+
+    private final ContentResolver mContentResolver;
+
+    MoviesSyncDiff(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * This method compares given lists with stored data and returns needed operations to
+     * update stored data. Favorite movies are never deleted. If a list is null (for example
+     * because it could not be fetched) its stored data is kept as it is.
+     * @param popularMovies fetched most popular movies sorted by rank, or null.
+     * @param highestRatedMovies fetched highest rated movies sorted by rank, or null.
+     * @param report report to fill with counts of every kind of change.
+     * @return list of provider operations (it could be empty).
+     */
+    ArrayList<ContentProviderOperation> buildOperations(List<MovieInfo> popularMovies,
+                                                        List<MovieInfo> highestRatedMovies,
+                                                        Report report) {
+        Map<Integer, MovieInfo> storedMovies = queryStoredMovies();
+        Set<Integer> favoriteMovies = queryFavoriteMovieIds();
+        Map<Integer, Integer> storedPopularRanks = queryStoredRanks(
+                MovieContract.PopularMovieEntry.CONTENT_URI,
+                MovieContract.PopularMovieEntry.TABLE_NAME,
+                MovieContract.PopularMovieEntry.COLUMN_MOVIE_ID,
+                MovieContract.PopularMovieEntry.COLUMN_RANK);
+        Map<Integer, Integer> storedHighestRatedRanks = queryStoredRanks(
+                MovieContract.HighestRatedMovieEntry.CONTENT_URI,
+                MovieContract.HighestRatedMovieEntry.TABLE_NAME,
+                MovieContract.HighestRatedMovieEntry.COLUMN_MOVIE_ID,
+                MovieContract.HighestRatedMovieEntry.COLUMN_RANK);
+
+        // merge fetched movies avoiding duplicated ones (first occurrence wins)
+        Map<Integer, MovieInfo> fetchedMovies = new LinkedHashMap<>();
+        Map<Integer, Integer> popularRanks = computeRanks(popularMovies, fetchedMovies);
+        Map<Integer, Integer> highestRatedRanks = computeRanks(highestRatedMovies, fetchedMovies);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        // movies that must be kept even if they are not in fetched lists
+        Set<Integer> keptMovies = new HashSet<>(fetchedMovies.keySet());
+        keptMovies.addAll(favoriteMovies);
+        if (popularRanks == null) keptMovies.addAll(storedPopularRanks.keySet());
+        if (highestRatedRanks == null) keptMovies.addAll(storedHighestRatedRanks.keySet());
+
+        // firstly, remove movies that are not in lists anymore
+        addRankDeletes(MovieContract.PopularMovieEntry.CONTENT_URI,
+                MovieContract.PopularMovieEntry.COLUMN_MOVIE_ID,
+                storedPopularRanks,
+                popularRanks,
+                operations,
+                report);
+        addRankDeletes(MovieContract.HighestRatedMovieEntry.CONTENT_URI,
+                MovieContract.HighestRatedMovieEntry.COLUMN_MOVIE_ID,
+                storedHighestRatedRanks,
+                highestRatedRanks,
+                operations,
+                report);
+        addMovieDeletes(storedMovies.keySet(), keptMovies, operations, report);
+
+        // secondly, insert new movies and update changed ones
+        List<MovieInfo> newMovies = new ArrayList<>();
+        for (MovieInfo movie : fetchedMovies.values()) {
+            MovieInfo storedMovie = storedMovies.get(movie.getMovieId());
+            if (storedMovie == null) {
+                newMovies.add(movie);
+                report.moviesInserted++;
+                report.insertedMovies.add(movie);
+            } else if (!MovieInfoUtils.hasSameContent(movie, storedMovie)) {
+                operations.add(ContentProviderOperation
+                        .newUpdate(MovieContract.MovieEntry.buildUriWithId(movie.getMovieId()))
+                        .withValues(MovieInfoUtils.getContentValuesFor(movie))
+                        .build());
+                report.moviesUpdated++;
+            } else {
+                report.moviesUnchanged++;
+            }
+        }
+        if (!newMovies.isEmpty()) {
+            operations.add(buildMovieRows(newMovies).buildInsertOperation(MovieContract.MovieEntry.CONTENT_URI));
+        }
+
+        // finally, insert new list rows and move the ones that have changed its rank
+        addRankUpserts(MovieContract.PopularMovieEntry.CONTENT_URI,
+                MovieContract.PopularMovieEntry.COLUMN_MOVIE_ID,
+                MovieContract.PopularMovieEntry.COLUMN_RANK,
+                storedPopularRanks,
+                popularRanks,
+                operations,
+                report);
+        addRankUpserts(MovieContract.HighestRatedMovieEntry.CONTENT_URI,
+                MovieContract.HighestRatedMovieEntry.COLUMN_MOVIE_ID,
+                MovieContract.HighestRatedMovieEntry.COLUMN_RANK,
+                storedHighestRatedRanks,
+                highestRatedRanks,
+                operations,
+                report);
+
+        return operations;
+    }
+
+    private static Map<Integer, Integer> computeRanks(List<MovieInfo> movies,
+                                                      Map<Integer, MovieInfo> fetchedMovies) {
+        if (movies == null) return null;
+        Map<Integer, Integer> ranks = new HashMap<>();
+        int rank = 0;
+        for (MovieInfo movie : movies) {
+            if (ranks.containsKey(movie.getMovieId())) continue;
+            ranks.put(movie.getMovieId(), rank++);
+            if (!fetchedMovies.containsKey(movie.getMovieId())) {
+                fetchedMovies.put(movie.getMovieId(), movie);
+            }
+        }
+        return ranks;
+    }
+
+    private static void addRankDeletes(Uri listUri,
+                                       String movieIdColumn,
+                                       Map<Integer, Integer> storedRanks,
+                                       Map<Integer, Integer> ranks,
+                                       List<ContentProviderOperation> operations,
+                                       Report report) {
+        if (ranks == null) return;
+        List<Integer> deletedIds = new ArrayList<>();
+        for (Integer movieId : storedRanks.keySet()) {
+            if (!ranks.containsKey(movieId)) deletedIds.add(movieId);
+        }
+        if (deletedIds.isEmpty()) return;
+        operations.add(ContentProviderOperation
+                .newDelete(listUri)
+                .withSelection(buildInSelection(movieIdColumn, deletedIds), null)
+                .build());
+        report.ranksDeleted += deletedIds.size();
+    }
+
+    private static void addMovieDeletes(Set<Integer> storedIds,
+                                        Set<Integer> keptIds,
+                                        List<ContentProviderOperation> operations,
+                                        Report report) {
+        List<Integer> deletedIds = new ArrayList<>();
+        for (Integer movieId : storedIds) {
+            if (!keptIds.contains(movieId)) {
+                deletedIds.add(movieId);
+            }
+        }
+        if (deletedIds.isEmpty()) return;
+        // stored reviews and videos of deleted movies are not needed anymore. Every delete
+        // also checks favorites in the same transaction, because the user could have marked
+        // one of these movies as favorite after they were queried
+        operations.add(ContentProviderOperation
+                .newDelete(MovieContract.ReviewEntry.CONTENT_URI)
+                .withSelection(buildNotFavoriteSelection(MovieContract.ReviewEntry.COLUMN_MOVIE_ID, deletedIds), null)
+                .build());
+        operations.add(ContentProviderOperation
+                .newDelete(MovieContract.VideoEntry.CONTENT_URI)
+                .withSelection(buildNotFavoriteSelection(MovieContract.VideoEntry.COLUMN_MOVIE_ID, deletedIds), null)
+                .build());
+        operations.add(ContentProviderOperation
+                .newDelete(MovieContract.MovieExtrasEntry.CONTENT_URI)
+                .withSelection(buildNotFavoriteSelection(MovieContract.MovieExtrasEntry.COLUMN_MOVIE_ID, deletedIds), null)
+                .build());
+        operations.add(ContentProviderOperation
+                .newDelete(MovieContract.MovieEntry.CONTENT_URI)
+                .withSelection(buildNotFavoriteSelection(MovieContract.MovieEntry._ID, deletedIds), null)
+                .build());
+        report.moviesDeleted += deletedIds.size();
+    }
+
+    private static void addRankUpserts(Uri listUri,
+                                       String movieIdColumn,
+                                       String rankColumn,
+                                       Map<Integer, Integer> storedRanks,
+                                       Map<Integer, Integer> ranks,
+                                       List<ContentProviderOperation> operations,
+                                       Report report) {
+        if (ranks == null) return;
+        long[] newMovieIds = new long[ranks.size()];
+        long[] newRanks = new long[ranks.size()];
+        int newRows = 0;
+        for (Map.Entry<Integer, Integer> entry : ranks.entrySet()) {
+            Integer movieId = entry.getKey();
+            Integer rank = entry.getValue();
+            Integer storedRank = storedRanks.get(movieId);
+            if (storedRank == null) {
+                newMovieIds[newRows] = movieId;
+                newRanks[newRows] = rank;
+                newRows++;
+                report.ranksInserted++;
+            } else if (!storedRank.equals(rank)) {
+                operations.add(ContentProviderOperation
+                        .newUpdate(listUri)
+                        .withSelection(movieIdColumn + "=" + movieId, null)
+                        .withValue(rankColumn, rank)
+                        .build());
+                report.ranksMoved++;
+            } else {
+                report.ranksUnchanged++;
+            }
+        }
+        if (newRows > 0) {
+            RowBatch rows = new RowBatch(newRows)
+                    .putLongs(movieIdColumn, Arrays.copyOf(newMovieIds, newRows))
+                    .putLongs(rankColumn, Arrays.copyOf(newRanks, newRows));
+            operations.add(rows.buildInsertOperation(listUri));
+        }
+    }
+
+    /**
+     * @return row batch with the rows of given movies.
+     */
+    private static RowBatch buildMovieRows(List<MovieInfo> movies) {
+        int count = movies.size();
+        long[] ids = new long[count];
+        String[] titles = new String[count];
+        String[] releaseDates = new String[count];
+        double[] ratings = new double[count];
+        String[] synopses = new String[count];
+        String[] posterKeys = new String[count];
+        String[] backdropKeys = new String[count];
+        for (int i = 0; i < count; i++) {
+            MovieInfo movie = movies.get(i);
+            ids[i] = movie.getMovieId();
+            titles[i] = movie.getTitle();
+            releaseDates[i] = movie.getReleaseDate();
+            ratings[i] = movie.getRating();
+            synopses[i] = movie.getSynopsis();
+            posterKeys[i] = movie.getPosterKey();
+            backdropKeys[i] = movie.getBackdropKey();
+        }
+        return new RowBatch(count)
+                .putLongs(MovieContract.MovieEntry._ID, ids)
+                .putStrings(MovieContract.MovieEntry.COLUMN_TITLE, titles)
+                .putStrings(MovieContract.MovieEntry.COLUMN_RELEASE_DATE, releaseDates)
+                .putDoubles(MovieContract.MovieEntry.COLUMN_RATING, ratings)
+                .putStrings(MovieContract.MovieEntry.COLUMN_SYNOPSIS, synopses)
+                .putStrings(MovieContract.MovieEntry.COLUMN_POSTER_KEY, posterKeys)
+                .putStrings(MovieContract.MovieEntry.COLUMN_BACKDROP_KEY, backdropKeys);
+    }
+
+    private static String buildInSelection(String column, List<Integer> ids) {
+        StringBuilder selection = new StringBuilder(column).append(" IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) selection.append(',');
+            selection.append(ids.get(i));
+        }
+        return selection.append(')').toString();
+    }
+
+    /**
+     * @return selection of rows whose given movie id column is one of given ids, excluding
+     * favorite movies.
+     */
+    private static String buildNotFavoriteSelection(String movieIdColumn, List<Integer> ids) {
+        return buildInSelection(movieIdColumn, ids) + " AND " + movieIdColumn + " NOT IN (SELECT " +
+                MovieContract.FavoriteMovieEntry.COLUMN_MOVIE_ID + " FROM " +
+                MovieContract.FavoriteMovieEntry.TABLE_NAME + ")";
+    }
+
+    private Map<Integer, MovieInfo> queryStoredMovies() {
+        Cursor cursor = mContentResolver.query(MovieContract.MovieEntry.CONTENT_URI,
+                MovieInfoUtils.MOVIES_PROJECTION,
+                null,
+                null,
+                null);
+        if (cursor == null) return new HashMap<>();
+        Map<Integer, MovieInfo> movies = MovieInfoUtils.getMoviesFromCursor(cursor);
+        cursor.close();
+        return movies;
+    }
+
+    private Set<Integer> queryFavoriteMovieIds() {
+        Set<Integer> favoriteMovies = new HashSet<>();
+        String[] projection = { MovieContract.FavoriteMovieEntry.TABLE_NAME + "." +
+                MovieContract.FavoriteMovieEntry.COLUMN_MOVIE_ID };
+        int idColumn = 0;
+        Cursor cursor = mContentResolver.query(MovieContract.FavoriteMovieEntry.CONTENT_URI,
+                projection,
+                null,
+                null,
+                null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                favoriteMovies.add(cursor.getInt(idColumn));
+            }
+            cursor.close();
+        }
+        return favoriteMovies;
+    }
+
+    private Map<Integer, Integer> queryStoredRanks(Uri listUri,
+                                                   String tableName,
+                                                   String movieIdColumn,
+                                                   String rankColumn) {
+        Map<Integer, Integer> ranks = new HashMap<>();
+        String[] projection = { tableName + "." + movieIdColumn, tableName + "." + rankColumn };
+        int idColumn = 0;
+        int rankColumnIndex = 1;
+        Cursor cursor = mContentResolver.query(listUri,
+                projection,
+                null,
+                null,
+                null);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                ranks.put(cursor.getInt(idColumn), cursor.getInt(rankColumnIndex));
+            }
+            cursor.close();
+        }
+        return ranks;
+    }
+}
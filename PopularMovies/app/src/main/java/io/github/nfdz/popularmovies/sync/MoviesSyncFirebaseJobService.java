@@ -3,37 +3,46 @@
  */
 package io.github.nfdz.popularmovies.sync;
 
-
-import android.os.AsyncTask;
+import android.content.Context;
+import android.util.Log;
 
 import com.firebase.jobdispatcher.JobParameters;
 import com.firebase.jobdispatcher.JobService;
 
+import io.github.nfdz.popularmovies.utilities.TaskScheduler;
+
 /**
  * This firebase service implementation checks if it is needed sync movies data and performs it
  * in background.
  */
 public class MoviesSyncFirebaseJobService extends JobService {
 
-    private AsyncTask<Void, Void, Void> mSyncTask;
+    private static final String TAG = MoviesSyncFirebaseJobService.class.getSimpleName();
+    private static final String ERROR_SYNC = "There was an unexpected error syncing movies.";
+
+    private TaskScheduler.Task<Boolean> mSyncTask;
 
     @Override
     public boolean onStartJob(final JobParameters job) {
-        mSyncTask = new AsyncTask<Void, Void, Void>(){
+        mSyncTask = TaskScheduler.submit(TaskScheduler.LANE_BACKGROUND, new TaskScheduler.Task<Boolean>() {
+            @Override
+            protected Boolean doInBackground() {
+                Context context = MoviesSyncFirebaseJobService.this;
+                if (MoviesSyncUtils.isMoviesDataValid(context)) return true;
+                MoviesTasks.syncMovies(context);
+                return MoviesSyncUtils.isMoviesDataValid(context);
+            }
             @Override
-            protected Void doInBackground(Void... voids) {
-                if (!MoviesSyncUtils.isMoviesDataValid(MoviesSyncFirebaseJobService.this)) {
-                    MoviesTasks.syncMovies(MoviesSyncFirebaseJobService.this);
-                }
-                jobFinished(job, false);
-                return null;
+            protected void onComplete(Boolean synced) {
+                // retry later if movies could not be synced
+                jobFinished(job, !synced);
             }
             @Override
-            protected void onPostExecute(Void aVoid) {
-                jobFinished(job, false);
+            protected void onFailure(Throwable error) {
+                Log.e(TAG, ERROR_SYNC, error);
+                jobFinished(job, true);
             }
-        };
-        mSyncTask.execute();
+        });
         return true;
     }
 
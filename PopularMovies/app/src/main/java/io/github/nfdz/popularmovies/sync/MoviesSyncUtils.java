@@ -22,6 +22,7 @@ import java.util.concurrent.TimeUnit;
 
 import io.github.nfdz.popularmovies.data.MovieContract;
 import io.github.nfdz.popularmovies.data.PreferencesUtils;
+import io.github.nfdz.popularmovies.utilities.TaskScheduler;
 
 /**
  * This class has several methods to manage data sync in a safe way (avoid computing long tasks in
@@ -80,7 +81,7 @@ public class MoviesSyncUtils {
 
         scheduleFirebaseJobDispatcherSync(context);
 
-        Thread checkIfEmpty = new Thread(new Runnable() {
+        TaskScheduler.submit(TaskScheduler.LANE_BACKGROUND, new Runnable() {
             @Override
             public void run() {
 
@@ -105,8 +106,6 @@ public class MoviesSyncUtils {
                 if (cursor != null) cursor.close();
             }
         });
-
-        checkIfEmpty.start();
     }
 
     /**
@@ -3,32 +3,33 @@
  */
 package io.github.nfdz.popularmovies.sync;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 import android.util.Log;
 
-import java.net.URL;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import io.github.nfdz.popularmovies.data.MovieContract;
 import io.github.nfdz.popularmovies.data.PreferencesUtils;
 import io.github.nfdz.popularmovies.types.MovieInfo;
-import io.github.nfdz.popularmovies.utilities.MovieInfoUtils;
+import io.github.nfdz.popularmovies.utilities.FavoritesUtils;
+import io.github.nfdz.popularmovies.utilities.ImagesConfigurationCache;
 import io.github.nfdz.popularmovies.utilities.TMDbException;
-import io.github.nfdz.popularmovies.utilities.TMDbJsonUtils;
 import io.github.nfdz.popularmovies.utilities.TMDbNetworkUtils;
 
 public class MoviesTasks {
 
     private static final String TAG = MoviesTasks.class.getSimpleName();
     private static final String ERROR_FETCH_MOVIES = "There was an error retrieving movies data. Criteria: ";
+    private static final String ERROR_FETCH_CONFIG = "There was an error retrieving images configuration.";
+    private static final String ERROR_APPLY_MOVIES = "There was an error storing movies data.";
 
     public static final String ACTION_SYNC_MOVIES = "sync-movies";
     public static final String ACTION_INSERT_FAVORITE = "insert-favorite";
@@ -50,6 +51,7 @@ public class MoviesTasks {
         ContentValues values = new ContentValues();
         values.put(MovieContract.FavoriteMovieEntry.COLUMN_MOVIE_ID, movieId);
         context.getContentResolver().insert(MovieContract.FavoriteMovieEntry.CONTENT_URI, values);
+        FavoritesUtils.setFavorite(movieId, true);
     }
 
     public static void removeFavorite(Context context, long movieId) {
@@ -58,6 +60,7 @@ public class MoviesTasks {
                 MovieContract.FavoriteMovieEntry.CONTENT_URI,
                 where,
                 null);
+        FavoritesUtils.setFavorite(movieId, false);
     }
 
     /**
@@ -65,107 +68,103 @@ public class MoviesTasks {
      * @param context
      */
     synchronized public static void syncMovies(Context context) {
-        // retrieve most popular movies
-        List<MovieInfo> popularMovies;
+        // refresh images configuration if it has expired, it is needed to build image URLs of
+        // stored movies but not to sync them (only image resource keys are stored)
         try {
-            popularMovies = fetchMoviesWithCriteria(TMDbNetworkUtils.MOST_POPULAR_FLAG);
+            ImagesConfigurationCache.getConfiguration(context);
         } catch (TMDbException e) {
-            Log.d(TAG, ERROR_FETCH_MOVIES + "most popular.", e);
-            return;
+            Log.d(TAG, ERROR_FETCH_CONFIG, e);
         }
 
-        // retrieve highest rated movies
-        List<MovieInfo> highestRatedMovies;
+        // retrieve most popular and highest rated movies concurrently, lists that are already
+        // stored are revalidated so they are not downloaded and processed if nothing has changed
+        ContentResolver contentResolver = context.getContentResolver();
+        int pages = PreferencesUtils.getSyncPages(context);
+        MoviesListFetch popularFetch = new MoviesListFetch(context,
+                TMDbNetworkUtils.MOST_POPULAR_FLAG,
+                pages,
+                hasStoredRows(contentResolver, MovieContract.PopularMovieEntry.CONTENT_URI));
+        MoviesListFetch highestRatedFetch = new MoviesListFetch(context,
+                TMDbNetworkUtils.HIGHEST_RATED_FLAG,
+                pages,
+                hasStoredRows(contentResolver, MovieContract.HighestRatedMovieEntry.CONTENT_URI));
         try {
-            highestRatedMovies = fetchMoviesWithCriteria(TMDbNetworkUtils.HIGHEST_RATED_FLAG);
+            popularFetch.submit();
+            highestRatedFetch.submit();
         } catch (TMDbException e) {
-            Log.d(TAG, ERROR_FETCH_MOVIES + "highest rated.", e);
+            Log.d(TAG, ERROR_FETCH_MOVIES, e);
             return;
         }
 
-        // get favorite movies from local provider
-        ContentResolver contentResolver = context.getContentResolver();
-        Cursor favoritesCursor = contentResolver.query(MovieContract.FavoriteMovieEntry.CONTENT_URI,
-                MovieInfoUtils.MOVIES_PROJECTION,
-                null,
-                null,
-                null);
-        Map<Integer, MovieInfo> favoriteMovies = MovieInfoUtils.getMoviesFromCursor(favoritesCursor);
-        favoritesCursor.close();
+        // every list is applied independently, a failed one keeps its stored data and a not
+        // modified one is skipped (null list)
+        boolean popularSynced = false;
+        List<MovieInfo> popularMovies = null;
+        try {
+            popularMovies = popularFetch.join();
+            popularSynced = true;
+        } catch (TMDbException e) {
+            Log.d(TAG, ERROR_FETCH_MOVIES + "most popular.", e);
+        }
+        boolean highestRatedSynced = false;
+        List<MovieInfo> highestRatedMovies = null;
+        try {
+            highestRatedMovies = highestRatedFetch.join();
+            highestRatedSynced = true;
+        } catch (TMDbException e) {
+            Log.d(TAG, ERROR_FETCH_MOVIES + "highest rated.", e);
+        }
 
-        // delete all information about popular and highest rated movies
-        contentResolver.delete(
-                MovieContract.PopularMovieEntry.CONTENT_URI,
-                null,
-                null);
-        contentResolver.delete(
-                MovieContract.HighestRatedMovieEntry.CONTENT_URI,
-                null,
-                null);
-        // delete all movies that are not saved as favorites
-        String[] projection = { MovieContract.MovieEntry._ID };
-        int idColumn = 0;
-        Cursor cursor = context.getContentResolver().query(MovieContract.MovieEntry.CONTENT_URI,
-                projection,
-                null,
-                null,
-                null);
-        int removed = 0;
-        while (cursor.moveToNext()) {
-            String movieIdString = cursor.getString(idColumn);
-            if (!favoriteMovies.keySet().contains(Integer.parseInt(movieIdString))) {
-                removed += contentResolver.delete(
-                        MovieContract.MovieEntry.CONTENT_URI,
-                        MovieContract.MovieEntry._ID + "=" + movieIdString,
-                        null);
+        List<MovieInfo> insertedMovies = null;
+        if (popularMovies != null || highestRatedMovies != null) {
+            // compute changes comparing fetched lists with stored data
+            MoviesSyncDiff.Report report = new MoviesSyncDiff.Report();
+            ArrayList<ContentProviderOperation> operations = new MoviesSyncDiff(contentResolver)
+                    .buildOperations(popularMovies, highestRatedMovies, report);
+            Log.d(TAG, "Movies sync changes: " + report);
+
+            // apply all changes in one transaction (only if there is something to change)
+            if (report.hasChanges()) {
+                try {
+                    contentResolver.applyBatch(MovieContract.CONTENT_AUTHORITY, operations);
+                } catch (RemoteException | OperationApplicationException e) {
+                    Log.e(TAG, ERROR_APPLY_MOVIES, e);
+                    return;
+                }
+                insertedMovies = report.insertedMovies;
             }
+        } else {
+            Log.d(TAG, "Movies lists have not been modified.");
         }
-        cursor.close();
-
-
-        // insert popular movies (avoid insert already contained movies)
-        Map<Integer, MovieInfo> insertedPopularMovies = new HashMap<>();
-        for (MovieInfo movie : popularMovies) {
-            // use stored id if exists
-            if (!favoriteMovies.containsKey(movie.getMovieId())) {
-                // insert movie
-                ContentValues movieValues = MovieInfoUtils.getContentValuesFor(movie);
-                contentResolver.insert(MovieContract.MovieEntry.CONTENT_URI, movieValues);
-                insertedPopularMovies.put(movie.getMovieId(), movie);
-            }
-            // insert popular
-            ContentValues popularValues = new ContentValues();
-            popularValues.put(MovieContract.PopularMovieEntry.COLUMN_MOVIE_ID, movie.getMovieId());
-            contentResolver.insert(MovieContract.PopularMovieEntry.CONTENT_URI, popularValues);
+
+        // data is stored, so validators can be used to revalidate it next time
+        if (popularSynced) popularFetch.commitValidators();
+        if (highestRatedSynced) highestRatedFetch.commitValidators();
+
+        // save sync time in preferences only if every list was synchronized, so a partial
+        // sync will be retried as soon as possible
+        if (popularSynced && highestRatedSynced) {
+            long now = System.currentTimeMillis();
+            PreferencesUtils.setLastSynchronizationTime(context, now);
         }
 
-        // insert highest rated movies (avoid insert already contained movies)
-        for (MovieInfo movie : highestRatedMovies) {
-            // use stored id if exists, look for in favorite movies and inserted popular movies
-            if (!favoriteMovies.containsKey(movie.getMovieId()) &&
-                    !insertedPopularMovies.containsKey(movie.getMovieId())) {
-                // insert movie
-                ContentValues movieValues = MovieInfoUtils.getContentValuesFor(movie);
-                contentResolver.insert(MovieContract.MovieEntry.CONTENT_URI, movieValues);
-            }
-            // insert highest rated
-            ContentValues popularValues = new ContentValues();
-            popularValues.put(MovieContract.HighestRatedMovieEntry.COLUMN_MOVIE_ID, movie.getMovieId());
-            contentResolver.insert(MovieContract.HighestRatedMovieEntry.CONTENT_URI, popularValues);
+        // download stale reviews and videos of the movies that users are going to open
+        int prefetchExtrasMovies = PreferencesUtils.getPrefetchExtrasMovies(context);
+        if (prefetchExtrasMovies > 0) {
+            new MovieExtrasPrefetch(context).prefetch(prefetchExtrasMovies);
         }
 
-        // save sync time in preferences
-        long now = System.currentTimeMillis();
-        PreferencesUtils.setLastSynchronizationTime(context, now);
+        // download posters of new movies, so grid is shown from cache next time
+        if (insertedMovies != null && PreferencesUtils.isPosterCacheWarmingEnabled(context)) {
+            new PosterCacheWarmer(context).warm(insertedMovies);
+        }
     }
 
-    private static List<MovieInfo> fetchMoviesWithCriteria(int criteria) throws TMDbException {
-        URL configRequestUrl = TMDbNetworkUtils.buildConfigURL();
-        String jsonConfigResponse = TMDbNetworkUtils.getResponseFromHttpUrl(configRequestUrl);
-        String[] posterBasePaths = TMDbJsonUtils.getPosterBasePathsFromJson(jsonConfigResponse);
-        String[] backdropBasePaths = TMDbJsonUtils.getBackdropBasePathsFromJson(jsonConfigResponse);
-        URL moviesRequestUrl = TMDbNetworkUtils.buildMoviesURL(criteria);
-        String moviesJsonResponse = TMDbNetworkUtils.getResponseFromHttpUrl(moviesRequestUrl);
-        return TMDbJsonUtils.getMoviesFromJson(moviesJsonResponse, posterBasePaths, backdropBasePaths);
+    private static boolean hasStoredRows(ContentResolver contentResolver, Uri listUri) {
+        String[] projection = { MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry._ID };
+        Cursor cursor = contentResolver.query(listUri, projection, null, null, null);
+        boolean hasRows = cursor != null && cursor.getCount() > 0;
+        if (cursor != null) cursor.close();
+        return hasRows;
     }
-}
\ No newline at end of file
+}
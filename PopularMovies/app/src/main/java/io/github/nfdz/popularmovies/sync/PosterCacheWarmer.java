@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.sync;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Uri;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.squareup.picasso.Downloader;
+import com.squareup.picasso.UrlConnectionDownloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.nfdz.popularmovies.MoviesGridLoader;
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
+import io.github.nfdz.popularmovies.types.MovieInfo;
+import io.github.nfdz.popularmovies.utilities.ImagesConfigurationCache;
+import io.github.nfdz.popularmovies.utilities.TMDBImagesUtils;
+import io.github.nfdz.popularmovies.utilities.TaskScheduler;
+
+/**
+ * This class downloads the posters of new movies into the disk cache of images after a
+ * synchronization, so the movies grid is shown from cache the next time. Posters are
+ * downloaded with the downloader of Picasso at grid poster size, so they are stored in the
+ * same HTTP cache and with the same URLs that the grid uses. It does nothing on metered
+ * networks and it stops when the downloaded bytes reach a budget.
+ */
+class PosterCacheWarmer {
+
+    private static final String TAG = PosterCacheWarmer.class.getSimpleName();
+
+    private static final String ERROR_DOWNLOAD_POSTER = "There was an error downloading poster: ";
+    private static final String ERROR_INTERRUPTED = "Poster cache warming was interrupted.";
+
+    /** Maximum number of bytes downloaded by every warming */
+    private static final long MAX_DOWNLOADED_BYTES = 8 * 1024 * 1024;
+
+    /** Maximum number of concurrent poster downloads */
+    private static final int MAX_CONCURRENT_DOWNLOADS = 2;
+
+    private static final int DRAIN_BUFFER_SIZE = 8 * 1024;
+
+    private final Context mContext;
+    private final AtomicLong mDownloadedBytes = new AtomicLong();
+
+    /**
+     * @param context
+     */
+    PosterCacheWarmer(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * This method downloads posters of given movies to image cache and waits until they are
+     * stored. Warning, it blocks calling thread.
+     * @param movies
+     */
+    void warm(List<MovieInfo> movies) {
+        if (movies.isEmpty()) return;
+        if (isMeteredNetwork()) {
+            Log.d(TAG, "Active network is metered, posters are not downloaded.");
+            return;
+        }
+        ImagesConfiguration config = ImagesConfigurationCache.getCachedConfiguration(mContext);
+        if (config == null) return;
+        int posterWidth = MoviesGridLoader.getPosterWidth(mContext);
+        List<Uri> posterUris = new ArrayList<>();
+        for (MovieInfo movie : movies) {
+            String url = TMDBImagesUtils.resolvePosterUrl(config, movie.getPosterKey(), posterWidth);
+            if (!TextUtils.isEmpty(url)) posterUris.add(Uri.parse(url));
+        }
+
+        // every task downloads a slice of posters, so concurrency is bounded even if the
+        // network lane has more threads
+        UrlConnectionDownloader downloader = new UrlConnectionDownloader(mContext);
+        int tasks = Math.min(MAX_CONCURRENT_DOWNLOADS, posterUris.size());
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            futures.add(TaskScheduler.submit(TaskScheduler.LANE_NETWORK,
+                    new DownloadPostersTask(downloader, posterUris, i, tasks)));
+        }
+        int downloaded = 0;
+        try {
+            for (Future<Integer> future : futures) {
+                downloaded += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.d(TAG, ERROR_INTERRUPTED, e);
+        } catch (ExecutionException e) {
+            Log.d(TAG, ERROR_DOWNLOAD_POSTER, e.getCause());
+        } finally {
+            for (Future<Integer> future : futures) future.cancel(true);
+        }
+        Log.d(TAG, "Posters downloaded to cache: " + downloaded + "/" + posterUris.size() +
+                " (" + mDownloadedBytes.get() + " bytes).");
+    }
+
+    private boolean isMeteredNetwork() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return connectivityManager == null ||
+                ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+
+    /**
+     * This method downloads given poster and reads it entirely, so it is stored in the cache.
+     * @param downloader
+     * @param posterUri
+     * @return true if it was downloaded from network, false if it was already cached.
+     * @throws IOException
+     */
+    private boolean downloadPoster(UrlConnectionDownloader downloader, Uri posterUri) throws IOException {
+        int networkPolicy = 0;
+        Downloader.Response response = downloader.load(posterUri, networkPolicy);
+        if (response == null) return false;
+        InputStream in = response.getInputStream();
+        if (in == null) return false;
+        try {
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+            long bytes = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes += read;
+            }
+            if (response.isCached()) return false;
+            mDownloadedBytes.addAndGet(bytes);
+            return true;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * This task downloads every n-th poster of a list while there is budget left.
+     */
+    private class DownloadPostersTask implements Callable<Integer> {
+
+        private final UrlConnectionDownloader mDownloader;
+        private final List<Uri> mPosterUris;
+        private final int mFirst;
+        private final int mStep;
+
+        DownloadPostersTask(UrlConnectionDownloader downloader, List<Uri> posterUris, int first, int step) {
+            mDownloader = downloader;
+            mPosterUris = posterUris;
+            mFirst = first;
+            mStep = step;
+        }
+
+        @Override
+        public Integer call() {
+            int downloaded = 0;
+            for (int i = mFirst; i < mPosterUris.size(); i += mStep) {
+                if (Thread.currentThread().isInterrupted()) break;
+                if (mDownloadedBytes.get() >= MAX_DOWNLOADED_BYTES) break;
+                Uri posterUri = mPosterUris.get(i);
+                try {
+                    if (downloadPoster(mDownloader, posterUri)) downloaded++;
+                } catch (IOException e) {
+                    Log.d(TAG, ERROR_DOWNLOAD_POSTER + posterUri, e);
+                }
+            }
+            return downloaded;
+        }
+    }
+}
@@ -4,19 +4,19 @@
 package io.github.nfdz.popularmovies.types;
 
 /**
- * This is a useful callback mechanism so we can abstract our AsyncTasks.
+ * This is a useful callback mechanism so we can abstract our background tasks.
  *
  * @param <T>
  */
 public interface AsyncTaskListener<T> {
     /**
-     * Invoked before that the AsyncTask starts its execution.
+     * Invoked before that the task starts its execution.
      */
     void onPreTaskExecution();
 
     /**
-     * Invoked when the AsyncTask has completed its execution.
-     * @param result The resulting object from the AsyncTask.
+     * Invoked when the task has completed its execution.
+     * @param result The resulting object from the task.
      */
     void onTaskComplete(T result);
 }
\ No newline at end of file
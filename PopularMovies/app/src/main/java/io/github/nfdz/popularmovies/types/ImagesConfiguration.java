@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.types;
+
+/**
+ * This class contains the images configuration returned by TMDb configuration request. It
+ * is needed to compose image URLs of any movie (base URL + size + image resource key).
+ */
+public class ImagesConfiguration {
+
+    /** Base URL of every image */
+    private final String mBaseUrl;
+
+    /** Available poster sizes (like "w92" or "original") */
+    private final String[] mPosterSizes;
+
+    /** Available backdrop sizes (like "w300" or "original") */
+    private final String[] mBackdropSizes;
+
+    public ImagesConfiguration(String baseUrl, String[] posterSizes, String[] backdropSizes) {
+        mBaseUrl = baseUrl;
+        mPosterSizes = posterSizes;
+        mBackdropSizes = backdropSizes;
+    }
+
+    public String getBaseUrl() {
+        return mBaseUrl;
+    }
+
+    public String[] getPosterSizes() {
+        return mPosterSizes;
+    }
+
+    public String[] getBackdropSizes() {
+        return mBackdropSizes;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.types;
+
+import android.net.Uri;
+import android.support.v7.util.DiffUtil;
+
+import java.util.List;
+
+/**
+ * This class contains a loaded snapshot of a movies grid. Long lists are not loaded entirely,
+ * it only contains a window of consecutive pages and the identifiers of every movie of the list,
+ * the rest of pages are loaded on demand by their identifiers. So the movie of every position is
+ * known even if it is not loaded. If the whole list fits in the window and it is an update of a
+ * previous whole list, it also contains the differences between them.
+ */
+public class MovieGridData {
+
+    private final Uri mUri;
+    private final String mSortOrder;
+    private final long[] mMovieIds;
+    private final int mPageSize;
+    private final int mFirstPage;
+    private final List<MovieGridItem> mWindowItems;
+    private final List<MovieGridItem> mPreviousItems;
+    private final DiffUtil.DiffResult mDiff;
+
+    /**
+     * @param uri movies list URI.
+     * @param sortOrder sort order of the list.
+     * @param movieIds identifiers of every movie of the list in order.
+     * @param pageSize number of movies of every page.
+     * @param firstPage first page of the window.
+     * @param windowItems movies of the window.
+     * @param previousItems movies that differences were computed against, it could be null.
+     * @param diff differences with previous movies, it could be null.
+     */
+    public MovieGridData(Uri uri,
+                         String sortOrder,
+                         long[] movieIds,
+                         int pageSize,
+                         int firstPage,
+                         List<MovieGridItem> windowItems,
+                         List<MovieGridItem> previousItems,
+                         DiffUtil.DiffResult diff) {
+        mUri = uri;
+        mSortOrder = sortOrder;
+        mMovieIds = movieIds;
+        mPageSize = pageSize;
+        mFirstPage = firstPage;
+        mWindowItems = windowItems;
+        mPreviousItems = previousItems;
+        mDiff = diff;
+    }
+
+    public Uri getUri() {
+        return mUri;
+    }
+
+    public String getSortOrder() {
+        return mSortOrder;
+    }
+
+    public int getCount() {
+        return mMovieIds.length;
+    }
+
+    /**
+     * @param position
+     * @return identifier of the movie in given position (loaded or not).
+     */
+    public long getMovieId(int position) {
+        return mMovieIds[position];
+    }
+
+    /**
+     * @return identifiers of every movie of the list in order, it must not be modified.
+     */
+    public long[] getMovieIds() {
+        return mMovieIds;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public int getFirstPage() {
+        return mFirstPage;
+    }
+
+    public List<MovieGridItem> getWindowItems() {
+        return mWindowItems;
+    }
+
+    /**
+     * @return items that differences were computed against, or null if there are no differences.
+     */
+    public List<MovieGridItem> getPreviousItems() {
+        return mPreviousItems;
+    }
+
+    /**
+     * @return differences with previous items, or null if there are no differences.
+     */
+    public DiffUtil.DiffResult getDiff() {
+        return mDiff;
+    }
+
+    /**
+     * @return true if the window contains the whole list.
+     */
+    public boolean isComplete() {
+        return mFirstPage == 0 && mWindowItems.size() >= mMovieIds.length;
+    }
+
+    /**
+     * @return true if both snapshots are from the same list.
+     */
+    public boolean isSameList(MovieGridData other) {
+        return mUri.equals(other.mUri) && mSortOrder.equals(other.mSortOrder);
+    }
+
+    public boolean isEmpty() {
+        return mMovieIds.length == 0;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.types;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+/**
+ * This class contains a movie of the movies grid ready to be shown. Every display string and
+ * the poster URI are computed when it is created, so binding it does not need any work.
+ */
+public class MovieGridItem {
+
+    /** Identifier from internet database */
+    private final long mMovieId;
+
+    /** Title with release year, like "Movie Title (2999)" */
+    private final CharSequence mTitleText;
+
+    /** Votes average with scale, like "9.0/10" */
+    private final CharSequence mRatingText;
+
+    /** Resolved poster URI, it could be null */
+    private final Uri mPosterUri;
+
+    public MovieGridItem(long movieId, CharSequence titleText, CharSequence ratingText, Uri posterUri) {
+        mMovieId = movieId;
+        mTitleText = titleText;
+        mRatingText = ratingText;
+        mPosterUri = posterUri;
+    }
+
+    public long getMovieId() {
+        return mMovieId;
+    }
+
+    public CharSequence getTitleText() {
+        return mTitleText;
+    }
+
+    public CharSequence getRatingText() {
+        return mRatingText;
+    }
+
+    public Uri getPosterUri() {
+        return mPosterUri;
+    }
+
+    /**
+     * This method checks if both items show the same content. Note that items with the same
+     * movie identifier are the same item, even if its content has changed.
+     * @param other
+     * @return true if every field is equal, false if not.
+     */
+    public boolean hasSameContent(MovieGridItem other) {
+        return mMovieId == other.mMovieId &&
+                TextUtils.equals(mTitleText, other.mTitleText) &&
+                TextUtils.equals(mRatingText, other.mRatingText) &&
+                (mPosterUri == null ? other.mPosterUri == null : mPosterUri.equals(other.mPosterUri));
+    }
+}
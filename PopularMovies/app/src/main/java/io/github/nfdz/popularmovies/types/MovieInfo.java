@@ -5,6 +5,7 @@ package io.github.nfdz.popularmovies.types;
 
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.text.TextUtils;
 
 /**
  * This class contains all needed information about a movie needed in this application,
@@ -15,8 +16,8 @@ public class MovieInfo implements Parcelable {
     /** Identifier from internet database */
     private final int mMovieId;
 
-    /** Image backdrop paths */
-    private final String[] mBackdropPaths;
+    /** Image backdrop resource key (like "/abc.jpg"), it could be null */
+    private final String mBackdropKey;
 
     /** Movie title */
     private final String mTitle;
@@ -27,8 +28,8 @@ public class MovieInfo implements Parcelable {
     /** Votes average (over 10) */
     private final double mRating;
 
-    /** Image poster paths */
-    private final String[] mPosterPaths;
+    /** Image poster resource key (like "/abc.jpg"), it could be null */
+    private final String mPosterKey;
 
     /** Plot synopsis */
     private final String mSynopsis;
@@ -40,22 +41,23 @@ public class MovieInfo implements Parcelable {
      * @param releaseDate release date.
      * @param rating votes average (over 10).
      * @param synopsis plot synopsis.
-     * @param posterPaths image poster path.
+     * @param posterKey image poster resource key.
+     * @param backdropKey image backdrop resource key.
      */
     public MovieInfo(int movieId,
                      String title,
                      String releaseDate,
                      double rating,
                      String synopsis,
-                     String[] posterPaths,
-                     String[] backdropPaths) {
+                     String posterKey,
+                     String backdropKey) {
         mMovieId = movieId;
         mTitle = title;
         mReleaseDate = releaseDate;
         mRating = rating;
         mSynopsis = synopsis;
-        mPosterPaths = posterPaths;
-        mBackdropPaths = backdropPaths;
+        mPosterKey = posterKey;
+        mBackdropKey = backdropKey;
     }
 
     /**
@@ -68,18 +70,8 @@ public class MovieInfo implements Parcelable {
         mReleaseDate = in.readString();
         mRating = in.readDouble();
         mSynopsis = in.readString();
-
-        int postersSize = in.readInt();
-        mPosterPaths = new String[postersSize];
-        for (int i = 0; i < postersSize; i++) {
-            mPosterPaths[i] = in.readString();
-        }
-
-        int backdropsSize = in.readInt();
-        mBackdropPaths = new String[backdropsSize];
-        for (int i = 0; i < backdropsSize; i++) {
-            mBackdropPaths[i] = in.readString();
-        }
+        mPosterKey = in.readString();
+        mBackdropKey = in.readString();
     }
 
     /**
@@ -117,12 +109,28 @@ public class MovieInfo implements Parcelable {
         return mSynopsis;
     }
 
-    public String[] getPosterPaths() {
-        return mPosterPaths;
+    public String getPosterKey() {
+        return mPosterKey;
+    }
+
+    public String getBackdropKey() {
+        return mBackdropKey;
     }
 
-    public String[] getBackdropPaths() {
-        return mBackdropPaths;
+    /**
+     * This method checks if both movies have the same information. Note that movies with the
+     * same identifier are equal, even if their information has changed.
+     * @param other
+     * @return true if every field is equal, false if not.
+     */
+    public boolean hasSameContent(MovieInfo other) {
+        return mMovieId == other.mMovieId &&
+                TextUtils.equals(mTitle, other.mTitle) &&
+                TextUtils.equals(mReleaseDate, other.mReleaseDate) &&
+                Double.compare(mRating, other.mRating) == 0 &&
+                TextUtils.equals(mSynopsis, other.mSynopsis) &&
+                TextUtils.equals(mPosterKey, other.mPosterKey) &&
+                TextUtils.equals(mBackdropKey, other.mBackdropKey);
     }
 
     @Override
@@ -152,15 +160,7 @@ public class MovieInfo implements Parcelable {
         parcel.writeString(mReleaseDate);
         parcel.writeDouble(mRating);
         parcel.writeString(mSynopsis);
-
-        parcel.writeInt(mPosterPaths.length);
-        for (String posterPath : mPosterPaths) {
-            parcel.writeString(posterPath);
-        }
-
-        parcel.writeInt(mBackdropPaths.length);
-        for (String backdropPath : mBackdropPaths) {
-            parcel.writeString(backdropPath);
-        }
+        parcel.writeString(mPosterKey);
+        parcel.writeString(mBackdropKey);
     }
 }
\ No newline at end of file
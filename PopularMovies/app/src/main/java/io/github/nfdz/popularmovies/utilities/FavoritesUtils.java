@@ -5,149 +5,187 @@ package io.github.nfdz.popularmovies.utilities;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.net.Uri;
-import android.os.AsyncTask;
+import android.util.Log;
+import android.util.SparseBooleanArray;
 
 import io.github.nfdz.popularmovies.data.MovieContract;
 import io.github.nfdz.popularmovies.sync.MoviesTasks;
-import io.github.nfdz.popularmovies.types.AsyncTaskListener;
 
 /**
  * This class has methods to manage favorite movies in a safe way (avoid computing long tasks in
- * UI thread).
+ * UI thread). Identifiers of favorite movies are kept in memory, they are loaded once from the
+ * provider and they are updated with every change, so resolving if a movie is favorite does not
+ * need to query the provider. The provider is never queried in UI thread.
  */
 public class FavoritesUtils {
 
+    private static final String TAG = FavoritesUtils.class.getSimpleName();
+    private static final String ERROR_WRITE_FAVORITE = "There was an error storing favorite movie: ";
+
+    /** Identifiers of favorite movies, it is null until they are loaded */
+    private static IntHashSet sFavoriteIds;
+
+    /** Favorite states changed before identifiers were loaded, they are applied when loaded */
+    private static final SparseBooleanArray sPendingChanges = new SparseBooleanArray();
+
     /**
-     * Interface operation callback.
+     * The interface that receives the favorite state of a movie.
      */
-    public interface  ResolveFavoriteCallback {
-        void notifyResult(boolean isFavorite);
+    public interface FavoriteCallback {
+        void onFavoriteResolved(int movieId, boolean isFavorite);
     }
 
     /**
-     * This method executes in a background thread the operations needed to resolve if the given
-     * movie id is marked as favorite. It notifies using given callback in UI thread.
+     * This method loads favorite movies in a background thread if they have not been loaded yet,
+     * so later favorite checks do not need to wait for it.
      * @param context
-     * @param movieId
-     * @param callback
      */
-    public static void resolveFavorite(Context context, int movieId, ResolveFavoriteCallback callback) {
-        new ResolveFavoriteTask(context, movieId, callback).execute();
+    public static void preload(Context context) {
+        final Context appContext = context.getApplicationContext();
+        TaskScheduler.submit(TaskScheduler.LANE_UI, new Runnable() {
+            @Override
+            public void run() {
+                ensureLoaded(appContext);
+            }
+        });
     }
 
     /**
-     * Async task implementation to resolve if a movie is marked as favorite.
+     * This method resolves if the given movie id is marked as favorite without querying the
+     * provider in calling thread. If favorite movies are loaded (see preload), callback is
+     * invoked at once, otherwise they are loaded in background and callback is invoked in UI
+     * thread when they are ready.
+     * @param context
+     * @param movieId
+     * @param callback
+     * @return task that is loading favorite movies, so it can be cancelled, or null if callback
+     * has been already invoked.
      */
-    private static class ResolveFavoriteTask extends AsyncTask<Void, Void, Boolean> {
-
-        private final ResolveFavoriteCallback mCallback;
-        private final int mMovieId;
-        private final Context mContext;
-
-        public ResolveFavoriteTask(Context context, int movieId, ResolveFavoriteCallback callback) {
-            mCallback = callback;
-            mMovieId = movieId;
-            mContext = context;
-        }
-
-        @Override
-        protected Boolean doInBackground(Void... v) {
-            Uri queryUri = MovieContract.FavoriteMovieEntry.CONTENT_URI;
-            String[] projection = { MovieContract.FavoriteMovieEntry.TABLE_NAME + "." + MovieContract.FavoriteMovieEntry._ID };
-            String selection = MovieContract.FavoriteMovieEntry.COLUMN_MOVIE_ID + "=" + mMovieId;
-            Cursor cursor = mContext.getContentResolver().query(queryUri, projection, selection, null, null);
-            boolean isFavorite = cursor != null && cursor.getCount() > 0;
-            if (cursor != null) cursor.close();
-            return isFavorite;
+    public static TaskScheduler.Task<Boolean> resolveFavorite(Context context,
+                                                              final int movieId,
+                                                              final FavoriteCallback callback) {
+        synchronized (FavoritesUtils.class) {
+            if (sFavoriteIds != null) {
+                callback.onFavoriteResolved(movieId, sFavoriteIds.contains(movieId));
+                return null;
+            }
         }
+        final Context appContext = context.getApplicationContext();
+        return TaskScheduler.submit(TaskScheduler.LANE_UI, new TaskScheduler.Task<Boolean>() {
+            @Override
+            protected Boolean doInBackground() {
+                ensureLoaded(appContext);
+                synchronized (FavoritesUtils.class) {
+                    return sFavoriteIds != null && sFavoriteIds.contains(movieId);
+                }
+            }
 
-        @Override
-        protected void onPostExecute(Boolean result) {
-            mCallback.notifyResult(result);
-        }
+            @Override
+            protected void onComplete(Boolean isFavorite) {
+                callback.onFavoriteResolved(movieId, isFavorite);
+            }
+        });
     }
 
     /**
-     * This method toggles the given movie favorite state in a background thread. If movie is
-     * favorite, it will remove from favorites. If movie is not favorite, it will add to favorite.
-     * It notifies final favorite result using given callback in UI thread.
+     * This method toggles the given movie favorite state. If movie is favorite, it will remove
+     * from favorites. If movie is not favorite, it will add to favorite. The new state is
+     * returned at once and it is stored in a background thread with a single write.
      * @param context
      * @param movieId
-     * @param callback
+     * @param isFavorite current favorite state of the movie (see resolveFavorite).
+     * @return true if movie is favorite after toggling.
      */
-    public static void toggleFavorite(final Context context, final int movieId, final ResolveFavoriteCallback callback) {
-        new ResolveFavoriteTask(context, movieId, new ResolveFavoriteCallback() {
-            @Override
-            public void notifyResult(boolean isFavorite) {
-                final AsyncTaskListener<Void> innerCallback = new AsyncTaskListener<Void>() {
-                    @Override
-                    public void onPreTaskExecution() { /* nothing to do */ }
-                    @Override
-                    public void onTaskComplete(Void result) {
-                        new ResolveFavoriteTask(context, movieId, callback).execute();
-                    }
-                };
-                if (isFavorite) {
-                    new RemoveFavoriteTask(context, movieId, innerCallback).execute();
-                } else {
-                    new InsertFavoriteTask(context, movieId, innerCallback).execute();
-                }
-            }
-        }).execute();
+    public static boolean toggleFavorite(Context context, int movieId, boolean isFavorite) {
+        boolean newIsFavorite = !isFavorite;
+        setFavorite(movieId, newIsFavorite);
+        TaskScheduler.submit(TaskScheduler.LANE_USER,
+                new WriteFavoriteTask(context.getApplicationContext(), movieId, newIsFavorite));
+        return newIsFavorite;
     }
 
     /**
-     * Async task implementation to remove a movie from favorites.
+     * This method updates the in-memory favorite state of given movie. Every write of favorite
+     * movies has to call it, so favorite checks are consistent with the provider.
+     * @param movieId
+     * @param isFavorite
      */
-    private static class RemoveFavoriteTask extends AsyncTask<Void, Void, Void> {
-
-        private final AsyncTaskListener<Void> mCallback;
-        private final int mMovieId;
-        private final Context mContext;
-
-        public RemoveFavoriteTask(Context context, int movieId, AsyncTaskListener<Void> callback) {
-            mMovieId = movieId;
-            mContext = context;
-            mCallback = callback;
+    synchronized public static void setFavorite(long movieId, boolean isFavorite) {
+        if (sFavoriteIds == null) {
+            // a load could be querying, it will apply this state when it ends
+            sPendingChanges.put((int) movieId, isFavorite);
+        } else if (isFavorite) {
+            sFavoriteIds.add((int) movieId);
+        } else {
+            sFavoriteIds.remove((int) movieId);
         }
+    }
 
-        @Override
-        protected Void doInBackground(Void... v) {
-            MoviesTasks.removeFavorite(mContext, mMovieId);
-            return null;
+    /**
+     * This method loads favorite movies if they have not been loaded yet. The provider is
+     * queried without holding the lock, so UI thread is never blocked by a load.
+     * Warning, it blocks calling thread.
+     */
+    private static void ensureLoaded(Context context) {
+        synchronized (FavoritesUtils.class) {
+            if (sFavoriteIds != null) return;
         }
-
-        @Override
-        protected void onPostExecute(Void result) {
-            mCallback.onTaskComplete(null);
+        Uri queryUri = MovieContract.FavoriteMovieEntry.CONTENT_URI;
+        String[] projection = { MovieContract.FavoriteMovieEntry.TABLE_NAME + "." +
+                MovieContract.FavoriteMovieEntry.COLUMN_MOVIE_ID };
+        int idColumn = 0;
+        Cursor cursor = context.getContentResolver().query(queryUri, projection, null, null, null);
+        if (cursor == null) return; // try again next time
+        IntHashSet favoriteIds = new IntHashSet(cursor.getCount());
+        while (cursor.moveToNext()) {
+            favoriteIds.add(cursor.getInt(idColumn));
+        }
+        cursor.close();
+        synchronized (FavoritesUtils.class) {
+            if (sFavoriteIds != null) return; // loaded by other thread meanwhile
+            for (int i = 0; i < sPendingChanges.size(); i++) {
+                if (sPendingChanges.valueAt(i)) {
+                    favoriteIds.add(sPendingChanges.keyAt(i));
+                } else {
+                    favoriteIds.remove(sPendingChanges.keyAt(i));
+                }
+            }
+            sPendingChanges.clear();
+            sFavoriteIds = favoriteIds;
         }
     }
 
     /**
-     * Async task implementation to add a movie from favorites.
+     * Task implementation to store the favorite state of a movie. If it fails, in-memory
+     * state is restored.
      */
-    private static class InsertFavoriteTask extends AsyncTask<Void, Void, Void> {
+    private static class WriteFavoriteTask extends TaskScheduler.Task<Void> {
 
-        private final AsyncTaskListener<Void> mCallback;
-        private final int mMovieId;
         private final Context mContext;
+        private final int mMovieId;
+        private final boolean mIsFavorite;
 
-        public InsertFavoriteTask(Context context, int movieId, AsyncTaskListener<Void> callback) {
-            mMovieId = movieId;
+        public WriteFavoriteTask(Context context, int movieId, boolean isFavorite) {
             mContext = context;
-            mCallback = callback;
+            mMovieId = movieId;
+            mIsFavorite = isFavorite;
         }
 
         @Override
-        protected Void doInBackground(Void... v) {
-            MoviesTasks.insertFavorite(mContext, mMovieId);
+        protected Void doInBackground() {
+            try {
+                if (mIsFavorite) {
+                    MoviesTasks.insertFavorite(mContext, mMovieId);
+                } else {
+                    MoviesTasks.removeFavorite(mContext, mMovieId);
+                }
+            } catch (SQLException e) {
+                Log.e(TAG, ERROR_WRITE_FAVORITE + mMovieId, e);
+                setFavorite(mMovieId, !mIsFavorite);
+            }
             return null;
         }
-
-        @Override
-        protected void onPostExecute(Void result) {
-            mCallback.onTaskComplete(null);
-        }
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import java.util.Arrays;
+
+/**
+ * This class is a sorted index of the image sizes of a TMDb images configuration. It is built
+ * once per configuration and then it resolves sizes without parsing or allocating anything.
+ */
+public class ImageSizeIndex {
+
+    /** Width used for 'original' size (bigger than any other) */
+    private static final int ORIGINAL_WIDTH = Integer.MAX_VALUE;
+    private static final String ORIGINAL_SIZE = "original";
+    private static final char WIDTH_SIZE_PREFIX = 'w';
+
+    /** Indexed sizes, in configuration order */
+    private final String[] mSizes;
+
+    /** Widths sorted in ascending order */
+    private final int[] mSortedWidths;
+
+    /** Position in sizes array of every sorted width */
+    private final int[] mSortedPositions;
+
+    private ImageSizeIndex(String[] sizes, int[] sortedWidths, int[] sortedPositions) {
+        mSizes = sizes;
+        mSortedWidths = sortedWidths;
+        mSortedPositions = sortedPositions;
+    }
+
+    /**
+     * This method builds the index of given image sizes.
+     * Size could be any number after 'w' char, for example 'w640', or 'original'.
+     * @param sizes
+     * @return index or null if any size does not match with expected pattern.
+     */
+    public static ImageSizeIndex build(String[] sizes) {
+        int count = sizes.length;
+        int[] widths = new int[count];
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            int width = parseWidth(sizes[i]);
+            if (width < 0) return null;
+
+            // insertion sort, there are just a few sizes
+            int j = i;
+            while (j > 0 && widths[j - 1] > width) {
+                widths[j] = widths[j - 1];
+                positions[j] = positions[j - 1];
+                j--;
+            }
+            widths[j] = width;
+            positions[j] = i;
+        }
+        return new ImageSizeIndex(sizes, widths, positions);
+    }
+
+    private static int parseWidth(String size) {
+        if (size == null) return -1;
+        if (size.equals(ORIGINAL_SIZE)) return ORIGINAL_WIDTH;
+        if (size.length() < 2 || size.charAt(0) != WIDTH_SIZE_PREFIX) return -1;
+        try {
+            return Integer.parseInt(size.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * This method checks if this index was built with given sizes. It does not allocate
+     * anything.
+     * @param sizes
+     * @return true if this index can resolve given sizes.
+     */
+    public boolean isIndexOf(String[] sizes) {
+        return mSizes == sizes || Arrays.equals(mSizes, sizes);
+    }
+
+    /**
+     * This method finds the smallest size which width is bigger than given minimum width.
+     * @param minWidth
+     * @return position in sizes array or -1 if there is no size bigger than minimum width.
+     */
+    public int resolvePosition(int minWidth) {
+        // binary search of the first width strictly bigger than minimum width
+        int low = 0;
+        int high = mSortedWidths.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mSortedWidths[middle] > minWidth) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low < mSortedWidths.length ? mSortedPositions[low] : -1;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import io.github.nfdz.popularmovies.data.PreferencesUtils;
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
+
+/**
+ * This class keeps TMDb images configuration in memory and in preferences. Configuration rarely
+ * changes, so it is only requested again to the server when stored one is older than its time
+ * to live.
+ *
+ * Configuration is kept in volatile fields, so UI thread reads it without locks (see
+ * peekConfiguration). Preferences are read and the server is requested only in background
+ * threads, and never holding a lock that UI thread could need.
+ */
+public class ImagesConfigurationCache {
+
+    private static final String TAG = ImagesConfigurationCache.class.getSimpleName();
+
+    /** Time to live of a fetched configuration. */
+    public static final long CONFIG_TTL_MILLIS = TimeUnit.DAYS.toMillis(3);
+
+    private static volatile ImagesConfiguration sConfiguration;
+    private static volatile long sFetchTime;
+
+    /** Flag to know if stored configuration has been read from preferences */
+    private static volatile boolean sLoaded;
+
+    /** Lock that avoids reading preferences twice */
+    private static final Object sLoadLock = new Object();
+
+    /** Lock that avoids requesting configuration twice at the same time, UI thread never takes it */
+    private static final Object sFetchLock = new Object();
+
+    /**
+     * The interface that receives the images configuration.
+     */
+    public interface ConfigurationCallback {
+        void onConfigurationResolved(ImagesConfiguration configuration);
+    }
+
+    /**
+     * This method reads stored configuration in a background thread if it has not been read
+     * yet, so UI thread can peek it later without waiting.
+     * @param context
+     */
+    public static void preload(Context context) {
+        if (sLoaded) return;
+        final Context appContext = context.getApplicationContext();
+        TaskScheduler.submit(TaskScheduler.LANE_UI, new Runnable() {
+            @Override
+            public void run() {
+                getCachedConfiguration(appContext);
+            }
+        });
+    }
+
+    /**
+     * This method returns the configuration that is in memory. It never reads preferences nor
+     * uses network, so it can be called in UI thread.
+     * @return images configuration or null if it has not been loaded yet (see preload).
+     */
+    public static ImagesConfiguration peekConfiguration() {
+        return sConfiguration;
+    }
+
+    /**
+     * This method resolves cached configuration without reading preferences in calling thread.
+     * If it is in memory, callback is invoked at once, otherwise it is read in background and
+     * callback is invoked in UI thread when it is ready.
+     * @param context
+     * @param callback
+     * @return task that reads the configuration, so it can be cancelled, or null if callback has
+     * been already invoked.
+     */
+    public static TaskScheduler.Task<ImagesConfiguration> resolveConfiguration(Context context,
+                                                                              final ConfigurationCallback callback) {
+        ImagesConfiguration configuration = sConfiguration;
+        if (configuration != null || sLoaded) {
+            callback.onConfigurationResolved(configuration);
+            return null;
+        }
+        final Context appContext = context.getApplicationContext();
+        return TaskScheduler.submit(TaskScheduler.LANE_UI, new TaskScheduler.Task<ImagesConfiguration>() {
+            @Override
+            protected ImagesConfiguration doInBackground() {
+                return getCachedConfiguration(appContext);
+            }
+
+            @Override
+            protected void onComplete(ImagesConfiguration configuration) {
+                callback.onConfigurationResolved(configuration);
+            }
+        });
+    }
+
+    /**
+     * This method returns a valid images configuration, it requests it to the server only if
+     * cached one has expired. If request fails, it will return the expired one if there is any.
+     * Concurrent callers wait for the same request instead of repeating it.
+     * Warning, it could use network and read preferences in calling thread, so never call it
+     * in UI thread.
+     * @param context
+     * @return images configuration.
+     * @throws TMDbException if there is no cached configuration and it could not be fetched.
+     */
+    public static ImagesConfiguration getConfiguration(Context context) throws TMDbException {
+        ImagesConfiguration cached = getCachedConfiguration(context);
+        if (isFresh(cached)) return cached;
+        synchronized (sFetchLock) {
+            // other thread could have fetched it while this one was waiting
+            cached = sConfiguration;
+            if (isFresh(cached)) return cached;
+            try {
+                ImagesConfiguration configuration = fetchConfiguration();
+                long now = System.currentTimeMillis();
+                PreferencesUtils.setImagesConfiguration(context, configuration, now);
+                sFetchTime = now;
+                sConfiguration = configuration;
+                return configuration;
+            } catch (TMDbException e) {
+                if (cached == null) throw e;
+                Log.d(TAG, "Could not refresh images configuration, using expired one.", e);
+                return cached;
+            }
+        }
+    }
+
+    /**
+     * This method returns cached images configuration without checking if it has expired and
+     * without using network. Warning, first time it reads preferences in calling thread, so
+     * never call it in UI thread (see peekConfiguration).
+     * @param context
+     * @return images configuration or null if there is nothing cached yet.
+     */
+    public static ImagesConfiguration getCachedConfiguration(Context context) {
+        if (!sLoaded) {
+            synchronized (sLoadLock) {
+                if (!sLoaded) {
+                    ImagesConfiguration stored = PreferencesUtils.getImagesConfiguration(context);
+                    long storedFetchTime = PreferencesUtils.getImagesConfigurationTimeInMillis(context);
+                    // fetches always load first, so none has published a configuration yet
+                    sFetchTime = storedFetchTime;
+                    sConfiguration = stored;
+                    sLoaded = true;
+                }
+            }
+        }
+        return sConfiguration;
+    }
+
+    private static boolean isFresh(ImagesConfiguration configuration) {
+        long elapsedTime = System.currentTimeMillis() - sFetchTime;
+        return configuration != null && elapsedTime >= 0 && elapsedTime <= CONFIG_TTL_MILLIS;
+    }
+
+    private static ImagesConfiguration fetchConfiguration() throws TMDbException {
+        URL configRequestUrl = TMDbNetworkUtils.buildConfigURL();
+        return TMDbNetworkUtils.processResponseFromHttpUrl(configRequestUrl,
+                new TMDbNetworkUtils.ResponseStreamHandler<ImagesConfiguration>() {
+                    @Override
+                    public ImagesConfiguration handleResponse(InputStream in, Charset charset)
+                            throws TMDbException {
+                        return TMDbJsonUtils.getImagesConfigurationFromStream(in, charset);
+                    }
+                });
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import java.util.Arrays;
+
+/**
+ * This class is a hash set of positive int values (like movie identifiers). Values are stored
+ * in a primitive array with open addressing, so it does not box them and every operation takes
+ * constant time on average. It is not thread safe.
+ */
+public class IntHashSet {
+
+    /** Marker of free slots, it is not a valid value */
+    private static final int FREE = 0;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] mSlots;
+    private int mSize;
+
+    public IntHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of values that will be stored without resizing.
+     */
+    public IntHashSet(int expectedSize) {
+        mSlots = new int[capacityFor(expectedSize)];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param value
+     * @return true if set contains given value.
+     */
+    public boolean contains(int value) {
+        if (value <= FREE) return false;
+        return mSlots[findSlot(mSlots, value)] == value;
+    }
+
+    /**
+     * @param value positive value.
+     * @return true if it was added, false if it was already contained.
+     */
+    public boolean add(int value) {
+        if (value <= FREE) throw new IllegalArgumentException("Value must be positive: " + value);
+        int slot = findSlot(mSlots, value);
+        if (mSlots[slot] == value) return false;
+        mSlots[slot] = value;
+        mSize++;
+        // keep load factor under 0.5, so probing sequences are short
+        if (mSize * 2 > mSlots.length) resize(mSlots.length * 2);
+        return true;
+    }
+
+    /**
+     * @param value
+     * @return true if it was removed, false if it was not contained.
+     */
+    public boolean remove(int value) {
+        if (value <= FREE) return false;
+        int slot = findSlot(mSlots, value);
+        if (mSlots[slot] != value) return false;
+        mSlots[slot] = FREE;
+        mSize--;
+        // move back following values of the probing sequence, so they can be found again
+        int mask = mSlots.length - 1;
+        int next = (slot + 1) & mask;
+        while (mSlots[next] != FREE) {
+            int moved = mSlots[next];
+            mSlots[next] = FREE;
+            mSlots[findSlot(mSlots, moved)] = moved;
+            next = (next + 1) & mask;
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(mSlots, FREE);
+        mSize = 0;
+    }
+
+    /**
+     * @return slot that contains given value or the free slot where it would be stored.
+     */
+    private static int findSlot(int[] slots, int value) {
+        int mask = slots.length - 1;
+        int slot = mix(value) & mask;
+        while (slots[slot] != FREE && slots[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        int[] slots = new int[capacity];
+        for (int value : mSlots) {
+            if (value != FREE) slots[findSlot(slots, value)] = value;
+        }
+        mSlots = slots;
+    }
+
+    private static int mix(int value) {
+        // spread consecutive identifiers over the table
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) capacity <<= 1;
+        return capacity;
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.os.RemoteException;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.github.nfdz.popularmovies.data.MovieContract;
+import io.github.nfdz.popularmovies.data.MovieContract.MovieExtrasEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.ReviewEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.VideoEntry;
+import io.github.nfdz.popularmovies.types.MovieReview;
+
+/**
+ * These utilities retrieve reviews and videos of movies. They are stored in the provider and
+ * they are only requested to TMDb when stored ones are stale (or have never been retrieved).
+ * If TMDb can not be reached, stale stored ones are returned. Warning, every method blocks
+ * calling thread.
+ */
+public class MovieExtrasUtils {
+
+    private static final String TAG = MovieExtrasUtils.class.getSimpleName();
+
+    private static final String ERROR_FETCH_REVIEWS = "There was an error retrieving movie reviews. ";
+    private static final String ERROR_FETCH_VIDEOS = "There was an error retrieving movie videos. ";
+    private static final String ERROR_STORE = "There was an error storing movie extras.";
+
+    /** Time that stored reviews are fresh */
+    public static final long REVIEWS_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /** Time that stored videos are fresh */
+    public static final long VIDEOS_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /** Flags of stale extras */
+    public static final int STALE_REVIEWS = 1;
+    public static final int STALE_VIDEOS = 1 << 1;
+
+    private static final String[] REVIEWS_PROJECTION = {
+            ReviewEntry.COLUMN_AUTHOR,
+            ReviewEntry.COLUMN_CONTENT,
+            ReviewEntry.COLUMN_URL
+    };
+    private static final int INDEX_REVIEW_AUTHOR = 0;
+    private static final int INDEX_REVIEW_CONTENT = 1;
+    private static final int INDEX_REVIEW_URL = 2;
+
+    private static final String[] VIDEOS_PROJECTION = {
+            VideoEntry.COLUMN_NAME,
+            VideoEntry.COLUMN_URL
+    };
+    private static final int INDEX_VIDEO_NAME = 0;
+    private static final int INDEX_VIDEO_URL = 1;
+
+    private static final String[] STORED_TIMES_PROJECTION = {
+            MovieExtrasEntry.COLUMN_MOVIE_ID,
+            MovieExtrasEntry.COLUMN_REVIEWS_TIME,
+            MovieExtrasEntry.COLUMN_VIDEOS_TIME
+    };
+    private static final int INDEX_TIMES_MOVIE_ID = 0;
+    private static final int INDEX_TIMES_REVIEWS = 1;
+    private static final int INDEX_TIMES_VIDEOS = 2;
+
+    /**
+     * This method retrieves reviews of given movie.
+     * @param context
+     * @param movieId
+     * @return reviews or null if they could not be retrieved.
+     */
+    public static List<MovieReview> getReviews(Context context, int movieId) {
+        Long storedTime = queryStoredTime(context, movieId, MovieExtrasEntry.COLUMN_REVIEWS_TIME);
+        if (isFresh(storedTime, REVIEWS_TTL_MILLIS)) return queryStoredReviews(context, movieId);
+        try {
+            return fetchReviews(context, movieId);
+        } catch (TMDbException e) {
+            Log.d(TAG, ERROR_FETCH_REVIEWS, e);
+            return storedTime != null ? queryStoredReviews(context, movieId) : null;
+        }
+    }
+
+    /**
+     * This method retrieves videos of given movie.
+     * @param context
+     * @param movieId
+     * @return map with video name as key and video path as value, or null if they could not be
+     * retrieved.
+     */
+    public static Map<String, String> getVideos(Context context, int movieId) {
+        Long storedTime = queryStoredTime(context, movieId, MovieExtrasEntry.COLUMN_VIDEOS_TIME);
+        if (isFresh(storedTime, VIDEOS_TTL_MILLIS)) return queryStoredVideos(context, movieId);
+        try {
+            return fetchVideos(context, movieId);
+        } catch (TMDbException e) {
+            Log.d(TAG, ERROR_FETCH_VIDEOS, e);
+            return storedTime != null ? queryStoredVideos(context, movieId) : null;
+        }
+    }
+
+    /**
+     * This method checks stored extras of given movies with one query.
+     * @param context
+     * @param movieIds
+     * @return stale flags (STALE_REVIEWS and STALE_VIDEOS) by movie identifier. Movies whose
+     * extras are fresh are not included.
+     */
+    public static SparseIntArray queryStaleExtras(Context context, Collection<Integer> movieIds) {
+        SparseIntArray staleExtras = new SparseIntArray(movieIds.size());
+        // every extra is stale until its stored time is found
+        for (int movieId : movieIds) staleExtras.put(movieId, STALE_REVIEWS | STALE_VIDEOS);
+        if (movieIds.isEmpty()) return staleExtras;
+
+        StringBuilder selection = new StringBuilder(MovieExtrasEntry.COLUMN_MOVIE_ID).append(" IN (");
+        boolean first = true;
+        for (int movieId : movieIds) {
+            if (!first) selection.append(',');
+            selection.append(movieId);
+            first = false;
+        }
+        selection.append(')');
+        Cursor cursor = context.getContentResolver().query(MovieExtrasEntry.CONTENT_URI,
+                STORED_TIMES_PROJECTION,
+                selection.toString(),
+                null,
+                null);
+        if (cursor == null) return staleExtras;
+        try {
+            while (cursor.moveToNext()) {
+                int flags = 0;
+                if (!isFresh(getStoredTime(cursor, INDEX_TIMES_REVIEWS), REVIEWS_TTL_MILLIS)) {
+                    flags |= STALE_REVIEWS;
+                }
+                if (!isFresh(getStoredTime(cursor, INDEX_TIMES_VIDEOS), VIDEOS_TTL_MILLIS)) {
+                    flags |= STALE_VIDEOS;
+                }
+                int movieId = cursor.getInt(INDEX_TIMES_MOVIE_ID);
+                if (flags == 0) {
+                    staleExtras.delete(movieId);
+                } else {
+                    staleExtras.put(movieId, flags);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return staleExtras;
+    }
+
+    private static Long getStoredTime(Cursor cursor, int timeColumnIndex) {
+        return cursor.isNull(timeColumnIndex) ? null : cursor.getLong(timeColumnIndex);
+    }
+
+    /**
+     * This method requests reviews of given movie to TMDb and stores them.
+     * @param context
+     * @param movieId
+     * @return fetched reviews.
+     * @throws TMDbException if they could not be fetched.
+     */
+    public static List<MovieReview> fetchReviews(Context context, int movieId) throws TMDbException {
+        List<MovieReview> reviews = downloadReviews(movieId);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        addReviewsOperations(movieId, reviews, operations);
+        applyOperations(context, operations);
+        return reviews;
+    }
+
+    /**
+     * This method requests videos of given movie to TMDb and stores them.
+     * @param context
+     * @param movieId
+     * @return map with video name as key and video path as value.
+     * @throws TMDbException if they could not be fetched.
+     */
+    public static Map<String, String> fetchVideos(Context context, int movieId) throws TMDbException {
+        Map<String, String> videos = downloadVideos(movieId);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        addVideosOperations(movieId, videos, operations);
+        applyOperations(context, operations);
+        return videos;
+    }
+
+    /**
+     * This method requests reviews of given movie to TMDb. It does not store them.
+     * @param movieId
+     * @return reviews.
+     * @throws TMDbException if they could not be fetched.
+     */
+    public static List<MovieReview> downloadReviews(int movieId) throws TMDbException {
+        URL reviewsURL = TMDbNetworkUtils.buildMovieReviewsURL(movieId);
+        return TMDbNetworkUtils.processResponseFromHttpUrl(reviewsURL,
+                new TMDbNetworkUtils.ResponseStreamHandler<List<MovieReview>>() {
+                    @Override
+                    public List<MovieReview> handleResponse(InputStream in, Charset charset)
+                            throws TMDbException {
+                        return TMDbJsonUtils.getReviewsFromStream(in, charset);
+                    }
+                });
+    }
+
+    /**
+     * This method requests videos of given movie to TMDb. It does not store them.
+     * @param movieId
+     * @return map with video name as key and video path as value.
+     * @throws TMDbException if they could not be fetched.
+     */
+    public static Map<String, String> downloadVideos(int movieId) throws TMDbException {
+        URL videosURL = TMDbNetworkUtils.buildMovieVideosURL(movieId);
+        return TMDbNetworkUtils.processResponseFromHttpUrl(videosURL,
+                new TMDbNetworkUtils.ResponseStreamHandler<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> handleResponse(InputStream in, Charset charset)
+                            throws TMDbException {
+                        return TMDbJsonUtils.getVideosFromStream(in, charset);
+                    }
+                });
+    }
+
+    /**
+     * This method adds the provider operations that replace stored reviews of given movie.
+     * @param movieId
+     * @param reviews
+     * @param operations list where operations are added.
+     */
+    public static void addReviewsOperations(int movieId,
+                                            List<MovieReview> reviews,
+                                            List<ContentProviderOperation> operations) {
+        operations.add(ContentProviderOperation
+                .newDelete(ReviewEntry.buildUriWithMovieId(movieId))
+                .build());
+        for (int i = 0; i < reviews.size(); i++) {
+            MovieReview review = reviews.get(i);
+            operations.add(ContentProviderOperation
+                    .newInsert(ReviewEntry.CONTENT_URI)
+                    .withValue(ReviewEntry.COLUMN_MOVIE_ID, movieId)
+                    .withValue(ReviewEntry.COLUMN_POSITION, i)
+                    .withValue(ReviewEntry.COLUMN_AUTHOR, review.getAuthor())
+                    .withValue(ReviewEntry.COLUMN_CONTENT, review.getContent())
+                    .withValue(ReviewEntry.COLUMN_URL, review.getUrl())
+                    .build());
+        }
+        operations.add(buildStoredTimeOperation(movieId, MovieExtrasEntry.COLUMN_REVIEWS_TIME));
+    }
+
+    /**
+     * This method adds the provider operations that replace stored videos of given movie.
+     * @param movieId
+     * @param videos map with video name as key and video path as value.
+     * @param operations list where operations are added.
+     */
+    public static void addVideosOperations(int movieId,
+                                           Map<String, String> videos,
+                                           List<ContentProviderOperation> operations) {
+        operations.add(ContentProviderOperation
+                .newDelete(VideoEntry.buildUriWithMovieId(movieId))
+                .build());
+        int position = 0;
+        for (Map.Entry<String, String> video : videos.entrySet()) {
+            operations.add(ContentProviderOperation
+                    .newInsert(VideoEntry.CONTENT_URI)
+                    .withValue(VideoEntry.COLUMN_MOVIE_ID, movieId)
+                    .withValue(VideoEntry.COLUMN_POSITION, position++)
+                    .withValue(VideoEntry.COLUMN_NAME, video.getKey())
+                    .withValue(VideoEntry.COLUMN_URL, video.getValue())
+                    .build());
+        }
+        operations.add(buildStoredTimeOperation(movieId, MovieExtrasEntry.COLUMN_VIDEOS_TIME));
+    }
+
+    private static ContentProviderOperation buildStoredTimeOperation(int movieId, String timeColumn) {
+        ContentValues values = new ContentValues();
+        values.put(MovieExtrasEntry.COLUMN_MOVIE_ID, movieId);
+        values.put(timeColumn, System.currentTimeMillis());
+        // provider updates the row if it already exists
+        return ContentProviderOperation
+                .newInsert(MovieExtrasEntry.CONTENT_URI)
+                .withValues(values)
+                .build();
+    }
+
+    /**
+     * This method applies given provider operations in one transaction.
+     * @param context
+     * @param operations
+     * @return true if they were applied, false if not.
+     */
+    public static boolean applyOperations(Context context, ArrayList<ContentProviderOperation> operations) {
+        try {
+            context.getContentResolver().applyBatch(MovieContract.CONTENT_AUTHORITY, operations);
+            return true;
+        } catch (RemoteException | OperationApplicationException | SQLException e) {
+            // fetched data is still valid, it will be fetched again next time
+            Log.e(TAG, ERROR_STORE, e);
+            return false;
+        }
+    }
+
+    private static boolean isFresh(Long storedTime, long ttlMillis) {
+        if (storedTime == null) return false;
+        long elapsedTime = System.currentTimeMillis() - storedTime;
+        return elapsedTime >= 0 && elapsedTime < ttlMillis;
+    }
+
+    private static Long queryStoredTime(Context context, int movieId, String timeColumn) {
+        Cursor cursor = context.getContentResolver().query(MovieExtrasEntry.buildUriWithMovieId(movieId),
+                new String[]{ timeColumn },
+                null,
+                null,
+                null);
+        if (cursor == null) return null;
+        try {
+            int timeColumnIndex = 0;
+            if (!cursor.moveToFirst() || cursor.isNull(timeColumnIndex)) return null;
+            return cursor.getLong(timeColumnIndex);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<MovieReview> queryStoredReviews(Context context, int movieId) {
+        Cursor cursor = context.getContentResolver().query(ReviewEntry.buildUriWithMovieId(movieId),
+                REVIEWS_PROJECTION,
+                null,
+                null,
+                ReviewEntry.COLUMN_POSITION + " ASC");
+        if (cursor == null) return null;
+        try {
+            List<MovieReview> reviews = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                reviews.add(new MovieReview(cursor.getString(INDEX_REVIEW_AUTHOR),
+                        cursor.getString(INDEX_REVIEW_CONTENT),
+                        cursor.getString(INDEX_REVIEW_URL)));
+            }
+            return reviews;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static Map<String, String> queryStoredVideos(Context context, int movieId) {
+        Cursor cursor = context.getContentResolver().query(VideoEntry.buildUriWithMovieId(movieId),
+                VIDEOS_PROJECTION,
+                null,
+                null,
+                VideoEntry.COLUMN_POSITION + " ASC");
+        if (cursor == null) return null;
+        try {
+            Map<String, String> videos = new LinkedHashMap<>();
+            while (cursor.moveToNext()) {
+                videos.put(cursor.getString(INDEX_VIDEO_NAME), cursor.getString(INDEX_VIDEO_URL));
+            }
+            return videos;
+        } finally {
+            cursor.close();
+        }
+    }
+}
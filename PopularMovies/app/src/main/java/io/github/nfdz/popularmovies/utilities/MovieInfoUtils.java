@@ -5,6 +5,7 @@ package io.github.nfdz.popularmovies.utilities;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.text.TextUtils;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -26,8 +27,8 @@ public class MovieInfoUtils {
             MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_RELEASE_DATE,
             MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_RATING,
             MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_SYNOPSIS,
-            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_POSTER_PATHS,
-            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_BACKDROP_PATHS
+            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_POSTER_KEY,
+            MovieContract.MovieEntry.TABLE_NAME + "." + MovieContract.MovieEntry.COLUMN_BACKDROP_KEY
     };
 
     // Indexes for MOVIES_PROJECTION
@@ -36,10 +37,8 @@ public class MovieInfoUtils {
     public static final int INDEX_MOVIE_RELEASE_DATE = 2;
     public static final int INDEX_MOVIE_RATING = 3;
     public static final int INDEX_MOVIE_SYNOPSIS = 4;
-    public static final int INDEX_MOVIE_POSTER_PATHS = 5;
-    public static final int INDEX_MOVIE_BACKDROP_PATHS = 6;
-
-    public static final String PATHS_SEPARATOR = ";";
+    public static final int INDEX_MOVIE_POSTER_KEY = 5;
+    public static final int INDEX_MOVIE_BACKDROP_KEY = 6;
 
     /**
      * Extract MovieInfo objects contained in given cursor. It is important that cursor has
@@ -52,48 +51,43 @@ public class MovieInfoUtils {
         cursor.moveToFirst();
         cursor.moveToPrevious();
         while (cursor.moveToNext()) {
-            int id = cursor.getInt(INDEX_MOVIE_ID);
-            String title = cursor.getString(INDEX_MOVIE_TITLE);
-            String releaseDate = cursor.getString(INDEX_MOVIE_RELEASE_DATE);
-            double rating = cursor.getDouble(INDEX_MOVIE_RATING);
-            String synopsis = cursor.getString(INDEX_MOVIE_SYNOPSIS);
-            String mergedPosterPaths = cursor.getString(INDEX_MOVIE_POSTER_PATHS);
-            String[] posterPaths = splitPaths(mergedPosterPaths);
-            String mergedBackdropPaths = cursor.getString(INDEX_MOVIE_BACKDROP_PATHS);
-            String[] backdropPaths = splitPaths(mergedBackdropPaths);
-            movies.put(id, new MovieInfo(id,
-                                         title,
-                                         releaseDate,
-                                         rating,
-                                         synopsis,
-                                         posterPaths,
-                                         backdropPaths));
+            MovieInfo movie = getMovieFromCursor(cursor);
+            movies.put(movie.getMovieId(), movie);
         }
         return movies;
     }
 
     /**
-     * This method split an array of path joined in one string to store to accomplish with
-     * data contract.
-     * @param mergedPaths
-     * @return An array with paths.
+     * Extract MovieInfo object of current row of given cursor. It is important that cursor has
+     * expected projection MOVIES_PROJECTION.
+     * @param cursor
+     * @return movie info.
      */
-    public static String[] splitPaths(String mergedPaths) {
-        return mergedPaths.split(PATHS_SEPARATOR);
+    public static MovieInfo getMovieFromCursor(Cursor cursor) {
+        return new MovieInfo(cursor.getInt(INDEX_MOVIE_ID),
+                cursor.getString(INDEX_MOVIE_TITLE),
+                cursor.getString(INDEX_MOVIE_RELEASE_DATE),
+                cursor.getDouble(INDEX_MOVIE_RATING),
+                cursor.getString(INDEX_MOVIE_SYNOPSIS),
+                cursor.getString(INDEX_MOVIE_POSTER_KEY),
+                cursor.getString(INDEX_MOVIE_BACKDROP_KEY));
     }
 
     /**
-     * This method join an array of paths in one string to store to accomplish with data contract.
-     * @param paths
-     * @return string with joined paths.
+     * This method checks if both given movies contain the same data. Note that MovieInfo equals
+     * method only compares movie identifiers.
+     * @param movie
+     * @param other
+     * @return true if every field is equal, false if not.
      */
-    public static String mergePaths(String[] paths) {
-        StringBuilder mergedPaths = new StringBuilder();
-        for (String path : paths) {
-            mergedPaths.append(path);
-            mergedPaths.append(PATHS_SEPARATOR);
-        }
-        return mergedPaths.toString();
+    public static boolean hasSameContent(MovieInfo movie, MovieInfo other) {
+        return movie.getMovieId() == other.getMovieId() &&
+                Double.compare(movie.getRating(), other.getRating()) == 0 &&
+                TextUtils.equals(movie.getTitle(), other.getTitle()) &&
+                TextUtils.equals(movie.getReleaseDate(), other.getReleaseDate()) &&
+                TextUtils.equals(movie.getSynopsis(), other.getSynopsis()) &&
+                TextUtils.equals(movie.getPosterKey(), other.getPosterKey()) &&
+                TextUtils.equals(movie.getBackdropKey(), other.getBackdropKey());
     }
 
     /**
@@ -108,8 +102,8 @@ public class MovieInfoUtils {
         values.put(MovieContract.MovieEntry.COLUMN_RELEASE_DATE, movie.getReleaseDate());
         values.put(MovieContract.MovieEntry.COLUMN_RATING, movie.getRating());
         values.put(MovieContract.MovieEntry.COLUMN_SYNOPSIS, movie.getSynopsis());
-        values.put(MovieContract.MovieEntry.COLUMN_POSTER_PATHS, mergePaths(movie.getPosterPaths()));
-        values.put(MovieContract.MovieEntry.COLUMN_BACKDROP_PATHS, mergePaths(movie.getBackdropPaths()));
+        values.put(MovieContract.MovieEntry.COLUMN_POSTER_KEY, movie.getPosterKey());
+        values.put(MovieContract.MovieEntry.COLUMN_BACKDROP_KEY, movie.getBackdropKey());
         return values;
     }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * These utilities read HTTP response bodies using a small pool of reusable byte buffers. Bodies
+ * can be consumed as a buffered stream or read entirely as bytes or a String. When the length
+ * of the body is known, the result array is allocated once with its exact size.
+ */
+public class ResponseBodyReader {
+
+    /** Charset used when response does not declare any (JSON default one) */
+    public static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+    /** Size of every pooled buffer */
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    /** Maximum number of idle buffers kept in the pool */
+    private static final int MAX_POOLED_BUFFERS = 8;
+
+    /** Bodies declaring a bigger length are not presized (a wrong header must not exhaust memory) */
+    private static final int MAX_PRESIZED_LENGTH = 4 * 1024 * 1024;
+
+    private static final String CHARSET_PARAM = "charset=";
+
+    private static final Deque<byte[]> sBufferPool = new ArrayDeque<>();
+
+    /**
+     * This method takes a buffer from the pool or creates a new one if pool is empty.
+     * @return buffer of BUFFER_SIZE bytes.
+     */
+    static byte[] acquireBuffer() {
+        synchronized (sBufferPool) {
+            byte[] buffer = sBufferPool.pollFirst();
+            if (buffer != null) return buffer;
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * This method gives back a buffer to the pool. It must not be used anymore by the caller.
+     * @param buffer
+     */
+    static void releaseBuffer(byte[] buffer) {
+        if (buffer == null || buffer.length != BUFFER_SIZE) return;
+        synchronized (sBufferPool) {
+            if (sBufferPool.size() < MAX_POOLED_BUFFERS) sBufferPool.addFirst(buffer);
+        }
+    }
+
+    /**
+     * This method wraps given stream with a buffered one that uses a pooled buffer. The buffer
+     * goes back to the pool when returned stream is closed.
+     * @param in
+     * @return buffered stream.
+     */
+    public static InputStream buffered(InputStream in) {
+        return new PooledBufferedInputStream(in);
+    }
+
+    /**
+     * This method reads the entire given stream. It does not close it.
+     * @param in
+     * @param contentLength length of the body in bytes or -1 if it is unknown.
+     * @return body bytes.
+     * @throws IOException if stream could not be read or it ends before declared length.
+     */
+    public static byte[] readBytes(InputStream in, long contentLength) throws IOException {
+        if (contentLength >= 0 && contentLength <= MAX_PRESIZED_LENGTH) {
+            return readKnownLength(in, (int) contentLength);
+        }
+        return readUnknownLength(in, new ByteArrayOutputStream(BUFFER_SIZE));
+    }
+
+    /**
+     * This method reads the entire given stream and decodes it. It does not close it.
+     * @param in
+     * @param contentLength length of the body in bytes or -1 if it is unknown.
+     * @param charset charset of the body, if it is null DEFAULT_CHARSET is used.
+     * @return body text.
+     * @throws IOException if stream could not be read or it ends before declared length.
+     */
+    public static String readString(InputStream in, long contentLength, Charset charset) throws IOException {
+        byte[] body = readBytes(in, contentLength);
+        return new String(body, charset != null ? charset : DEFAULT_CHARSET);
+    }
+
+    /**
+     * This method extracts the charset of given Content-Type header value.
+     * @param contentType header value, it could be null.
+     * @return declared charset or DEFAULT_CHARSET if it is not declared or not supported.
+     */
+    public static Charset charsetFromContentType(String contentType) {
+        if (contentType == null) return DEFAULT_CHARSET;
+        for (String param : contentType.split(";")) {
+            String trimmedParam = param.trim();
+            if (trimmedParam.regionMatches(true, 0, CHARSET_PARAM, 0, CHARSET_PARAM.length())) {
+                String name = trimmedParam.substring(CHARSET_PARAM.length()).replace("\"", "").trim();
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalArgumentException e) {
+                    // illegal or unsupported charset name
+                    return DEFAULT_CHARSET;
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+
+    private static byte[] readKnownLength(InputStream in, int length) throws IOException {
+        byte[] body = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(body, offset, length - offset);
+            if (read == -1) throw new EOFException("Body ended after " + offset + " of " + length + " bytes.");
+            offset += read;
+        }
+        // declared length could be wrong, keep reading if there is anything else
+        int next = in.read();
+        if (next == -1) return body;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length + BUFFER_SIZE);
+        out.write(body, 0, length);
+        out.write(next);
+        return readUnknownLength(in, out);
+    }
+
+    private static byte[] readUnknownLength(InputStream in, ByteArrayOutputStream out) throws IOException {
+        byte[] buffer = acquireBuffer();
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Buffered stream whose buffer is taken from the pool and given back on close.
+     */
+    private static class PooledBufferedInputStream extends FilterInputStream {
+
+        private byte[] mBuffer;
+        private int mPosition;
+        private int mCount;
+
+        PooledBufferedInputStream(InputStream in) {
+            super(in);
+            mBuffer = acquireBuffer();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (mPosition >= mCount && !fill()) return -1;
+            return mBuffer[mPosition++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (mPosition >= mCount) {
+                ensureOpen();
+                // big reads go straight to the source, there is no point in copying them twice
+                if (len >= mBuffer.length) return in.read(b, off, len);
+                if (!fill()) return -1;
+            }
+            int count = Math.min(len, mCount - mPosition);
+            System.arraycopy(mBuffer, mPosition, b, off, count);
+            mPosition += count;
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            ensureOpen();
+            return (mCount - mPosition) + in.available();
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            ensureOpen();
+            long buffered = mCount - mPosition;
+            if (buffered <= 0) return in.skip(n);
+            long skipped = Math.min(buffered, n);
+            mPosition += (int) skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mBuffer == null) return;
+            byte[] buffer = mBuffer;
+            mBuffer = null;
+            mPosition = mCount = 0;
+            releaseBuffer(buffer);
+            super.close();
+        }
+
+        private boolean fill() throws IOException {
+            ensureOpen();
+            int read = in.read(mBuffer, 0, mBuffer.length);
+            if (read <= 0) return false;
+            mPosition = 0;
+            mCount = read;
+            return true;
+        }
+
+        private void ensureOpen() throws IOException {
+            if (mBuffer == null) throw new IOException("Stream closed.");
+        }
+    }
+}
@@ -4,74 +4,88 @@
 package io.github.nfdz.popularmovies.utilities;
 
 
-import android.net.Uri;
 import android.util.Log;
 
-import java.util.List;
-import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Arrays;
+
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
 
 public class TMDBImagesUtils {
 
     private static final String TAG = TMDBImagesUtils.class.getSimpleName();
 
-    private static final String ERROR_PROCESSING_IMAGE_PATH = "Image path URI does not match with expected pattern: ";
+    private static final String ERROR_PROCESSING_IMAGE_SIZES = "Image sizes do not match with expected pattern: ";
+
+    /** Posters and backdrops have different sizes, and configuration could change while running */
+    private static final int MAX_CACHED_INDEXES = 4;
+
+    /** Cached size indexes, most recently built first */
+    private static volatile ImageSizeIndex[] sIndexes = new ImageSizeIndex[0];
+
+    public static String resolvePosterUrl(ImagesConfiguration config, String posterKey, int minSize) {
+        if (config == null) return null;
+        return resolveImageUrl(config.getBaseUrl(), config.getPosterSizes(), posterKey, minSize);
+    }
+
+    public static String resolveBackdropUrl(ImagesConfiguration config, String backdropKey, int minSize) {
+        if (config == null) return null;
+        return resolveImageUrl(config.getBaseUrl(), config.getBackdropSizes(), backdropKey, minSize);
+    }
 
     /**
-     * This method computes given array of image paths studying each width size and chooses
-     * the first one that is equals or bigger than the given minimum width size.
-     * If it is impossible, it will return the bigger one (usually the original one).
-     * If given array is empty, it will return null.
-     * It does not use any network connection and do not download any image.
+     * This method chooses the first size that is bigger than the given minimum width size and
+     * builds the URL of given image with it.
+     * If it is impossible or there is no image, it will return null.
+     * It does not use any network connection and do not download any image. Sizes are indexed
+     * once, so only the returned URL is allocated.
      * TMBD images has following scheme:
      * https://image.tmdb.org/t/p/{size}/{image_res}
      * Size could be any number after 'w' char, for example 'w640', or 'original'.
-     * @param imagePaths
+     * @param baseUrl
+     * @param sizes
+     * @param imageKey
      * @param minSize
-     * @return image path
+     * @return image URL
      */
-    public static String resolveImagePath(String[] imagePaths, int minSize) {
-
-        if (imagePaths == null || imagePaths.length == 0) return null;
-
-        // build a sorted map width-path because array could not be sorted
-        SortedMap<Integer, String> map = new TreeMap<>();
-
-        for (String imagePath : imagePaths) {
-            Uri imageUri = Uri.parse(imagePath);
-            List<String> pathSegments = imageUri.getPathSegments();
-            if (pathSegments.size() < 2) {
-                Log.e(TAG, ERROR_PROCESSING_IMAGE_PATH + imagePath);
-                return null;
-            }
-            String sizeSegment = pathSegments.get(pathSegments.size() - 2);
-            if (sizeSegment.startsWith("w")) {
-                String widthStr = sizeSegment.substring(1, sizeSegment.length());
-                int width = Integer.parseInt(widthStr);
-                map.put(width, imagePath);
-            } else if (sizeSegment.equals("original")) {
-                // save as max integer
-                map.put(Integer.MAX_VALUE, imagePath);
-            } else {
-                Log.e(TAG, ERROR_PROCESSING_IMAGE_PATH + imagePath);
-                return null;
-            }
+    private static String resolveImageUrl(String baseUrl, String[] sizes, String imageKey, int minSize) {
+
+        if (imageKey == null || sizes == null || sizes.length == 0) return null;
+
+        ImageSizeIndex index = getSizeIndex(sizes);
+        if (index == null) {
+            Log.e(TAG, ERROR_PROCESSING_IMAGE_SIZES + Arrays.toString(sizes));
+            return null;
         }
 
-        // returns the first image path that meets with minSize
-        String imagePath = null;
-        for (Map.Entry<Integer,String> entry : map.entrySet()) {
-            if (entry.getKey() > minSize) {
-                imagePath = entry.getValue();
-                break;
-            }
+        // returns the first size that meets with minSize
+        int position = index.resolvePosition(minSize);
+        if (position < 0) {
+            Log.e(TAG, "Can not resolve image size for this min size = " + minSize +
+                    ", and this array of sizes = " + Arrays.toString(sizes));
+            return null;
         }
+        return baseUrl + sizes[position] + imageKey;
+    }
 
-        if (imagePath == null) {
-            Log.e(TAG, "Can not resolve image path for this min size = " + minSize +
-                    ", and this array of images = " + imagePaths);
+    /**
+     * This method returns a cached index of given sizes. Indexes are only built when there is
+     * no one yet or images configuration changes.
+     * @param sizes
+     * @return index or null if sizes do not match with expected pattern.
+     */
+    private static ImageSizeIndex getSizeIndex(String[] sizes) {
+        ImageSizeIndex[] indexes = sIndexes;
+        for (ImageSizeIndex index : indexes) {
+            if (index.isIndexOf(sizes)) return index;
         }
-        return imagePath;
+        ImageSizeIndex index = ImageSizeIndex.build(sizes);
+        if (index == null) return null;
+        // copy on write, most recent index first and the oldest one is discarded if it is full
+        int cachedCount = Math.min(indexes.length, MAX_CACHED_INDEXES - 1);
+        ImageSizeIndex[] newIndexes = new ImageSizeIndex[cachedCount + 1];
+        newIndexes[0] = index;
+        System.arraycopy(indexes, 0, newIndexes, 1, cachedCount);
+        sIndexes = newIndexes;
+        return index;
     }
 }
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class is the HTTP layer used to communicate with TMDb servers. Connections are never
+ * disconnected explicitly, response bodies are fully consumed and closed instead, so the
+ * underlying sockets go back to the keep-alive pool and next requests reuse them. It asks for
+ * compressed responses and supports conditional requests using ETag and Last-Modified
+ * validators.
+ */
+public class TMDbHttpClient {
+
+    // Error message strings
+    private static final String ERROR_CONN = "There was an error with network connection. ";
+    private static final String ERROR_STATUS = "Unexpected HTTP response status: ";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int READ_TIMEOUT_MILLIS = 20000;
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final int GZIP_BUFFER_SIZE = 4 * 1024;
+    private static final int UNKNOWN_LENGTH = -1;
+
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String GZIP_ENCODING = "gzip";
+
+    static {
+        // configure connection pool of HttpURLConnection
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", Integer.toString(MAX_IDLE_CONNECTIONS));
+    }
+
+    /**
+     * This class contains the validators of a response, they are used to revalidate it later.
+     */
+    public static class Validators {
+
+        private final String mETag;
+        private final String mLastModified;
+
+        public Validators(String eTag, String lastModified) {
+            mETag = eTag;
+            mLastModified = lastModified;
+        }
+
+        public String getETag() {
+            return mETag;
+        }
+
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        public boolean isEmpty() {
+            return mETag == null && mLastModified == null;
+        }
+    }
+
+    /**
+     * This class contains the result of a request.
+     * @param <T> result type of response body handler.
+     */
+    public static class Response<T> {
+
+        private final T mBody;
+        private final boolean mNotModified;
+        private final Validators mValidators;
+
+        private Response(T body, boolean notModified, Validators validators) {
+            mBody = body;
+            mNotModified = notModified;
+            mValidators = validators;
+        }
+
+        /**
+         * @return handled body or null if it was not modified.
+         */
+        public T getBody() {
+            return mBody;
+        }
+
+        /**
+         * @return true if server answered that given validators are still valid.
+         */
+        public boolean isNotModified() {
+            return mNotModified;
+        }
+
+        /**
+         * @return validators of this response (never null).
+         */
+        public Validators getValidators() {
+            return mValidators;
+        }
+    }
+
+    /**
+     * This method requests given URL and passes the body stream of the HTTP response to given
+     * handler.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @param handler Consumer of the response body stream.
+     * @return The result of the handler.
+     * @throws TMDbException Related to network and stream reading
+     */
+    public static <T> T execute(URL url, TMDbNetworkUtils.ResponseStreamHandler<T> handler) throws TMDbException {
+        return execute(url, null, handler).getBody();
+    }
+
+    /**
+     * This method requests given URL revalidating given validators. If server answers that
+     * the resource has not been modified, the handler is not invoked at all.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @param validators Validators of a previous response, it could be null.
+     * @param handler Consumer of the response body stream.
+     * @return The response.
+     * @throws TMDbException Related to network and stream reading
+     */
+    public static <T> Response<T> execute(URL url,
+                                          Validators validators,
+                                          final TMDbNetworkUtils.ResponseStreamHandler<T> handler) throws TMDbException {
+        return execute(url, validators, new BodyReader<T>() {
+            @Override
+            public T read(HttpURLConnection urlConnection, InputStream in) throws IOException, TMDbException {
+                Charset charset = ResponseBodyReader.charsetFromContentType(urlConnection.getContentType());
+                return handler.handleResponse(wrapResponseStream(urlConnection, in), charset);
+            }
+        });
+    }
+
+    /**
+     * This method requests given URL and reads the entire body of the HTTP response. Its
+     * length and charset are taken from response headers.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @return The contents of the HTTP response.
+     * @throws TMDbException Related to network and stream reading
+     */
+    public static String executeForString(URL url) throws TMDbException {
+        return execute(url, null, new BodyReader<String>() {
+            @Override
+            public String read(HttpURLConnection urlConnection, InputStream in) throws IOException {
+                Charset charset = ResponseBodyReader.charsetFromContentType(urlConnection.getContentType());
+                if (isGzipEncoded(urlConnection)) {
+                    // declared length is the compressed one
+                    InputStream gzipIn = new GZIPInputStream(new NonClosingInputStream(in), GZIP_BUFFER_SIZE);
+                    try {
+                        return ResponseBodyReader.readString(gzipIn, UNKNOWN_LENGTH, charset);
+                    } finally {
+                        gzipIn.close();
+                    }
+                }
+                return ResponseBodyReader.readString(in, urlConnection.getContentLength(), charset);
+            }
+        }).getBody();
+    }
+
+    private static <T> Response<T> execute(URL url,
+                                           Validators validators,
+                                           BodyReader<T> bodyReader) throws TMDbException {
+        InputStream in = null;
+        try {
+            HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            urlConnection.setRequestProperty(HEADER_ACCEPT_ENCODING, GZIP_ENCODING);
+            if (validators != null) {
+                if (validators.getETag() != null) {
+                    urlConnection.setRequestProperty(HEADER_IF_NONE_MATCH, validators.getETag());
+                }
+                if (validators.getLastModified() != null) {
+                    urlConnection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, validators.getLastModified());
+                }
+            }
+
+            int status = urlConnection.getResponseCode();
+            Validators responseValidators = new Validators(urlConnection.getHeaderField(HEADER_ETAG),
+                    urlConnection.getHeaderField(HEADER_LAST_MODIFIED));
+
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                in = urlConnection.getInputStream();
+                // server could send updated validators with a not modified response
+                Validators keptValidators = responseValidators.isEmpty() ? validators : responseValidators;
+                return new Response<>(null, true, keptValidators);
+            }
+
+            if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                // TMDb error responses contain a JSON with its status code, let reader check it
+                in = urlConnection.getErrorStream();
+                if (in != null) {
+                    bodyReader.read(urlConnection, in);
+                }
+                throw new TMDbException(ERROR_STATUS + status);
+            }
+
+            in = urlConnection.getInputStream();
+            T body = bodyReader.read(urlConnection, in);
+            return new Response<>(body, false, responseValidators);
+        } catch (IOException e) {
+            throw new TMDbException(ERROR_CONN, e);
+        } finally {
+            if (in != null) drainAndClose(in);
+        }
+    }
+
+    private static boolean isGzipEncoded(HttpURLConnection urlConnection) {
+        return GZIP_ENCODING.equalsIgnoreCase(urlConnection.getHeaderField(HEADER_CONTENT_ENCODING));
+    }
+
+    private static InputStream wrapResponseStream(HttpURLConnection urlConnection,
+                                                  InputStream in) throws IOException {
+        InputStream bufferedIn = ResponseBodyReader.buffered(new NonClosingInputStream(in));
+        if (isGzipEncoded(urlConnection)) {
+            return new GZIPInputStream(bufferedIn, GZIP_BUFFER_SIZE);
+        }
+        return bufferedIn;
+    }
+
+    /**
+     * This method reads the rest of the body (if any) and closes the stream. A connection can
+     * only be reused when its previous response has been fully read.
+     */
+    private static void drainAndClose(InputStream in) {
+        byte[] buffer = ResponseBodyReader.acquireBuffer();
+        try {
+            while (in.read(buffer) != -1) {
+                // discard remaining bytes
+            }
+        } catch (IOException e) {
+            // nothing to do, connection will not be reused
+        } finally {
+            ResponseBodyReader.releaseBuffer(buffer);
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * Interface that reads the body of a HTTP response with access to its headers.
+     */
+    private interface BodyReader<T> {
+        T read(HttpURLConnection urlConnection, InputStream in) throws IOException, TMDbException;
+    }
+
+    /**
+     * Handlers close the stream they consume. This wrapper ignores it, so the raw connection
+     * stream can be drained before being closed.
+     */
+    private static class NonClosingInputStream extends InputStream {
+
+        private final InputStream mIn;
+
+        NonClosingInputStream(InputStream in) {
+            mIn = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return mIn.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return mIn.read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return mIn.available();
+        }
+
+        @Override
+        public void close() {
+            // raw stream is closed by the client
+        }
+    }
+}
@@ -4,15 +4,24 @@
 package io.github.nfdz.popularmovies.utilities;
 
 
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
 import io.github.nfdz.popularmovies.types.MovieInfo;
 import io.github.nfdz.popularmovies.types.MovieReview;
 
@@ -28,6 +37,7 @@ public class TMDbJsonUtils {
     private static final String ERROR_NO_DATA = "There is no required data in JSON.";
     private static final String ERROR_API = "There is a problem with API key.";
     private static final String ERROR_RESOURCE = "There is a problem with request resource (could not be found).";
+    private static final String ERROR_STREAM = "There was an error reading JSON stream. ";
 
     // Movies JSON object nodes
     private static final String RESULTS_NODE = "results";
@@ -71,14 +81,10 @@ public class TMDbJsonUtils {
      * object that contains all information in application data model way.
      *
      * @param moviesJsonStr JSON response from server for any kind of movies request.
-     * @param posterBasePaths Configured base paths for movie images.
-     * @param backdropBasePaths Configured base paths for movie images.
      * @return List of MovieInfo objects.
      * @throws TMDbException If JSON data cannot be properly parsed.
      */
-    public static List<MovieInfo> getMoviesFromJson(String moviesJsonStr,
-                                                    String[] posterBasePaths,
-                                                    String[] backdropBasePaths) throws TMDbException {
+    public static List<MovieInfo> getMoviesFromJson(String moviesJsonStr) throws TMDbException {
         try {
             List<MovieInfo> result = new ArrayList<MovieInfo>();
             JSONObject moviesJson = new JSONObject(moviesJsonStr);
@@ -93,25 +99,17 @@ public class TMDbJsonUtils {
                 String releaseDate = movieNode.getString(RELEASE_NODE);
                 double rating = movieNode.getDouble(VOTE_AVG_NODE);
 
-                String posterRes = movieNode.getString(POSTER_NODE);
-                String[] posterPaths = new String[posterBasePaths.length];
-                for (int j = 0; j < posterBasePaths.length; j++) {
-                    posterPaths[j] = posterBasePaths[j] + posterRes;
-                }
-
-                String backdropRes = movieNode.getString(BACKDROP_AVG_NODE);
-                String[] backdropPaths = new String[backdropBasePaths.length];
-                for (int j = 0; j < backdropBasePaths.length; j++) {
-                    backdropPaths[j] = backdropBasePaths[j] + backdropRes;
-                }
+                String posterKey = movieNode.isNull(POSTER_NODE) ? null : movieNode.getString(POSTER_NODE);
+                String backdropKey = movieNode.isNull(BACKDROP_AVG_NODE) ? null :
+                        movieNode.getString(BACKDROP_AVG_NODE);
 
                 MovieInfo movie = new MovieInfo(id,
                                                 title,
                                                 releaseDate,
                                                 rating,
                                                 synopsis,
-                                                posterPaths,
-                                                backdropPaths);
+                                                posterKey,
+                                                backdropKey);
                 result.add(movie);
             }
             return result;
@@ -122,9 +120,7 @@ public class TMDbJsonUtils {
 
     private static void checkNoErrorCode(JSONObject root) throws TMDbException, JSONException {
         if (root.has(ERROR_CODE_NODE)) {
-            int errorCode = root.getInt(ERROR_CODE_NODE);
-            if (errorCode == ERROR_CODE_API) throw new TMDbException(ERROR_API);
-            if (errorCode == ERROR_CODE_RES) throw new TMDbException(ERROR_RESOURCE);
+            checkNoErrorCode(root.getInt(ERROR_CODE_NODE));
         }
     }
 
@@ -222,4 +218,388 @@ public class TMDbJsonUtils {
         }
     }
 
+    /**
+     * Interface that receives parsed movies one by one.
+     */
+    public interface MovieCallback {
+        void notifyMovie(MovieInfo movie);
+    }
+
+    /**
+     * This method parses a movies request response stream and returns a List of MovieInfo
+     * objects. It works like getMoviesFromJson but it does not need to read the whole response
+     * in memory.
+     *
+     * @param moviesJsonStream JSON response stream from server for any kind of movies request.
+     * @return List of MovieInfo objects.
+     * @throws TMDbException If JSON data cannot be properly parsed.
+     */
+    public static List<MovieInfo> getMoviesFromStream(InputStream moviesJsonStream) throws TMDbException {
+        return getMoviesFromStream(moviesJsonStream, ResponseBodyReader.DEFAULT_CHARSET);
+    }
+
+    /**
+     * This method works like getMoviesFromStream but it decodes the stream with given charset.
+     *
+     * @param moviesJsonStream JSON response stream from server for any kind of movies request.
+     * @param charset charset of the response (see ResponseBodyReader.charsetFromContentType).
+     * @return List of MovieInfo objects.
+     * @throws TMDbException If JSON data cannot be properly parsed.
+     */
+    public static List<MovieInfo> getMoviesFromStream(InputStream moviesJsonStream,
+                                                      Charset charset) throws TMDbException {
+        final List<MovieInfo> result = new ArrayList<>();
+        parseMoviesFromStream(moviesJsonStream, charset, new MovieCallback() {
+            @Override
+            public void notifyMovie(MovieInfo movie) {
+                result.add(movie);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * This method parses a movies request response stream pulling tokens one by one. Every
+     * movie is notified to given callback as soon as it is parsed and fields that are not
+     * used by the application are skipped without being decoded.
+     *
+     * @param moviesJsonStream JSON response stream from server for any kind of movies request.
+     * @param charset charset of the response (see ResponseBodyReader.charsetFromContentType).
+     * @param callback
+     * @throws TMDbException If JSON data cannot be properly parsed.
+     */
+    public static void parseMoviesFromStream(InputStream moviesJsonStream,
+                                             Charset charset,
+                                             MovieCallback callback) throws TMDbException {
+        JsonReader reader = newJsonReader(moviesJsonStream, charset);
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(RESULTS_NODE)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        callback.notifyMovie(readMovie(reader));
+                    }
+                    reader.endArray();
+                } else if (name.equals(ERROR_CODE_NODE)) {
+                    checkNoErrorCode(reader.nextInt());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new TMDbException(ERROR_STREAM, e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static MovieInfo readMovie(JsonReader reader) throws IOException, TMDbException {
+        int id = -1;
+        String synopsis = null;
+        String title = null;
+        String releaseDate = null;
+        double rating = 0;
+        String posterKey = null;
+        String backdropKey = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(ID_NODE)) {
+                id = reader.nextInt();
+            } else if (name.equals(SYNOPSIS_NODE)) {
+                synopsis = nextNullableString(reader);
+            } else if (name.equals(TITLE_NODE)) {
+                title = nextNullableString(reader);
+            } else if (name.equals(RELEASE_NODE)) {
+                releaseDate = nextNullableString(reader);
+            } else if (name.equals(VOTE_AVG_NODE)) {
+                rating = reader.nextDouble();
+            } else if (name.equals(POSTER_NODE)) {
+                posterKey = nextNullableString(reader);
+            } else if (name.equals(BACKDROP_AVG_NODE)) {
+                backdropKey = nextNullableString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == -1 || title == null || synopsis == null || releaseDate == null) {
+            throw new TMDbException(ERROR_NO_DATA);
+        }
+
+        return new MovieInfo(id,
+                             title,
+                             releaseDate,
+                             rating,
+                             synopsis,
+                             posterKey,
+                             backdropKey);
+    }
+
+    /**
+     * This method parses a configuration request response stream and returns the images
+     * configuration (base URL and available sizes of posters and backdrops).
+     *
+     * @param configJsonStream JSON response stream from server for configuration request.
+     * @return Images configuration.
+     * @throws TMDbException If JSON data cannot be properly parsed.
+     */
+    public static ImagesConfiguration getImagesConfigurationFromStream(InputStream configJsonStream)
+            throws TMDbException {
+        return getImagesConfigurationFromStream(configJsonStream, ResponseBodyReader.DEFAULT_CHARSET);
+    }
+
+    /**
+     * This method works like getImagesConfigurationFromStream but it decodes the stream with
+     * given charset.
+     *
+     * @param configJsonStream JSON response stream from server for configuration request.
+     * @param charset charset of the response (see ResponseBodyReader.charsetFromContentType).
+     * @return Images configuration.
+     * @throws TMDbException If JSON data cannot be properly parsed.
+     */
+    public static ImagesConfiguration getImagesConfigurationFromStream(InputStream configJsonStream,
+                                                                       Charset charset)
+            throws TMDbException {
+        JsonReader reader = newJsonReader(configJsonStream, charset);
+        try {
+            ImagesConfiguration configuration = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(IMAGES_NODE)) {
+                    configuration = readImagesConfiguration(reader);
+                } else if (name.equals(ERROR_CODE_NODE)) {
+                    checkNoErrorCode(reader.nextInt());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (configuration == null) throw new TMDbException(ERROR_NO_DATA);
+            return configuration;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new TMDbException(ERROR_STREAM, e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static ImagesConfiguration readImagesConfiguration(JsonReader reader)
+            throws IOException, TMDbException {
+        String baseUrl = null;
+        List<String> posterSizes = null;
+        List<String> backdropSizes = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(URL_NODE)) {
+                baseUrl = nextNullableString(reader);
+            } else if (name.equals(POSTER_SIZES_NODE)) {
+                posterSizes = readStringArray(reader);
+            } else if (name.equals(BACKDROP_SIZES_NODE)) {
+                backdropSizes = readStringArray(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (baseUrl == null || posterSizes == null || posterSizes.isEmpty() ||
+                backdropSizes == null || backdropSizes.isEmpty()) {
+            throw new TMDbException(ERROR_NO_DATA);
+        }
+        return new ImagesConfiguration(baseUrl,
+                posterSizes.toArray(new String[posterSizes.size()]),
+                backdropSizes.toArray(new String[backdropSizes.size()]));
+    }
+
+    /**
+     * This method gets and builds youtube video paths contained in given JSON stream.
+     * It ignores any other video website because it does not know how to compose the path.
+     * @param videosJsonStream
+     * @return A map with video name as key and video path as value.
+     * @throws TMDbException
+     */
+    public static Map<String, String> getVideosFromStream(InputStream videosJsonStream) throws TMDbException {
+        return getVideosFromStream(videosJsonStream, ResponseBodyReader.DEFAULT_CHARSET);
+    }
+
+    /**
+     * This method works like getVideosFromStream but it decodes the stream with given charset.
+     * @param videosJsonStream
+     * @param charset charset of the response (see ResponseBodyReader.charsetFromContentType).
+     * @return A map with video name as key and video path as value.
+     * @throws TMDbException
+     */
+    public static Map<String, String> getVideosFromStream(InputStream videosJsonStream,
+                                                          Charset charset) throws TMDbException {
+        JsonReader reader = newJsonReader(videosJsonStream, charset);
+        try {
+            // keep videos in response order
+            Map<String, String> videoPaths = new LinkedHashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(VIDEO_RESULTS_NODE)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readVideo(reader, videoPaths);
+                    }
+                    reader.endArray();
+                } else if (name.equals(ERROR_CODE_NODE)) {
+                    checkNoErrorCode(reader.nextInt());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return videoPaths;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new TMDbException(ERROR_STREAM, e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static void readVideo(JsonReader reader, Map<String, String> videoPaths) throws IOException {
+        String videoSite = null;
+        String videoName = null;
+        String videoKey = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(VIDEO_SITE_NODE)) {
+                videoSite = nextNullableString(reader);
+            } else if (name.equals(VIDEO_NAME_NODE)) {
+                videoName = nextNullableString(reader);
+            } else if (name.equals(VIDEO_KEY_NODE)) {
+                videoKey = nextNullableString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        // check that the site is youtube
+        if (YOUTUBE_SITE.equalsIgnoreCase(videoSite) && videoName != null && videoKey != null) {
+            videoPaths.put(videoName, YOUTUBE_BASE_PATH + videoKey);
+        }
+    }
+
+    /**
+     * This method gets reviews contained in given JSON stream.
+     * @param reviewsJsonStream
+     * @return A List of MovieReview.
+     * @throws TMDbException
+     */
+    public static List<MovieReview> getReviewsFromStream(InputStream reviewsJsonStream) throws TMDbException {
+        return getReviewsFromStream(reviewsJsonStream, ResponseBodyReader.DEFAULT_CHARSET);
+    }
+
+    /**
+     * This method works like getReviewsFromStream but it decodes the stream with given charset.
+     * @param reviewsJsonStream
+     * @param charset charset of the response (see ResponseBodyReader.charsetFromContentType).
+     * @return A List of MovieReview.
+     * @throws TMDbException
+     */
+    public static List<MovieReview> getReviewsFromStream(InputStream reviewsJsonStream,
+                                                         Charset charset) throws TMDbException {
+        JsonReader reader = newJsonReader(reviewsJsonStream, charset);
+        try {
+            List<MovieReview> reviews = new ArrayList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(REVIEW_RESULTS_NODE)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        reviews.add(readReview(reader));
+                    }
+                    reader.endArray();
+                } else if (name.equals(ERROR_CODE_NODE)) {
+                    checkNoErrorCode(reader.nextInt());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return reviews;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new TMDbException(ERROR_STREAM, e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static MovieReview readReview(JsonReader reader) throws IOException, TMDbException {
+        String author = null;
+        String content = null;
+        String url = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals(REVIEW_AUTHOR_NODE)) {
+                author = nextNullableString(reader);
+            } else if (name.equals(REVIEW_CONTENT_NODE)) {
+                content = nextNullableString(reader);
+            } else if (name.equals(REVIEW_URL_NODE)) {
+                url = nextNullableString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (author == null || content == null || url == null) {
+            throw new TMDbException(ERROR_NO_DATA);
+        }
+        return new MovieReview(author, content, url);
+    }
+
+    private static void checkNoErrorCode(int errorCode) throws TMDbException {
+        if (errorCode == ERROR_CODE_API) throw new TMDbException(ERROR_API);
+        if (errorCode == ERROR_CODE_RES) throw new TMDbException(ERROR_RESOURCE);
+    }
+
+    private static List<String> readStringArray(JsonReader reader) throws IOException {
+        List<String> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            values.add(reader.nextString());
+        }
+        reader.endArray();
+        return values;
+    }
+
+    private static String nextNullableString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * @param in
+     * @param charset charset of the stream, if it is null ResponseBodyReader.DEFAULT_CHARSET is used.
+     * @return reader of given JSON stream.
+     */
+    private static JsonReader newJsonReader(InputStream in, Charset charset) {
+        Charset streamCharset = charset != null ? charset : ResponseBodyReader.DEFAULT_CHARSET;
+        return new JsonReader(new InputStreamReader(in, streamCharset));
+    }
+
+    private static void closeQuietly(JsonReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
 }
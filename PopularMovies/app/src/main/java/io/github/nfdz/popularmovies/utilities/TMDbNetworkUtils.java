@@ -7,12 +7,10 @@ package io.github.nfdz.popularmovies.utilities;
 import android.net.Uri;
 import android.util.Log;
 
-import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Scanner;
 
 /**
  * These utilities will be used to communicate with the TMDb servers.
@@ -28,7 +26,6 @@ public class TMDbNetworkUtils {
 
     // Error message strings
     private static final String ERROR_URL = "There was an error building URL. ";
-    private static final String ERROR_CONN = "There was an error with network connection. ";
     private static final String ERROR_NO_DATA = "There was an error with server response. It is empty. ";
 
     // TODO: Insert your TMDb API key here
@@ -52,21 +49,38 @@ public class TMDbNetworkUtils {
 
 
     /**
-     * This method builds the URL needed to request movies list. This list depends on
+     * This method builds the URL needed to request the first page of movies list. This list
+     * depends on given sort criteria.
+     *
+     * @param criteria flag to know what URL has to request.
+     * @return The URL to use to query the movies server.
+     * @throws TMDbException Exception building URL.
+     */
+    public static URL buildMoviesURL(int criteria) throws TMDbException {
+        return buildMoviesURL(criteria, DEFAULT_PAGE);
+    }
+
+    /**
+     * This method builds the URL needed to request a page of movies list. This list depends on
      * given sort criteria.
      * For more information: https://developers.themoviedb.org/3/movies/get-popular-movies
      *
      * @param criteria flag to know what URL has to request.
+     * @param page number of page to request (first one is 1).
      * @return The URL to use to query the movies server.
      * @throws TMDbException Exception building URL.
      */
-    public static URL buildMoviesURL(int criteria) throws TMDbException {
+    public static URL buildMoviesURL(int criteria, int page) throws TMDbException {
+        return buildMoviesURL(criteria, Integer.toString(page));
+    }
+
+    private static URL buildMoviesURL(int criteria, String page) throws TMDbException {
         String baseUrl = criteria == MOST_POPULAR_FLAG ? POPULAR_MOVIES_BASE_URL
                                                        : TOP_RATED_MOVIES_BASE_URL;
         Uri builtUri = Uri.parse(baseUrl).buildUpon()
                                          .appendQueryParameter(API_KEY_PARAM, TMDB_API_KEY)
                                          .appendQueryParameter(LANGUAGE_PARAM, DEFAULT_LANG)
-                                         .appendQueryParameter(PAGE_PARAM, DEFAULT_PAGE)
+                                         .appendQueryParameter(PAGE_PARAM, page)
                                          .build();
 
         try {
@@ -158,24 +172,52 @@ public class TMDbNetworkUtils {
      * @throws TMDbException Related to network and stream reading
      */
     public static String getResponseFromHttpUrl(URL url) throws TMDbException {
-        HttpURLConnection urlConnection = null;
-        try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            InputStream in = urlConnection.getInputStream();
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
-
-            boolean hasInput = scanner.hasNext();
-            if (hasInput) {
-                return scanner.next();
-            } else {
-                throw new TMDbException(ERROR_NO_DATA);
-            }
-        } catch (IOException e) {
-            throw new TMDbException(ERROR_CONN, e);
-        } finally {
-            if (urlConnection != null) urlConnection.disconnect();
+        String response = TMDbHttpClient.executeForString(url);
+        if (response == null || response.isEmpty()) {
+            throw new TMDbException(ERROR_NO_DATA);
         }
+        return response;
+    }
+
+    /**
+     * Interface that consumes the body stream of a HTTP response. The stream has to be decoded
+     * with given charset, it is the one declared by the response Content-Type (or the JSON
+     * default one if it declares none).
+     * @param <T> result type.
+     */
+    public interface ResponseStreamHandler<T> {
+        T handleResponse(InputStream in, Charset charset) throws TMDbException;
+    }
+
+    /**
+     * This method requests given URL and passes the body stream of the HTTP response to given
+     * handler, so the response does not need to be read entirely in memory.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @param handler Consumer of the response body stream.
+     * @return The result of the handler.
+     * @throws TMDbException Related to network and stream reading
+     */
+    public static <T> T processResponseFromHttpUrl(URL url, ResponseStreamHandler<T> handler) throws TMDbException {
+        return TMDbHttpClient.execute(url, handler);
+    }
+
+    /**
+     * This method requests given URL revalidating given validators of a previous response. If
+     * the resource has not been modified, the handler is not invoked and the returned response
+     * has no body.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @param validators Validators of a previous response, it could be null.
+     * @param handler Consumer of the response body stream.
+     * @return The response.
+     * @throws TMDbException Related to network and stream reading
+     */
+    public static <T> TMDbHttpClient.Response<T> processResponseFromHttpUrl(URL url,
+                                                                           TMDbHttpClient.Validators validators,
+                                                                           ResponseStreamHandler<T> handler)
+            throws TMDbException {
+        return TMDbHttpClient.execute(url, validators, handler);
     }
 
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class executes the background tasks of the application. Tasks are executed in separated
+ * lanes depending on their priority, every lane has its own threads, so a long synchronization
+ * never delays a read that the user is waiting for. Results and failures are delivered in UI
+ * thread.
+ *
+ * Lanes:
+ * - LANE_UI: short reads that block the UI (preferences, provider pages, favorites).
+ * - LANE_USER: tasks initiated by the user, like network calls or writes of user data.
+ * - LANE_BACKGROUND: synchronization and other tasks that nobody is waiting for.
+ * - LANE_NETWORK: concurrent downloads of background tasks (sync pages, extras and posters),
+ *   it bounds how many of them are downloading at the same time.
+ */
+public class TaskScheduler {
+
+    private static final String TAG = TaskScheduler.class.getSimpleName();
+
+    public static final int LANE_UI = 0;
+    public static final int LANE_USER = 1;
+    public static final int LANE_BACKGROUND = 2;
+    public static final int LANE_NETWORK = 3;
+
+    /** Time waited in queue by a task of the UI lane that is logged as slow */
+    private static final long SLOW_UI_WAIT_MILLIS = 100;
+
+    private static final long THREADS_KEEP_ALIVE_SECONDS = 30;
+
+    private static final Lane[] sLanes = {
+            new Lane("ui", 2, Process.THREAD_PRIORITY_DEFAULT),
+            new Lane("user", 3, Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_LESS_FAVORABLE),
+            new Lane("background", 1, Process.THREAD_PRIORITY_BACKGROUND),
+            new Lane("network", 4, Process.THREAD_PRIORITY_BACKGROUND)
+    };
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * This class is a task executed by the scheduler. It is executed only once.
+     * @param <T> type of the result.
+     */
+    public static abstract class Task<T> {
+
+        private volatile boolean mCancelled;
+        private Future<?> mFuture;
+        private long mSubmitTime;
+
+        /**
+         * Invoked in calling thread before that the task is submitted.
+         */
+        protected void onPreExecute() {
+            // nothing to do by default
+        }
+
+        /**
+         * Invoked in a thread of the lane.
+         * @return result of the task.
+         */
+        protected abstract T doInBackground();
+
+        /**
+         * Invoked in UI thread with the result of the task, it is not invoked if the task has
+         * been cancelled.
+         * @param result
+         */
+        protected void onComplete(T result) {
+            // nothing to do by default
+        }
+
+        /**
+         * Invoked in UI thread if doInBackground throws an exception or error, it is not invoked
+         * if the task has been cancelled. By default it throws it again in UI thread, so it is
+         * not lost.
+         * @param error
+         */
+        protected void onFailure(Throwable error) {
+            if (error instanceof RuntimeException) throw (RuntimeException) error;
+            if (error instanceof Error) throw (Error) error;
+            throw new IllegalStateException(error);
+        }
+
+        /**
+         * This method cancels the task. If it has not started, it will not be executed.
+         * @param mayInterruptIfRunning true if the thread that executes the task should be
+         *                              interrupted.
+         */
+        synchronized public final void cancel(boolean mayInterruptIfRunning) {
+            mCancelled = true;
+            if (mFuture != null) mFuture.cancel(mayInterruptIfRunning);
+        }
+
+        public final boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+
+    /**
+     * This method submits given task to the given lane.
+     * @param lane LANE_UI, LANE_USER, LANE_BACKGROUND or LANE_NETWORK.
+     * @param task
+     * @param <T>
+     * @return given task, so it can be cancelled.
+     */
+    public static <T> Task<T> submit(int lane, final Task<T> task) {
+        final Lane taskLane = sLanes[lane];
+        synchronized (task) {
+            if (task.mFuture != null) throw new IllegalStateException("Task has been already submitted");
+            task.onPreExecute();
+            task.mSubmitTime = SystemClock.elapsedRealtime();
+            try {
+                task.mFuture = taskLane.mExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        taskLane.recordWait(SystemClock.elapsedRealtime() - task.mSubmitTime);
+                        if (task.isCancelled()) return;
+                        final T result;
+                        try {
+                            result = task.doInBackground();
+                        } catch (final RuntimeException | Error e) {
+                            // executor future would swallow it, deliver it in UI thread
+                            Log.e(TAG, "Task failed in lane: " + taskLane.mName, e);
+                            sMainHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (!task.isCancelled()) task.onFailure(e);
+                                }
+                            });
+                            return;
+                        }
+                        sMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!task.isCancelled()) task.onComplete(result);
+                            }
+                        });
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                Log.e(TAG, "Task rejected by lane: " + taskLane.mName, e);
+                task.mCancelled = true;
+            }
+        }
+        return task;
+    }
+
+    /**
+     * This method submits given runnable to the given lane.
+     * @param lane LANE_UI, LANE_USER, LANE_BACKGROUND or LANE_NETWORK.
+     * @param runnable
+     * @return task that executes the runnable, so it can be cancelled.
+     */
+    public static Task<Void> submit(int lane, final Runnable runnable) {
+        return submit(lane, new Task<Void>() {
+            @Override
+            protected Void doInBackground() {
+                runnable.run();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * This method submits given callable to the given lane. It is used by background tasks
+     * that wait for the result in their own thread instead of receiving it in UI thread, so
+     * result and failure are returned by the future.
+     * @param lane LANE_UI, LANE_USER, LANE_BACKGROUND or LANE_NETWORK.
+     * @param callable
+     * @param <T>
+     * @return future of the callable, so it can be waited or cancelled.
+     */
+    public static <T> Future<T> submit(int lane, final Callable<T> callable) {
+        final Lane taskLane = sLanes[lane];
+        final long submitTime = SystemClock.elapsedRealtime();
+        return taskLane.mExecutor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                taskLane.recordWait(SystemClock.elapsedRealtime() - submitTime);
+                return callable.call();
+            }
+        });
+    }
+
+    /**
+     * @param lane
+     * @return number of tasks of given lane waiting to be executed.
+     */
+    public static int getQueueDepth(int lane) {
+        return sLanes[lane].mExecutor.getQueue().size();
+    }
+
+    /**
+     * @param lane
+     * @return number of tasks of given lane that are being executed.
+     */
+    public static int getActiveCount(int lane) {
+        return sLanes[lane].mExecutor.getActiveCount();
+    }
+
+    /**
+     * @param lane
+     * @return number of tasks of given lane that have started.
+     */
+    public static long getStartedCount(int lane) {
+        return sLanes[lane].mStartedTasks.get();
+    }
+
+    /**
+     * @param lane
+     * @return average time in milliseconds that tasks of given lane wait in queue.
+     */
+    public static long getAverageWaitMillis(int lane) {
+        Lane taskLane = sLanes[lane];
+        long started = taskLane.mStartedTasks.get();
+        return started > 0 ? taskLane.mTotalWaitMillis.get() / started : 0;
+    }
+
+    /**
+     * @param lane
+     * @return maximum time in milliseconds that a task of given lane has waited in queue.
+     */
+    public static long getMaxWaitMillis(int lane) {
+        return sLanes[lane].mMaxWaitMillis.get();
+    }
+
+    /**
+     * This class is a lane of the scheduler, it has its own threads and metrics.
+     */
+    private static class Lane {
+
+        private final String mName;
+        private final ThreadPoolExecutor mExecutor;
+        private final AtomicLong mStartedTasks = new AtomicLong();
+        private final AtomicLong mTotalWaitMillis = new AtomicLong();
+        private final AtomicLong mMaxWaitMillis = new AtomicLong();
+
+        Lane(final String name, int threads, final int threadPriority) {
+            mName = name;
+            ThreadFactory threadFactory = new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(threadPriority);
+                            runnable.run();
+                        }
+                    }, "tasks-" + name + "-" + mCount.incrementAndGet());
+                }
+            };
+            mExecutor = new ThreadPoolExecutor(threads,
+                    threads,
+                    THREADS_KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    threadFactory);
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        void recordWait(long waitMillis) {
+            mStartedTasks.incrementAndGet();
+            mTotalWaitMillis.addAndGet(waitMillis);
+            long max = mMaxWaitMillis.get();
+            while (waitMillis > max && !mMaxWaitMillis.compareAndSet(max, waitMillis)) {
+                max = mMaxWaitMillis.get();
+            }
+            if (this == sLanes[LANE_UI] && waitMillis > SLOW_UI_WAIT_MILLIS) {
+                Log.d(TAG, "UI task waited " + waitMillis + " ms (queue depth " +
+                        mExecutor.getQueue().size() + ").");
+            }
+        }
+    }
+}
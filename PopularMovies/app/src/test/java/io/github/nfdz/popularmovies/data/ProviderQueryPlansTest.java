@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.nfdz.popularmovies.MoviesGridLoader;
+import io.github.nfdz.popularmovies.data.MovieContract.FavoriteMovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.HighestRatedMovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.MovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.MovieExtrasEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.PopularMovieEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.ReviewEntry;
+import io.github.nfdz.popularmovies.data.MovieContract.VideoEntry;
+import io.github.nfdz.popularmovies.utilities.MovieInfoUtils;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the query plans of every provider query that filters or sorts rows, built like the
+ * provider builds them. No step may read a whole table without an index or sort rows in a
+ * temporary B-tree. Queries without selection nor sort order read whole tables by design and
+ * they are not checked.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ProviderQueryPlansTest {
+
+    private static final String EXPLAIN_QUERY_PLAN = "EXPLAIN QUERY PLAN ";
+    private static final String PLAN_DETAIL_COLUMN = "detail";
+    private static final String FULL_SCAN_STEP = "SCAN";
+    private static final String INDEX_STEP = " USING ";
+    private static final String TEMP_SORT_STEP = "USE TEMP B-TREE";
+
+    private static final String MOVIE_ID_ARG = "42562";
+    private static final String PAGE_LIMIT = MovieContentProvider.buildLimit(MovieContract.buildRangeUri(
+            PopularMovieEntry.CONTENT_URI, MoviesGridLoader.PAGE_SIZE, MoviesGridLoader.PAGE_SIZE));
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mDb = SQLiteDatabase.create(null);
+        new MovieDbHelper(RuntimeEnvironment.application).onCreate(mDb);
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void popularGridPage_usesRankIndex() {
+        assertEfficient(MovieContentProvider.buildQuerySql(
+                MovieContentProvider.buildReferencedTables(PopularMovieEntry.TABLE_NAME,
+                        PopularMovieEntry.COLUMN_MOVIE_ID),
+                MovieInfoUtils.MOVIES_PROJECTION,
+                null,
+                PopularMovieEntry.TABLE_NAME + "." + PopularMovieEntry.COLUMN_RANK + " ASC",
+                PAGE_LIMIT));
+    }
+
+    @Test
+    public void highestRatedGridPage_usesRankIndex() {
+        assertEfficient(MovieContentProvider.buildQuerySql(
+                MovieContentProvider.buildReferencedTables(HighestRatedMovieEntry.TABLE_NAME,
+                        HighestRatedMovieEntry.COLUMN_MOVIE_ID),
+                MovieInfoUtils.MOVIES_PROJECTION,
+                null,
+                HighestRatedMovieEntry.TABLE_NAME + "." + HighestRatedMovieEntry.COLUMN_RANK + " ASC",
+                PAGE_LIMIT));
+    }
+
+    @Test
+    public void favoritesGridPage_walksRowIdOrder() {
+        String sql = MovieContentProvider.buildQuerySql(
+                MovieContentProvider.buildReferencedTables(FavoriteMovieEntry.TABLE_NAME,
+                        FavoriteMovieEntry.COLUMN_MOVIE_ID),
+                MovieInfoUtils.MOVIES_PROJECTION,
+                null,
+                FavoriteMovieEntry.TABLE_NAME + "." + FavoriteMovieEntry._ID + " DESC",
+                PAGE_LIMIT);
+        // favorites are sorted by row id, so walking the table itself is the ordered index
+        List<String> steps = getInefficientSteps(sql);
+        for (String step : steps) {
+            assertTrue("Inefficient step: " + step + ". Query: " + sql,
+                    step.startsWith(FULL_SCAN_STEP) && step.contains(FavoriteMovieEntry.TABLE_NAME));
+        }
+    }
+
+    @Test
+    public void topMovieIds_useRankIndex() {
+        String[] projection = { MovieEntry.TABLE_NAME + "." + MovieEntry._ID };
+        String limit = MovieContentProvider.buildLimit(MovieContract.buildRangeUri(
+                PopularMovieEntry.CONTENT_URI, 0, 20));
+        assertEfficient(MovieContentProvider.buildQuerySql(
+                MovieContentProvider.buildReferencedTables(PopularMovieEntry.TABLE_NAME,
+                        PopularMovieEntry.COLUMN_MOVIE_ID),
+                projection,
+                null,
+                PopularMovieEntry.TABLE_NAME + "." + PopularMovieEntry.COLUMN_RANK + " ASC",
+                limit), null);
+        assertEfficient(MovieContentProvider.buildQuerySql(
+                MovieContentProvider.buildReferencedTables(HighestRatedMovieEntry.TABLE_NAME,
+                        HighestRatedMovieEntry.COLUMN_MOVIE_ID),
+                projection,
+                null,
+                HighestRatedMovieEntry.TABLE_NAME + "." + HighestRatedMovieEntry.COLUMN_RANK + " ASC",
+                limit), null);
+    }
+
+    @Test
+    public void movieDetail_searchesPrimaryKey() {
+        assertEfficient(MovieContentProvider.buildQuerySql(MovieEntry.TABLE_NAME,
+                MovieInfoUtils.MOVIES_PROJECTION,
+                MovieEntry._ID + " = ? ",
+                null,
+                null), new String[] { MOVIE_ID_ARG });
+    }
+
+    @Test
+    public void movieReviews_useMovieIndex() {
+        assertEfficient(MovieContentProvider.buildQuerySql(ReviewEntry.TABLE_NAME,
+                new String[] { ReviewEntry.COLUMN_AUTHOR, ReviewEntry.COLUMN_CONTENT, ReviewEntry.COLUMN_URL },
+                MovieContentProvider.COLUMN_EXTRAS_MOVIE_ID + " = ? ",
+                ReviewEntry.COLUMN_POSITION + " ASC",
+                null), new String[] { MOVIE_ID_ARG });
+    }
+
+    @Test
+    public void movieVideos_useMovieIndex() {
+        assertEfficient(MovieContentProvider.buildQuerySql(VideoEntry.TABLE_NAME,
+                new String[] { VideoEntry.COLUMN_NAME, VideoEntry.COLUMN_URL },
+                MovieContentProvider.COLUMN_EXTRAS_MOVIE_ID + " = ? ",
+                VideoEntry.COLUMN_POSITION + " ASC",
+                null), new String[] { MOVIE_ID_ARG });
+    }
+
+    @Test
+    public void movieExtrasTimes_useMovieIndex() {
+        String[] projection = {
+                MovieExtrasEntry.COLUMN_MOVIE_ID,
+                MovieExtrasEntry.COLUMN_REVIEWS_TIME,
+                MovieExtrasEntry.COLUMN_VIDEOS_TIME
+        };
+        assertEfficient(MovieContentProvider.buildQuerySql(MovieExtrasEntry.TABLE_NAME,
+                projection,
+                MovieContentProvider.COLUMN_EXTRAS_MOVIE_ID + " = ? ",
+                null,
+                null), new String[] { MOVIE_ID_ARG });
+        assertEfficient(MovieContentProvider.buildQuerySql(MovieExtrasEntry.TABLE_NAME,
+                projection,
+                MovieExtrasEntry.COLUMN_MOVIE_ID + " IN (42562,131316,359229)",
+                null,
+                null), null);
+    }
+
+    private void assertEfficient(String sql) {
+        assertEfficient(sql, null);
+    }
+
+    private void assertEfficient(String sql, String[] selectionArgs) {
+        List<String> steps = getInefficientSteps(sql, selectionArgs);
+        assertTrue("Inefficient steps: " + steps + ". Query: " + sql, steps.isEmpty());
+    }
+
+    private List<String> getInefficientSteps(String sql) {
+        return getInefficientSteps(sql, null);
+    }
+
+    /**
+     * @return steps of the query plan that read a whole table without an index (like
+     * "SCAN TABLE movies") or sort rows in a temporary B-tree.
+     */
+    private List<String> getInefficientSteps(String sql, String[] selectionArgs) {
+        List<String> steps = new ArrayList<>();
+        Cursor plan = mDb.rawQuery(EXPLAIN_QUERY_PLAN + sql, selectionArgs);
+        try {
+            int detailColumn = plan.getColumnIndexOrThrow(PLAN_DETAIL_COLUMN);
+            while (plan.moveToNext()) {
+                String detail = plan.getString(detailColumn);
+                boolean fullScan = detail.startsWith(FULL_SCAN_STEP) && !detail.contains(INDEX_STEP);
+                if (fullScan || detail.startsWith(TEMP_SORT_STEP)) steps.add(detail);
+            }
+        } finally {
+            plan.close();
+        }
+        return steps;
+    }
+}
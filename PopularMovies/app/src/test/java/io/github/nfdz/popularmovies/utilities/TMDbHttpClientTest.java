@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of TMDbHttpClient against a local HTTP server that answers like TMDb servers: it
+ * compresses bodies when client accepts gzip and revalidates ETag and Last-Modified validators.
+ */
+public class TMDbHttpClientTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final String BODY = "{\"page\": 1, \"results\": []}";
+    private static final String ETAG = "\"5d8c72a5edda8d6a\"";
+    private static final String LAST_MODIFIED = "Sat, 01 Apr 2017 10:00:00 GMT";
+    private static final String LATIN_BODY = "{\"title\": \"Le fabuleux destin d'Am\u00e9lie Poulain\"}";
+
+    private HttpServer mServer;
+    private TMDbHandler mHandler;
+
+    @Before
+    public void setUp() throws IOException {
+        mHandler = new TMDbHandler();
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", mHandler);
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void execute_decodesGzipBody() throws TMDbException {
+        String body = TMDbHttpClient.execute(url(), new StringHandler());
+
+        assertEquals(BODY, body);
+        assertEquals("gzip", mHandler.mLastAcceptEncoding);
+        assertTrue(mHandler.mLastResponseGzipped);
+    }
+
+    @Test
+    public void executeForString_decodesGzipBody() throws TMDbException {
+        String body = TMDbHttpClient.executeForString(url());
+
+        assertEquals(BODY, body);
+        assertTrue(mHandler.mLastResponseGzipped);
+    }
+
+    @Test
+    public void executeForString_readsPlainBody() throws TMDbException {
+        mHandler.mGzipEnabled = false;
+
+        String body = TMDbHttpClient.executeForString(url());
+
+        assertEquals(BODY, body);
+        assertFalse(mHandler.mLastResponseGzipped);
+    }
+
+    @Test
+    public void execute_returnsResponseValidators() throws TMDbException {
+        TMDbHttpClient.Response<String> response = TMDbHttpClient.execute(url(), null, new StringHandler());
+
+        assertFalse(response.isNotModified());
+        assertEquals(BODY, response.getBody());
+        assertEquals(ETAG, response.getValidators().getETag());
+        assertEquals(LAST_MODIFIED, response.getValidators().getLastModified());
+        assertNull(mHandler.mLastIfNoneMatch);
+        assertNull(mHandler.mLastIfModifiedSince);
+    }
+
+    @Test
+    public void execute_revalidatesWithPreviousValidators() throws TMDbException {
+        TMDbHttpClient.Validators validators =
+                TMDbHttpClient.execute(url(), null, new StringHandler()).getValidators();
+
+        TMDbHttpClient.Response<String> response = TMDbHttpClient.execute(url(),
+                validators,
+                new FailingHandler());
+
+        assertEquals(ETAG, mHandler.mLastIfNoneMatch);
+        assertEquals(LAST_MODIFIED, mHandler.mLastIfModifiedSince);
+        assertTrue(response.isNotModified());
+        assertNull(response.getBody());
+        assertEquals(ETAG, response.getValidators().getETag());
+        assertEquals(LAST_MODIFIED, response.getValidators().getLastModified());
+    }
+
+    @Test
+    public void execute_keepsValidatorsWhenNotModifiedHasNone() throws TMDbException {
+        mHandler.mSendValidatorsWhenNotModified = false;
+        TMDbHttpClient.Validators validators = new TMDbHttpClient.Validators(ETAG, LAST_MODIFIED);
+
+        TMDbHttpClient.Response<String> response = TMDbHttpClient.execute(url(),
+                validators,
+                new FailingHandler());
+
+        assertTrue(response.isNotModified());
+        assertEquals(ETAG, response.getValidators().getETag());
+        assertEquals(LAST_MODIFIED, response.getValidators().getLastModified());
+    }
+
+    @Test
+    public void execute_invokesHandlerWhenValidatorsChanged() throws TMDbException {
+        TMDbHttpClient.Validators validators = new TMDbHttpClient.Validators("\"old\"", null);
+
+        TMDbHttpClient.Response<String> response = TMDbHttpClient.execute(url(),
+                validators,
+                new StringHandler());
+
+        assertFalse(response.isNotModified());
+        assertEquals(BODY, response.getBody());
+        assertEquals(ETAG, response.getValidators().getETag());
+    }
+
+    @Test
+    public void execute_passesDeclaredCharsetToHandler() throws TMDbException {
+        mHandler.mBody = LATIN_BODY;
+        mHandler.mCharset = ISO_8859_1;
+
+        String body = TMDbHttpClient.execute(url(), new StringHandler());
+
+        assertEquals(LATIN_BODY, body);
+    }
+
+    @Test
+    public void executeAndExecuteForString_decodeDeclaredCharsetAlike() throws TMDbException {
+        mHandler.mBody = LATIN_BODY;
+        mHandler.mCharset = ISO_8859_1;
+        mHandler.mGzipEnabled = false;
+
+        assertEquals(TMDbHttpClient.executeForString(url()), TMDbHttpClient.execute(url(), new StringHandler()));
+    }
+
+    @Test
+    public void execute_failsWithErrorStatus() {
+        mHandler.mErrorStatus = 500;
+        try {
+            TMDbHttpClient.executeForString(url());
+            fail("Error status has not thrown any exception");
+        } catch (TMDbException e) {
+            // expected
+        }
+    }
+
+    private URL url() {
+        try {
+            return new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + "/3/movie/popular");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readString(InputStream in, Charset charset) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), charset);
+    }
+
+    private static class StringHandler implements TMDbNetworkUtils.ResponseStreamHandler<String> {
+        @Override
+        public String handleResponse(InputStream in, Charset charset) throws TMDbException {
+            try {
+                return readString(in, charset);
+            } catch (IOException e) {
+                throw new TMDbException("Error reading test body", e);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    private static class FailingHandler implements TMDbNetworkUtils.ResponseStreamHandler<String> {
+        @Override
+        public String handleResponse(InputStream in, Charset charset) throws TMDbException {
+            throw new AssertionError("Handler invoked with a not modified response");
+        }
+    }
+
+    /**
+     * This handler answers every request with the same body and validators. Body is encoded
+     * with the charset that it declares.
+     */
+    private static class TMDbHandler implements HttpHandler {
+
+        volatile boolean mGzipEnabled = true;
+        volatile boolean mSendValidatorsWhenNotModified = true;
+        volatile int mErrorStatus;
+        volatile String mBody = BODY;
+        volatile Charset mCharset = UTF_8;
+
+        volatile String mLastAcceptEncoding;
+        volatile String mLastIfNoneMatch;
+        volatile String mLastIfModifiedSince;
+        volatile boolean mLastResponseGzipped;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            mLastAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            mLastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            mLastIfModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            mLastResponseGzipped = false;
+            try {
+                if (mErrorStatus != 0) {
+                    byte[] error = "{\"status_code\": 34}".getBytes(UTF_8);
+                    exchange.sendResponseHeaders(mErrorStatus, error.length);
+                    exchange.getResponseBody().write(error);
+                    return;
+                }
+
+                if (ETAG.equals(mLastIfNoneMatch)) {
+                    if (mSendValidatorsWhenNotModified) addValidators(exchange);
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+
+                addValidators(exchange);
+                byte[] body = mBody.getBytes(mCharset);
+                if (mGzipEnabled && mLastAcceptEncoding != null && mLastAcceptEncoding.contains("gzip")) {
+                    body = gzip(body);
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                    mLastResponseGzipped = true;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json;charset=" + mCharset.name());
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private static void addValidators(HttpExchange exchange) {
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+        }
+
+        private static byte[] gzip(byte[] data) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            OutputStream gzipOut = new GZIPOutputStream(out);
+            try {
+                gzipOut.write(data);
+            } finally {
+                gzipOut.close();
+            }
+            return out.toByteArray();
+        }
+    }
+}
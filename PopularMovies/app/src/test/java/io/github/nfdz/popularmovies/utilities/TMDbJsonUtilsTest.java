@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
+import io.github.nfdz.popularmovies.types.MovieInfo;
+import io.github.nfdz.popularmovies.types.MovieReview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the streaming parsers of TMDbJsonUtils with the sample TMDb responses of the
+ * benchmark module (responses recorded from TMDb are tested in TMDbRecordedResponsesTest).
+ * They run with Robolectric because android-all JsonReader uses framework only methods (like
+ * System.arraycopy of chars) that need its bytecode instrumentation.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TMDbJsonUtilsTest {
+
+    private static final String FIXTURES_DIR = "/fixtures/";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String API_ERROR_JSON =
+            "{\"status_code\": 7, \"status_message\": \"Invalid API key: You must be granted a valid key.\"}";
+    private static final String RESOURCE_ERROR_JSON =
+            "{\"status_code\": 34, \"status_message\": \"The resource you requested could not be found.\"}";
+    private static final String INVALID_ERROR_CODE_JSON = "{\"status_code\": \"unknown\"}";
+
+    private static InputStream fixture(String name) {
+        InputStream in = TMDbJsonUtilsTest.class.getResourceAsStream(FIXTURES_DIR + name);
+        if (in == null) throw new IllegalStateException("Fixture not found: " + name);
+        return in;
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(UTF_8));
+    }
+
+    @Test
+    public void getMoviesFromStream_parsesEveryMovie() throws TMDbException {
+        List<MovieInfo> movies = TMDbJsonUtils.getMoviesFromStream(fixture("popular_movies.json"));
+
+        assertEquals(20, movies.size());
+        MovieInfo first = movies.get(0);
+        assertEquals(42562, first.getMovieId());
+        assertEquals("Darkness Small", first.getTitle());
+        assertEquals("2011-08-18", first.getReleaseDate());
+        assertEquals(7.2, first.getRating(), 0.0001);
+        assertEquals("/YuGnUe2GDI19hp4MzUHRpaXf2rp.jpg", first.getPosterKey());
+        assertEquals("/dYmt8GVEXyRC6Js7gf9hhuc3VqV.jpg", first.getBackdropKey());
+        MovieInfo last = movies.get(19);
+        assertEquals(131316, last.getMovieId());
+        assertEquals("Fight Villain Unexpected Escape Ship", last.getTitle());
+    }
+
+    @Test
+    public void getMoviesFromStream_parsesTopRatedMovies() throws TMDbException {
+        List<MovieInfo> movies = TMDbJsonUtils.getMoviesFromStream(fixture("top_rated_movies.json"));
+
+        assertEquals(20, movies.size());
+        assertEquals(359229, movies.get(0).getMovieId());
+        assertEquals(8.0, movies.get(0).getRating(), 0.0001);
+    }
+
+    @Test
+    public void getMoviesFromStream_acceptsNullImages() throws TMDbException {
+        String json = "{\"page\": 1, \"results\": [{\"id\": 7, \"title\": \"Title\", " +
+                "\"overview\": \"Synopsis\", \"release_date\": \"2017-01-01\", " +
+                "\"vote_average\": 6.5, \"poster_path\": null, \"backdrop_path\": null, " +
+                "\"genre_ids\": [1, 2], \"adult\": false}]}";
+
+        List<MovieInfo> movies = TMDbJsonUtils.getMoviesFromStream(json(json));
+
+        assertEquals(1, movies.size());
+        assertEquals(7, movies.get(0).getMovieId());
+        assertEquals("Synopsis", movies.get(0).getSynopsis());
+        assertNull(movies.get(0).getPosterKey());
+        assertNull(movies.get(0).getBackdropKey());
+    }
+
+    @Test
+    public void getMoviesFromStream_decodesGivenCharset() throws TMDbException {
+        Charset latin1 = Charset.forName("ISO-8859-1");
+        String json = "{\"results\": [{\"id\": 7, \"title\": \"Am\u00e9lie\", " +
+                "\"overview\": \"Montmartre caf\u00e9\", \"release_date\": \"2001-04-25\", " +
+                "\"vote_average\": 7.9, \"poster_path\": null, \"backdrop_path\": null}]}";
+
+        List<MovieInfo> movies = TMDbJsonUtils.getMoviesFromStream(
+                new ByteArrayInputStream(json.getBytes(latin1)), latin1);
+
+        assertEquals("Am\u00e9lie", movies.get(0).getTitle());
+        assertEquals("Montmartre caf\u00e9", movies.get(0).getSynopsis());
+    }
+
+    @Test
+    public void getMoviesFromStream_failsWithoutRequiredFields() {
+        String json = "{\"results\": [{\"id\": 7, \"poster_path\": null}]}";
+        assertFails(json, Parser.MOVIES);
+    }
+
+    @Test
+    public void getImagesConfigurationFromStream_parsesImages() throws TMDbException {
+        ImagesConfiguration config =
+                TMDbJsonUtils.getImagesConfigurationFromStream(fixture("configuration.json"));
+
+        assertEquals("http://image.tmdb.org/t/p/", config.getBaseUrl());
+        assertArrayEquals(new String[] { "w92", "w154", "w185", "w342", "w500", "w780", "original" },
+                config.getPosterSizes());
+        assertArrayEquals(new String[] { "w300", "w780", "w1280", "original" },
+                config.getBackdropSizes());
+    }
+
+    @Test
+    public void getVideosFromStream_keepsYoutubeVideosInOrder() throws TMDbException {
+        Map<String, String> videos = TMDbJsonUtils.getVideosFromStream(fixture("movie_videos.json"));
+
+        // 14 videos, 5 of them are not from YouTube
+        assertEquals(9, videos.size());
+        Iterator<Map.Entry<String, String>> iterator = videos.entrySet().iterator();
+        Map.Entry<String, String> first = iterator.next();
+        assertEquals("Official Trailer 1", first.getKey());
+        assertEquals("https://www.youtube.com/watch?v=Dd1bBnFYfSC", first.getValue());
+    }
+
+    @Test
+    public void getReviewsFromStream_parsesEveryReview() throws TMDbException {
+        List<MovieReview> reviews = TMDbJsonUtils.getReviewsFromStream(fixture("movie_reviews.json"));
+
+        assertEquals(12, reviews.size());
+        MovieReview last = reviews.get(11);
+        assertEquals("EmpirePowerful", last.getAuthor());
+        assertEquals("https://www.themoviedb.org/review/df51f289e58e2b369d0eead7", last.getUrl());
+    }
+
+    @Test
+    public void streams_failWithApiErrorCode() {
+        for (Parser parser : Parser.values()) {
+            assertFails(API_ERROR_JSON, parser);
+            assertFails(RESOURCE_ERROR_JSON, parser);
+        }
+    }
+
+    @Test
+    public void streams_failWithInvalidErrorCode() {
+        for (Parser parser : Parser.values()) {
+            assertFails(INVALID_ERROR_CODE_JSON, parser);
+        }
+    }
+
+    @Test
+    public void streams_failWithMalformedJson() {
+        for (Parser parser : Parser.values()) {
+            assertFails("{\"results\": [", parser);
+        }
+    }
+
+    private static void assertFails(String json, Parser parser) {
+        try {
+            parser.parse(json(json));
+            fail(parser + " should fail parsing: " + json);
+        } catch (TMDbException e) {
+            // expected
+        }
+    }
+
+    private enum Parser {
+        MOVIES {
+            @Override
+            void parse(InputStream in) throws TMDbException {
+                TMDbJsonUtils.getMoviesFromStream(in);
+            }
+        },
+        CONFIGURATION {
+            @Override
+            void parse(InputStream in) throws TMDbException {
+                TMDbJsonUtils.getImagesConfigurationFromStream(in);
+            }
+        },
+        VIDEOS {
+            @Override
+            void parse(InputStream in) throws TMDbException {
+                TMDbJsonUtils.getVideosFromStream(in);
+            }
+        },
+        REVIEWS {
+            @Override
+            void parse(InputStream in) throws TMDbException {
+                TMDbJsonUtils.getReviewsFromStream(in);
+            }
+        };
+
+        abstract void parse(InputStream in) throws TMDbException;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.utilities;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
+import io.github.nfdz.popularmovies.types.MovieInfo;
+import io.github.nfdz.popularmovies.types.MovieReview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests of the streaming parsers of TMDbJsonUtils with responses recorded from TMDb by the
+ * recordFixtures task of benchmark module (every page of the movie lists, configuration,
+ * videos, reviews and error responses). Every response is parsed with the stream parsers and
+ * with the org.json ones, which are an independent implementation, and both results have to
+ * be equal. Tests are skipped when there are no recorded responses.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TMDbRecordedResponsesTest {
+
+    private static final String RECORDED_DIR = "/fixtures/recorded/";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] MOVIE_LISTS = { "popular_movies", "top_rated_movies" };
+    private static final String CONFIGURATION = "configuration.json";
+    private static final String MOVIE_VIDEOS = "movie_videos.json";
+    private static final String MOVIE_REVIEWS = "movie_reviews.json";
+    private static final String[] ERRORS = { "error_invalid_api_key.json", "error_resource_not_found.json" };
+
+    private static byte[] recorded(String name) {
+        InputStream in = TMDbRecordedResponsesTest.class.getResourceAsStream(RECORDED_DIR + name);
+        if (in == null) return null;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Recorded response could not be read: " + name, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    private static byte[] assumeRecorded(String name) {
+        byte[] response = recorded(name);
+        assumeTrue("There is no recorded response " + name +
+                ", run: gradlew :benchmark:recordFixtures -PtmdbApiKey=<key>", response != null);
+        return response;
+    }
+
+    /** Recorded pages of given movie list, from page 1 until the first one not recorded */
+    private static List<byte[]> assumeRecordedPages(String list) {
+        List<byte[]> pages = new ArrayList<>();
+        byte[] page;
+        while ((page = recorded(list + "_page_" + (pages.size() + 1) + ".json")) != null) {
+            pages.add(page);
+        }
+        assumeTrue("There are no recorded pages of " + list, !pages.isEmpty());
+        return pages;
+    }
+
+    @Test
+    public void moviePages_streamParsingMatchesJsonParsing() throws TMDbException {
+        for (String list : MOVIE_LISTS) {
+            List<byte[]> pages = assumeRecordedPages(list);
+            for (int i = 0; i < pages.size(); i++) {
+                String page = list + " page " + (i + 1);
+                byte[] response = pages.get(i);
+                List<MovieInfo> expected = TMDbJsonUtils.getMoviesFromJson(new String(response, UTF_8));
+                List<MovieInfo> actual = TMDbJsonUtils.getMoviesFromStream(stream(response), UTF_8);
+
+                assertTrue(page + " has no movies", !expected.isEmpty());
+                assertEquals(page, expected.size(), actual.size());
+                for (int j = 0; j < expected.size(); j++) {
+                    assertSameMovie(page + " movie " + j, expected.get(j), actual.get(j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void moviePages_callbackReceivesEveryMovieInOrder() throws TMDbException {
+        for (String list : MOVIE_LISTS) {
+            for (byte[] response : assumeRecordedPages(list)) {
+                List<MovieInfo> expected = TMDbJsonUtils.getMoviesFromJson(new String(response, UTF_8));
+                final List<MovieInfo> received = new ArrayList<>();
+                TMDbJsonUtils.parseMoviesFromStream(stream(response), UTF_8,
+                        new TMDbJsonUtils.MovieCallback() {
+                            @Override
+                            public void notifyMovie(MovieInfo movie) {
+                                received.add(movie);
+                            }
+                        });
+
+                assertEquals(expected.size(), received.size());
+                for (int j = 0; j < expected.size(); j++) {
+                    assertEquals(expected.get(j).getMovieId(), received.get(j).getMovieId());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void configuration_streamParsingMatchesJsonParsing() throws TMDbException {
+        byte[] response = assumeRecorded(CONFIGURATION);
+        String json = new String(response, UTF_8);
+        ImagesConfiguration config = TMDbJsonUtils.getImagesConfigurationFromStream(stream(response), UTF_8);
+
+        assertArrayEquals(TMDbJsonUtils.getPosterBasePathsFromJson(json),
+                basePaths(config.getBaseUrl(), config.getPosterSizes()));
+        assertArrayEquals(TMDbJsonUtils.getBackdropBasePathsFromJson(json),
+                basePaths(config.getBaseUrl(), config.getBackdropSizes()));
+    }
+
+    @Test
+    public void videos_streamParsingMatchesJsonParsing() throws TMDbException {
+        byte[] response = assumeRecorded(MOVIE_VIDEOS);
+        Map<String, String> expected = TMDbJsonUtils.getVideosFromJson(new String(response, UTF_8));
+        Map<String, String> actual = TMDbJsonUtils.getVideosFromStream(stream(response), UTF_8);
+
+        // maps are equal regardless of their order
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void reviews_streamParsingMatchesJsonParsing() throws TMDbException {
+        byte[] response = assumeRecorded(MOVIE_REVIEWS);
+        List<MovieReview> expected = TMDbJsonUtils.getReviewsFromJson(new String(response, UTF_8));
+        List<MovieReview> actual = TMDbJsonUtils.getReviewsFromStream(stream(response), UTF_8);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getAuthor(), actual.get(i).getAuthor());
+            assertEquals(expected.get(i).getContent(), actual.get(i).getContent());
+            assertEquals(expected.get(i).getUrl(), actual.get(i).getUrl());
+        }
+    }
+
+    @Test
+    public void errors_failEveryStreamParser() {
+        for (String error : ERRORS) {
+            byte[] response = assumeRecorded(error);
+            assertFails(error, "movies", new Parse() {
+                @Override
+                public void parse(InputStream in) throws TMDbException {
+                    TMDbJsonUtils.getMoviesFromStream(in, UTF_8);
+                }
+            }, response);
+            assertFails(error, "configuration", new Parse() {
+                @Override
+                public void parse(InputStream in) throws TMDbException {
+                    TMDbJsonUtils.getImagesConfigurationFromStream(in, UTF_8);
+                }
+            }, response);
+            assertFails(error, "videos", new Parse() {
+                @Override
+                public void parse(InputStream in) throws TMDbException {
+                    TMDbJsonUtils.getVideosFromStream(in, UTF_8);
+                }
+            }, response);
+            assertFails(error, "reviews", new Parse() {
+                @Override
+                public void parse(InputStream in) throws TMDbException {
+                    TMDbJsonUtils.getReviewsFromStream(in, UTF_8);
+                }
+            }, response);
+        }
+    }
+
+    private interface Parse {
+        void parse(InputStream in) throws TMDbException;
+    }
+
+    private static void assertFails(String error, String parser, Parse parse, byte[] response) {
+        try {
+            parse.parse(stream(response));
+            fail(parser + " parser should fail parsing " + error);
+        } catch (TMDbException e) {
+            // expected
+        }
+    }
+
+    private static void assertSameMovie(String message, MovieInfo expected, MovieInfo actual) {
+        assertEquals(message, expected.getMovieId(), actual.getMovieId());
+        assertEquals(message, expected.getTitle(), actual.getTitle());
+        assertEquals(message, expected.getReleaseDate(), actual.getReleaseDate());
+        assertEquals(message, expected.getRating(), actual.getRating(), 0.0);
+        assertEquals(message, expected.getSynopsis(), actual.getSynopsis());
+        assertEquals(message, expected.getPosterKey(), actual.getPosterKey());
+        assertEquals(message, expected.getBackdropKey(), actual.getBackdropKey());
+    }
+
+    private static String[] basePaths(String baseUrl, String[] sizes) {
+        String[] paths = new String[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            paths[i] = baseUrl + sizes[i];
+        }
+        return paths;
+    }
+
+    private static InputStream stream(byte[] response) {
+        return new ByteArrayInputStream(response);
+    }
+}
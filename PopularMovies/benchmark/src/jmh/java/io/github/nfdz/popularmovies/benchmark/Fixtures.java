@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
+
+/**
+ * These utilities load TMDb responses stored as benchmark resources. Responses recorded from
+ * TMDb (see recordFixtures task) are loaded instead of the sample ones when they are present.
+ */
+final class Fixtures {
+
+    static final String POPULAR_MOVIES = "popular_movies.json";
+    static final String TOP_RATED_MOVIES = "top_rated_movies.json";
+    static final String MOVIE_REVIEWS = "movie_reviews.json";
+    static final String MOVIE_VIDEOS = "movie_videos.json";
+    static final String CONFIGURATION = "configuration.json";
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Images configuration of CONFIGURATION fixture */
+    static final ImagesConfiguration IMAGES_CONFIGURATION = new ImagesConfiguration(
+            "http://image.tmdb.org/t/p/",
+            new String[] { "w92", "w154", "w185", "w342", "w500", "w780", "original" },
+            new String[] { "w300", "w780", "w1280", "original" });
+
+    private static final String FIXTURES_DIR = "/fixtures/";
+    private static final String RECORDED_FIXTURES_DIR = "/fixtures/recorded/";
+
+    private Fixtures() {
+    }
+
+    static byte[] loadBytes(String name) {
+        InputStream in = Fixtures.class.getResourceAsStream(RECORDED_FIXTURES_DIR + recordedName(name));
+        if (in == null) in = Fixtures.class.getResourceAsStream(FIXTURES_DIR + name);
+        if (in == null) throw new IllegalStateException("Fixture not found: " + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Fixture could not be read: " + name, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * This method returns the name of the recorded response of given sample, movie lists are
+     * recorded by pages and the first one is used.
+     */
+    private static String recordedName(String name) {
+        return name.endsWith("_movies.json") ? name.replace(".json", "_page_1.json") : name;
+    }
+
+    static String loadString(String name) {
+        return new String(loadBytes(name), UTF_8);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.benchmark;
+
+import android.content.ContentValues;
+import android.database.MatrixCursor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+
+import io.github.nfdz.popularmovies.types.MovieInfo;
+import io.github.nfdz.popularmovies.utilities.MovieInfoUtils;
+import io.github.nfdz.popularmovies.utilities.TMDbException;
+import io.github.nfdz.popularmovies.utilities.TMDbJsonUtils;
+
+/**
+ * Benchmarks of movie mapping from and to stored data. Every operation maps a whole movies
+ * page, like synchronization does.
+ */
+@State(Scope.Benchmark)
+public class MovieInfoUtilsBenchmark {
+
+    private List<MovieInfo> mMovies;
+    private MatrixCursor mCursor;
+
+    @Setup
+    public void setup() throws TMDbException {
+        mMovies = TMDbJsonUtils.getMoviesFromJson(Fixtures.loadString(Fixtures.POPULAR_MOVIES));
+        mCursor = new MatrixCursor(MovieInfoUtils.MOVIES_PROJECTION, mMovies.size());
+        for (MovieInfo movie : mMovies) {
+            mCursor.newRow()
+                    .add(movie.getMovieId())
+                    .add(movie.getTitle())
+                    .add(movie.getReleaseDate())
+                    .add(movie.getRating())
+                    .add(movie.getSynopsis())
+                    .add(movie.getPosterKey())
+                    .add(movie.getBackdropKey());
+        }
+    }
+
+    @Benchmark
+    public void getContentValuesFor(Blackhole blackhole) {
+        for (MovieInfo movie : mMovies) {
+            ContentValues values = MovieInfoUtils.getContentValuesFor(movie);
+            blackhole.consume(values);
+        }
+    }
+
+    @Benchmark
+    public Map<Integer, MovieInfo> getMoviesFromCursor() {
+        return MovieInfoUtils.getMoviesFromCursor(mCursor);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Scanner;
+
+import io.github.nfdz.popularmovies.utilities.ResponseBodyReader;
+
+/**
+ * Benchmark of response body reading. It compares the old Scanner approach with the pooled
+ * buffers reader, with and without a known body length.
+ */
+@State(Scope.Benchmark)
+public class ResponseBodyReaderBenchmark {
+
+    @Param({ Fixtures.POPULAR_MOVIES, Fixtures.MOVIE_REVIEWS })
+    public String fixture;
+
+    private byte[] mBody;
+
+    @Setup
+    public void setup() {
+        mBody = Fixtures.loadBytes(fixture);
+    }
+
+    @Benchmark
+    public String scanner() {
+        Scanner scanner = new Scanner(newBodyStream());
+        scanner.useDelimiter("\\A");
+        return scanner.hasNext() ? scanner.next() : null;
+    }
+
+    @Benchmark
+    public String readerKnownLength() throws IOException {
+        return ResponseBodyReader.readString(newBodyStream(), mBody.length, Fixtures.UTF_8);
+    }
+
+    @Benchmark
+    public String readerUnknownLength() throws IOException {
+        return ResponseBodyReader.readString(newBodyStream(), -1, Fixtures.UTF_8);
+    }
+
+    private InputStream newBodyStream() {
+        return new ByteArrayInputStream(mBody);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import io.github.nfdz.popularmovies.utilities.TMDBImagesUtils;
+
+/**
+ * Benchmark of image URL resolution, it runs for every poster bound in movies grid.
+ */
+@State(Scope.Benchmark)
+public class TMDBImagesUtilsBenchmark {
+
+    private static final String POSTER_KEY = "/kqjL17yufvn9OVLyXYpvtyrFfak.jpg";
+
+    /** Minimum widths: grid poster in several densities and a bigger than any size one */
+    @Param({ "180", "360", "540", "2000" })
+    public int minWidth;
+
+    @Benchmark
+    public String resolvePosterUrl() {
+        return TMDBImagesUtils.resolvePosterUrl(Fixtures.IMAGES_CONFIGURATION, POSTER_KEY, minWidth);
+    }
+}
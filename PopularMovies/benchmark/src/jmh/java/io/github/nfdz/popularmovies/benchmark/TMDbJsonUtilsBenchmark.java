@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.popularmovies.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+
+import io.github.nfdz.popularmovies.types.ImagesConfiguration;
+import io.github.nfdz.popularmovies.types.MovieInfo;
+import io.github.nfdz.popularmovies.types.MovieReview;
+import io.github.nfdz.popularmovies.utilities.TMDbException;
+import io.github.nfdz.popularmovies.utilities.TMDbJsonUtils;
+
+/**
+ * Benchmarks of TMDb responses parsing. String methods parse with org.json and stream methods
+ * parse with JsonReader, so both can be compared on the same responses.
+ */
+@State(Scope.Benchmark)
+public class TMDbJsonUtilsBenchmark {
+
+    private String mMoviesJson;
+    private byte[] mMoviesBytes;
+    private String mReviewsJson;
+    private byte[] mReviewsBytes;
+    private String mVideosJson;
+    private byte[] mVideosBytes;
+    private String mConfigJson;
+    private byte[] mConfigBytes;
+
+    @Setup
+    public void setup() {
+        mMoviesJson = Fixtures.loadString(Fixtures.POPULAR_MOVIES);
+        mMoviesBytes = Fixtures.loadBytes(Fixtures.POPULAR_MOVIES);
+        mReviewsJson = Fixtures.loadString(Fixtures.MOVIE_REVIEWS);
+        mReviewsBytes = Fixtures.loadBytes(Fixtures.MOVIE_REVIEWS);
+        mVideosJson = Fixtures.loadString(Fixtures.MOVIE_VIDEOS);
+        mVideosBytes = Fixtures.loadBytes(Fixtures.MOVIE_VIDEOS);
+        mConfigJson = Fixtures.loadString(Fixtures.CONFIGURATION);
+        mConfigBytes = Fixtures.loadBytes(Fixtures.CONFIGURATION);
+    }
+
+    @Benchmark
+    public List<MovieInfo> moviesFromJson() throws TMDbException {
+        return TMDbJsonUtils.getMoviesFromJson(mMoviesJson);
+    }
+
+    @Benchmark
+    public List<MovieInfo> moviesFromStream() throws TMDbException {
+        return TMDbJsonUtils.getMoviesFromStream(new ByteArrayInputStream(mMoviesBytes));
+    }
+
+    @Benchmark
+    public List<MovieReview> reviewsFromJson() throws TMDbException {
+        return TMDbJsonUtils.getReviewsFromJson(mReviewsJson);
+    }
+
+    @Benchmark
+    public List<MovieReview> reviewsFromStream() throws TMDbException {
+        return TMDbJsonUtils.getReviewsFromStream(new ByteArrayInputStream(mReviewsBytes));
+    }
+
+    @Benchmark
+    public Map<String, String> videosFromJson() throws TMDbException {
+        return TMDbJsonUtils.getVideosFromJson(mVideosJson);
+    }
+
+    @Benchmark
+    public Map<String, String> videosFromStream() throws TMDbException {
+        return TMDbJsonUtils.getVideosFromStream(new ByteArrayInputStream(mVideosBytes));
+    }
+
+    @Benchmark
+    public String[] configurationFromJson() throws TMDbException {
+        return TMDbJsonUtils.getPosterBasePathsFromJson(mConfigJson);
+    }
+
+    @Benchmark
+    public ImagesConfiguration configurationFromStream() throws TMDbException {
+        return TMDbJsonUtils.getImagesConfigurationFromStream(new ByteArrayInputStream(mConfigBytes));
+    }
+}